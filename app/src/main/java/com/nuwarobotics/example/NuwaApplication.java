@@ -2,18 +2,51 @@ package com.nuwarobotics.example;
 
 import android.app.Application;
 import android.content.Context;
+import android.util.Log;
+
+import com.nuwarobotics.example.util.LogFlightRecorder;
+import com.nuwarobotics.example.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
 
 
 
 public class NuwaApplication extends Application {
 
 	private static String TAG = "KiwiApplication";
+	// 8 x 4MB of binary log history for post-mortem analysis, see LogFlightRecorderDecoder
+	private static final int FLIGHT_RECORDER_SEGMENTS = 8;
+	private static final int FLIGHT_RECORDER_SEGMENT_SIZE = 4 * 1024 * 1024;
 	private static Context mContext;
 
 	@Override
 	public void onCreate() {
 		super.onCreate();
 		mContext = getApplicationContext();
+		// keep logcat writes off the main thread, robot callbacks log a lot
+		Logger.setAsyncEnabled(true);
+		if (BuildConfig.FLIGHT_RECORDER) {
+			startFlightRecorder();
+		}
+	}
+
+	/**
+	 * Opt-in with FLIGHT_RECORDER in build.gradle. Creating and mapping the segments takes a while, so it's done
+	 * in the background; lines logged before it is ready aren't recorded.
+	 */
+	private void startFlightRecorder() {
+		File dir = new File(getFilesDir(), "flight_recorder");
+		Thread thread = new Thread(() -> {
+			try {
+				Logger.setFlightRecorder(new LogFlightRecorder(dir, FLIGHT_RECORDER_SEGMENTS,
+						FLIGHT_RECORDER_SEGMENT_SIZE));
+			} catch (IOException e) {
+				Log.w(TAG, "flight recorder disabled", e);
+			}
+		}, "FlightRecorderSetup");
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
 	}
 
 	public static Context getContext() {
@@ -2,7 +2,6 @@ package com.nuwarobotics.example.motion;
 
 import android.app.Activity;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
 import android.util.Log;
@@ -11,13 +10,17 @@ import android.view.View;
 import android.widget.Button;
 
 import com.nuwarobotics.example.R;
+import com.nuwarobotics.example.motion.choreography.Choreography;
+import com.nuwarobotics.example.motion.choreography.ShowScriptLoader;
 import com.nuwarobotics.service.IClientId;
 import com.nuwarobotics.service.agent.NuwaRobotAPI;
 import com.nuwarobotics.service.agent.RobotEventListener;
 import com.nuwarobotics.service.agent.VoiceEventListener;
 import com.nuwarobotics.service.agent.VoiceResultJsonParser;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Example of TTS and Motion, TODO: move to readMe later
@@ -26,6 +29,7 @@ import java.util.ArrayList;
  * ケビー：「空が飛べたらいいのになあ」（羽ばたく動きをしながら話す）
  * ケビー：「無理だから、歩いていこう」
  * ケビー：「ぼく、動くのは得意なんですよ」（前に進みながら）
+ * The show is the script assets/shows/motion_tts_demo.json.
  */
 public class MotionTtsExampleActivity extends AppCompatActivity {
     private final String TAG = "MotionTtsExampleActivity";
@@ -33,27 +37,11 @@ public class MotionTtsExampleActivity extends AppCompatActivity {
     IClientId mClientId;
     Button mStartDemoBtn ;
 
-    Handler mHandler = new Handler();
-
-    private int mCmdStep = 0 ;
-    private boolean mTts_complete = true;
-    private boolean mMotion_complete = true;
-
-    //Following is Action pair config
-    ArrayList<String> cmdTTS = new ArrayList<String>() {{
-        add("");
-        add("こんにちは、僕はケビーです");
-        add("空が飛べたらいいのになあ");
-        add("無理だから、歩いていこう");
-        add("ぼく、動くのは得意なんですよ");
-    }};//you can customize this list
-    ArrayList<String> cmdMotion = new ArrayList<String>() {{
-        add("666_RE_Hello");
-        add("");
-        add("666_IM_Bird");
-        add("");
-        add("666_SP_Walk");
-    }};//you can customize this list
+    // plays the show on its own thread, each line waits for the callbacks of the TTS and motion before it
+    Choreography mChoreography;
+
+    //Following is the show script, you can customize it
+    private final String SHOW_ASSET = "shows/motion_tts_demo.json";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -70,6 +58,7 @@ public class MotionTtsExampleActivity extends AppCompatActivity {
         //Step 1 : Initial Nuwa API Object
         mClientId = new IClientId(this.getPackageName());
         mRobotAPI = new NuwaRobotAPI(this,mClientId);
+        mChoreography = new Choreography(mRobotAPI);
 
         //Step 2 : Register receive Robot Event
         Log.d(TAG,"register EventListener ") ;
@@ -79,9 +68,20 @@ public class MotionTtsExampleActivity extends AppCompatActivity {
             @Override
             public void onClick(View v) {
                 Log.d(TAG,"onClick to start start demo") ;
-                //Step 3 : reset command step and trigger action start thread
-                mCmdStep = 0 ;
-                mHandler.post(robotAction);//play next action
+                //Step 3 : load the show off the UI thread (compiled once, then cached) and play it,
+                // a running demo is cancelled
+                CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return ShowScriptLoader.loadAsset(getApplicationContext(), SHOW_ASSET);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).thenCompose(show -> mChoreography.perform(show)).whenComplete((v, error) -> {
+                    if (error != null) {
+                        Log.w(TAG, "demo ended early: " + error);
+                    }
+                    mRobotAPI.motionReset();//Reset Robot pose to default
+                });
             }
         });
 
@@ -97,36 +97,11 @@ public class MotionTtsExampleActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
-    Runnable robotAction = new Runnable() {
-        @Override
-        public void run() {
-            String current_tts = cmdTTS.get(mCmdStep);
-            String current_motion = cmdMotion.get(mCmdStep);
-            Log.d(TAG,"Action Step "+mCmdStep+" TTS:"+current_tts+" motion:"+current_motion);
-            //Config waiting flag first.   (Example : use to wait two callback ready)
-            if(current_tts != "") mTts_complete = false;
-            if(current_motion != "") mMotion_complete = false;
-
-            //Start play tts and motion if need
-            if(current_tts != "") mRobotAPI.startTTS(current_tts);
-
-            //Please NOTICE that auto_fadein should assign false when motion file nothing to display
-            if(current_motion != "") mRobotAPI.motionPlay(current_motion,false);
-
-
-            while(mTts_complete == false  || mMotion_complete == false){
-                //wait both action complete
-            }
-
-            //both TTS and Motion complete, we play next action
-            mCmdStep ++ ;//next action step
-            if(mCmdStep < cmdTTS.size()) {
-                mHandler.post(robotAction);//play next action
-            }else{
-                mRobotAPI.motionReset();//Reset Robot pose to default
-            }
-        }
-    };
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mChoreography.shutdown();
+    }
 
     RobotEventListener robotEventListener = new RobotEventListener() {
         @Override
@@ -174,13 +149,13 @@ public class MotionTtsExampleActivity extends AppCompatActivity {
 
         @Override
         public void onStopOfMotionPlay(String s) {
-
+            mChoreography.onStopOfMotionPlay(s);
         }
 
         @Override
         public void onCompleteOfMotionPlay(String s) {
             Log.d(TAG,"Play Motion Complete " + s);
-            mMotion_complete = true;
+            mChoreography.onCompleteOfMotionPlay(s);
         }
 
         @Override
@@ -190,7 +165,7 @@ public class MotionTtsExampleActivity extends AppCompatActivity {
 
         @Override
         public void onErrorOfMotionPlay(int i) {
-
+            mChoreography.onErrorOfMotionPlay(i);
         }
 
         @Override
@@ -278,7 +253,7 @@ public class MotionTtsExampleActivity extends AppCompatActivity {
         @Override
         public void onTTSComplete(boolean b) {
             Log.d(TAG, "onTTSComplete" + !b);
-            mTts_complete = true;
+            mChoreography.onTTSComplete(b);
 
         }
 
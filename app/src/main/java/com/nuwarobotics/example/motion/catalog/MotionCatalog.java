@@ -0,0 +1,350 @@
+package com.nuwarobotics.example.motion.catalog;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import com.nuwarobotics.service.agent.NuwaRobotAPI;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * App wide list of the motions installed on the robot, answered from memory.
+ *
+ * The list is persisted in app private storage with a version stamp and loaded from there in the background
+ * right away, so menus have it without asking the robot service. {@link #refresh} fetches the list from the
+ * service on the catalog thread; the service only hands out the full list, so it is diffed against the known one
+ * and listeners, memory and file are only updated when motions were added or removed.
+ *
+ * File format: {@code # motion catalog v1}, {@code version <stamp>}, {@code fetched <time>}, then one motion per line.
+ */
+public final class MotionCatalog {
+    private static final String TAG = MotionCatalog.class.getSimpleName();
+    private static final String FILE_NAME = "motion_catalog.txt";
+    private static final String HEADER = "# motion catalog v1";
+    private static final String VERSION_PREFIX = "version ";
+    private static final String FETCHED_PREFIX = "fetched ";
+
+    // a fresher list is not fetched again unless forced
+    private static final long REFRESH_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+    // the service may not be bound yet right after NuwaRobotAPI was created
+    private static final int FETCH_ATTEMPTS = 3;
+    private static final long FETCH_RETRY_MS = 1000;
+
+    public interface Listener {
+        /**
+         * Called on the catalog thread when a refresh found a different motion list.
+         */
+        void onCatalogChanged(List<String> added, List<String> removed);
+    }
+
+    /**
+     * Immutable state of the catalog, replaced as a whole.
+     */
+    private static final class Snapshot {
+        final List<String> motions;
+        final Set<String> lookup;
+        final String version;
+        final long fetched;
+        final MotionIndex index;
+
+        /**
+         * Built on the catalog thread, index included, so readers never build anything.
+         */
+        Snapshot(List<String> motions, String version, long fetched) {
+            this.motions = Collections.unmodifiableList(new ArrayList<>(motions));
+            this.lookup = Collections.unmodifiableSet(new HashSet<>(motions));
+            this.version = version;
+            this.fetched = fetched;
+            this.index = MotionIndex.build(this.motions);
+        }
+
+        /**
+         * The same list fetched again: motions, lookup and index are shared, only the fetch time is new.
+         */
+        Snapshot(Snapshot same, long fetched) {
+            this.motions = same.motions;
+            this.lookup = same.lookup;
+            this.version = same.version;
+            this.fetched = fetched;
+            this.index = same.index;
+        }
+    }
+
+    private static final MotionIndex EMPTY_INDEX = MotionIndex.build(Collections.emptyList());
+
+    private static MotionCatalog sInstance;
+
+    private final File mFile;
+    private final ThreadPoolExecutor mExecutor;
+    private final CompletableFuture<List<String>> mLoaded = new CompletableFuture<>();
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot mSnapshot;
+
+    private MotionCatalog(Context context) {
+        mFile = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+        mExecutor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+        mExecutor.execute(this::load);
+    }
+
+    public static synchronized MotionCatalog getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new MotionCatalog(context);
+        }
+        return sInstance;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * @return all known motions in the order of the robot service, empty until {@link #isLoaded()}
+     */
+    public List<String> getMotions() {
+        Snapshot snapshot = mSnapshot;
+        return snapshot == null ? Collections.emptyList() : snapshot.motions;
+    }
+
+    public boolean contains(String motion) {
+        Snapshot snapshot = mSnapshot;
+        return snapshot != null && snapshot.lookup.contains(motion);
+    }
+
+    /**
+     * @return search index over {@link #getMotions()}, built in the background with the list
+     */
+    public MotionIndex getIndex() {
+        Snapshot snapshot = mSnapshot;
+        return snapshot == null ? EMPTY_INDEX : snapshot.index;
+    }
+
+    /**
+     * @return whether a list is known, from storage or from the robot service
+     */
+    public boolean isLoaded() {
+        return mSnapshot != null;
+    }
+
+    /**
+     * @return future completed with the motions once a list is known; on a first start that is after the first fetch
+     */
+    public CompletableFuture<List<String>> whenLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * @return version stamp of the known list, null if none is known
+     */
+    public String getVersion() {
+        Snapshot snapshot = mSnapshot;
+        return snapshot == null ? null : snapshot.version;
+    }
+
+    /**
+     * @return when the known list was fetched from the robot service, 0 if never
+     */
+    public long getFetchedTime() {
+        Snapshot snapshot = mSnapshot;
+        return snapshot == null ? 0 : snapshot.fetched;
+    }
+
+    /**
+     * Fetch the list from the robot service in the background, unless the known one is recent.
+     */
+    public CompletableFuture<List<String>> refresh(NuwaRobotAPI robotAPI) {
+        return refresh(robotAPI, false);
+    }
+
+    /**
+     * @param force fetch even if the known list is recent, e.g. after motions were installed
+     * @return future completed with the motions after the refresh
+     */
+    public CompletableFuture<List<String>> refresh(NuwaRobotAPI robotAPI, boolean force) {
+        CompletableFuture<List<String>> result = new CompletableFuture<>();
+        mExecutor.execute(() -> {
+            try {
+                Snapshot snapshot = mSnapshot;
+                if (!force && snapshot != null && System.currentTimeMillis() - snapshot.fetched < REFRESH_INTERVAL_MS) {
+                    result.complete(snapshot.motions);
+                    return;
+                }
+                result.complete(update(fetch(robotAPI)).motions);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "refresh failed", e);
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private static List<String> fetch(NuwaRobotAPI robotAPI) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            List<String> motions = null;
+            try {
+                motions = robotAPI.getMotionList();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "getMotionList failed, attempt " + attempt, e);
+            }
+            if (motions != null) {
+                return motions;
+            }
+            if (attempt == FETCH_ATTEMPTS) {
+                throw new IOException("robot service returned no motion list");
+            }
+            try {
+                Thread.sleep(FETCH_RETRY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Apply a fetched list, on the catalog thread.
+     */
+    private Snapshot update(List<String> fetched) {
+        long now = System.currentTimeMillis();
+        Snapshot old = mSnapshot;
+        String version = versionOf(fetched);
+        // keep the list callers hold and the index built over it
+        Snapshot snapshot = old != null && old.version.equals(version)
+                ? new Snapshot(old, now) : new Snapshot(fetched, version, now);
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        if (old != null) {
+            for (String motion : snapshot.motions) {
+                if (!old.lookup.contains(motion)) {
+                    added.add(motion);
+                }
+            }
+            for (String motion : old.motions) {
+                if (!snapshot.lookup.contains(motion)) {
+                    removed.add(motion);
+                }
+            }
+        } else {
+            added.addAll(snapshot.motions);
+        }
+        boolean changed = old == null || !old.version.equals(snapshot.version);
+        mSnapshot = snapshot;
+        mLoaded.complete(snapshot.motions);
+        // the fetch time is saved also when nothing changed, so the next start doesn't fetch again
+        try {
+            save(snapshot);
+        } catch (IOException e) {
+            Log.w(TAG, "can't save " + mFile, e);
+        }
+        if (changed) {
+            Log.d(TAG, "catalog " + snapshot.version + ": " + snapshot.motions.size() + " motions, +"
+                    + added.size() + " -" + removed.size());
+            for (Listener listener : mListeners) {
+                listener.onCatalogChanged(Collections.unmodifiableList(added), Collections.unmodifiableList(removed));
+            }
+        }
+        return snapshot;
+    }
+
+    private void load() {
+        if (!mFile.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(mFile), StandardCharsets.UTF_8))) {
+            if (!HEADER.equals(reader.readLine())) {
+                return;
+            }
+            String version = reader.readLine();
+            String fetched = reader.readLine();
+            if (version == null || !version.startsWith(VERSION_PREFIX)
+                    || fetched == null || !fetched.startsWith(FETCHED_PREFIX)) {
+                return;
+            }
+            List<String> motions = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    motions.add(line);
+                }
+            }
+            String stamp = versionOf(motions);
+            // a file cut short doesn't match its stamp
+            if (!stamp.equals(version.substring(VERSION_PREFIX.length()))) {
+                Log.w(TAG, "ignore inconsistent " + mFile);
+                return;
+            }
+            long fetchedTime = Long.parseLong(fetched.substring(FETCHED_PREFIX.length()));
+            Snapshot snapshot = new Snapshot(motions, stamp, fetchedTime);
+            // a refresh that finished first is newer
+            if (mSnapshot == null) {
+                mSnapshot = snapshot;
+                mLoaded.complete(snapshot.motions);
+            }
+        } catch (IOException | NumberFormatException e) {
+            Log.w(TAG, "ignore broken " + mFile, e);
+        }
+    }
+
+    /**
+     * Write to a temporary file first, so a crash never leaves a half written catalog behind.
+     */
+    private void save(Snapshot snapshot) throws IOException {
+        File tmp = new File(mFile.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            writer.write(HEADER + "\n");
+            writer.write(VERSION_PREFIX + snapshot.version + "\n");
+            writer.write(FETCHED_PREFIX + snapshot.fetched + "\n");
+            for (String motion : snapshot.motions) {
+                writer.write(motion);
+                writer.write('\n');
+            }
+        }
+        if (!tmp.renameTo(mFile)) {
+            throw new IOException("can't rename " + tmp + " to " + mFile);
+        }
+    }
+
+    /**
+     * @return stamp identifying a motion list: its size and a CRC of the names in order
+     */
+    private static String versionOf(List<String> motions) {
+        CRC32 crc = new CRC32();
+        for (String motion : motions) {
+            crc.update(motion.getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        return motions.size() + "-" + Long.toHexString(crc.getValue());
+    }
+}
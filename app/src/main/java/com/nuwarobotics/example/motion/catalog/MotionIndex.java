@@ -0,0 +1,290 @@
+package com.nuwarobotics.example.motion.catalog;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search index over motion names of the form {@code <id>_<category>_<name>}, e.g. "666_RE_Bye" or
+ * "987_EN_HappyBirthdayWaltz". Immutable, build one per motion list, see {@link MotionCatalog#getIndex()}.
+ *
+ * Names are kept in one array sorted case-insensitively, so a prefix (which includes id prefixes like "666_")
+ * is a binary searched range. Categories and the characters each name contains map to ascending positions into
+ * that array. A {@link Filter} narrows its last result as the user types on, instead of scanning all names again.
+ * Results are views on the index, not copies.
+ */
+public final class MotionIndex {
+    private final String[] mNames;
+    // lower case names, same order
+    private final String[] mKeys;
+    private final Map<String, int[]> mCategories;
+    // per character the positions of the names containing it
+    private final Map<Character, int[]> mPostings;
+    private final int[] mAll;
+
+    private MotionIndex(String[] names) {
+        int count = names.length;
+        mKeys = new String[count];
+        for (int i = 0; i < count; i++) {
+            mKeys[i] = names[i].toLowerCase(Locale.ROOT);
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> mKeys[a].compareTo(mKeys[b]));
+        mNames = new String[count];
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            mNames[i] = names[order[i]];
+            keys[i] = mKeys[order[i]];
+        }
+        System.arraycopy(keys, 0, mKeys, 0, count);
+
+        mAll = new int[count];
+        Map<String, IntList> categories = new HashMap<>();
+        Map<Character, IntList> postings = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            mAll[i] = i;
+            String category = categoryOf(mNames[i]);
+            if (category != null) {
+                categories.computeIfAbsent(category, key -> new IntList()).add(i);
+            }
+            String key = mKeys[i];
+            for (int c = 0; c < key.length(); c++) {
+                IntList list = postings.computeIfAbsent(key.charAt(c), k -> new IntList());
+                // positions come in order, a name with a repeated character only once
+                if (list.size == 0 || list.values[list.size - 1] != i) {
+                    list.add(i);
+                }
+            }
+        }
+        mCategories = new HashMap<>();
+        for (Map.Entry<String, IntList> entry : categories.entrySet()) {
+            mCategories.put(entry.getKey(), entry.getValue().toArray());
+        }
+        mPostings = new HashMap<>();
+        for (Map.Entry<Character, IntList> entry : postings.entrySet()) {
+            mPostings.put(entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    public static MotionIndex build(Collection<String> motions) {
+        return new MotionIndex(motions.toArray(new String[0]));
+    }
+
+    /**
+     * @return the category code of {@code motion}, e.g. "RE" for "666_RE_Bye", null if it doesn't follow the scheme
+     */
+    public static String categoryOf(String motion) {
+        int first = motion.indexOf('_');
+        int second = first < 0 ? -1 : motion.indexOf('_', first + 1);
+        if (second < 0 || second == first + 1) {
+            return null;
+        }
+        return motion.substring(first + 1, second).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the id part of {@code motion}, e.g. "666" for "666_RE_Bye", null if it has none
+     */
+    public static String idOf(String motion) {
+        int first = motion.indexOf('_');
+        return first <= 0 ? null : motion.substring(0, first);
+    }
+
+    public int size() {
+        return mNames.length;
+    }
+
+    /**
+     * @return all names, sorted case-insensitively
+     */
+    public List<String> all() {
+        return Collections.unmodifiableList(Arrays.asList(mNames));
+    }
+
+    /**
+     * @return category codes of the indexed motions, e.g. "RE", "TA", "EN"
+     */
+    public Set<String> getCategories() {
+        return Collections.unmodifiableSet(mCategories.keySet());
+    }
+
+    /**
+     * @param prefix case-insensitive, e.g. "666_" for one id or "666_ta" for a category of it
+     */
+    public List<String> withPrefix(String prefix) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        int from = lowerBound(key);
+        int to = lowerBound(key + Character.MAX_VALUE);
+        return Collections.unmodifiableList(Arrays.asList(mNames).subList(from, to));
+    }
+
+    /**
+     * @param category category code, case-insensitive
+     */
+    public List<String> inCategory(String category) {
+        int[] positions = mCategories.get(category.toUpperCase(Locale.ROOT));
+        return positions == null ? Collections.emptyList() : new Names(positions, positions.length);
+    }
+
+    /**
+     * @return names containing {@code text}, case-insensitive; for typing use a {@link Filter}
+     */
+    public List<String> containing(String text) {
+        return newFilter().update(text);
+    }
+
+    public Filter newFilter() {
+        return new Filter();
+    }
+
+    /**
+     * Incremental substring filter for a search field. Each typed character narrows the previous result,
+     * deleting characters goes back to results already computed. Not thread safe, use one per field.
+     */
+    public final class Filter {
+        private String mCategory;
+        // results of the queries typed so far, each query extends the one before
+        private final List<String> mQueries = new ArrayList<>();
+        private final List<int[]> mResults = new ArrayList<>();
+        private final List<Integer> mSizes = new ArrayList<>();
+
+        private Filter() {
+        }
+
+        /**
+         * Limit the results to one category.
+         * @param category category code, null for all
+         * @return the result for the current query
+         */
+        public List<String> setCategory(String category) {
+            String query = mQueries.isEmpty() ? "" : mQueries.get(mQueries.size() - 1);
+            mCategory = category == null ? null : category.toUpperCase(Locale.ROOT);
+            mQueries.clear();
+            mResults.clear();
+            mSizes.clear();
+            return update(query);
+        }
+
+        /**
+         * @param query text of the search field
+         * @return names containing {@code query}, sorted case-insensitively
+         */
+        public List<String> update(String query) {
+            String key = query.toLowerCase(Locale.ROOT);
+            while (!mQueries.isEmpty() && !key.startsWith(mQueries.get(mQueries.size() - 1))) {
+                pop();
+            }
+            if (mQueries.isEmpty()) {
+                int[] base = mCategory == null ? mAll : mCategories.get(mCategory);
+                if (base == null) {
+                    base = new int[0];
+                }
+                push("", base, base.length);
+            }
+            int top = mQueries.size() - 1;
+            if (!mQueries.get(top).equals(key)) {
+                int[] candidates = mResults.get(top);
+                int candidateCount = mSizes.get(top);
+                if (top == 0 && mCategory == null) {
+                    // first character: start from the names containing it rather than from all
+                    int[] postings = mPostings.get(key.charAt(0));
+                    candidates = postings == null ? new int[0] : postings;
+                    candidateCount = candidates.length;
+                }
+                int[] matches = new int[candidateCount];
+                int count = 0;
+                for (int i = 0; i < candidateCount; i++) {
+                    int position = candidates[i];
+                    if (mKeys[position].contains(key)) {
+                        matches[count++] = position;
+                    }
+                }
+                push(key, matches, count);
+                top++;
+            }
+            return new Names(mResults.get(top), mSizes.get(top));
+        }
+
+        private void push(String query, int[] positions, int count) {
+            mQueries.add(query);
+            mResults.add(positions);
+            mSizes.add(count);
+        }
+
+        private void pop() {
+            int last = mQueries.size() - 1;
+            mQueries.remove(last);
+            mResults.remove(last);
+            mSizes.remove(last);
+        }
+    }
+
+    /**
+     * @return first position whose key is not less than {@code key}
+     */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = mKeys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mKeys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Names at a run of positions, without copying them.
+     */
+    private final class Names extends AbstractList<String> {
+        private final int[] mPositions;
+        private final int mSize;
+
+        Names(int[] positions, int size) {
+            mPositions = positions;
+            mSize = size;
+        }
+
+        @Override
+        public String get(int i) {
+            if (i < 0 || i >= mSize) {
+                throw new IndexOutOfBoundsException(i + " of " + mSize);
+            }
+            return mNames[mPositions[i]];
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[8];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
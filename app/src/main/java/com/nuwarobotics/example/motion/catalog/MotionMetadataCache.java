@@ -0,0 +1,315 @@
+package com.nuwarobotics.example.motion.catalog;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import com.nuwarobotics.example.motion.fst.FstMotionParser;
+import com.nuwarobotics.example.motion.model.Motion;
+import com.nuwarobotics.example.motion.model.MotorTrack;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * App wide, persistent facts about motions: how long they last, which motors they move and when they last played.
+ * Planners that schedule TTS, LEDs or movement around a motion ask here instead of preparing it on the robot.
+ *
+ * Entries are filled from {@code onPrepareMotion} events and from parsed fst files, kept in memory and
+ * written to app private storage in the background, several changes in one write. A motion from an fst file is
+ * stored under its own name, the file name without .fst if it has none, see {@link #keyOf}.
+ *
+ * File format: {@code # motion metadata v1}, then per motion
+ * {@code name \t duration ms \t motors separated by , \t last played}, -1 / empty / 0 for unknown.
+ */
+public final class MotionMetadataCache {
+    private static final String TAG = MotionMetadataCache.class.getSimpleName();
+    private static final String FILE_NAME = "motion_metadata.txt";
+    private static final String HEADER = "# motion metadata v1";
+
+    // a track whose angle changes less than this doesn't count as moving its motor
+    private static final float MOVE_THRESHOLD = 0.5f;
+
+    public static final long UNKNOWN = -1;
+
+    public static final class Entry {
+        public final String motion;
+        /** length in milliseconds, {@link #UNKNOWN} if not known yet */
+        public final long durationMillis;
+        /** motor names the motion moves, e.g. "neck_y", null if not known yet */
+        public final List<String> motors;
+        /** wall clock time the motion last started, 0 if never */
+        public final long lastPlayed;
+
+        Entry(String motion, long durationMillis, List<String> motors, long lastPlayed) {
+            this.motion = motion;
+            this.durationMillis = durationMillis;
+            this.motors = motors;
+            this.lastPlayed = lastPlayed;
+        }
+
+        @Override
+        public String toString() {
+            return motion + " " + durationMillis + "ms " + motors + " " + lastPlayed;
+        }
+    }
+
+    private static MotionMetadataCache sInstance;
+
+    private final File mFile;
+    private final ThreadPoolExecutor mExecutor;
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+    // key of each fst file scanned since the start, the name is read only by parsing the whole file
+    private final Map<String, String> mFileKeys = new ConcurrentHashMap<>();
+    private final CompletableFuture<Void> mLoaded = new CompletableFuture<>();
+    private final AtomicBoolean mSavePending = new AtomicBoolean();
+
+    private MotionMetadataCache(Context context) {
+        mFile = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+        mExecutor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+        mExecutor.execute(this::load);
+    }
+
+    public static synchronized MotionMetadataCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new MotionMetadataCache(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return future completed once the stored entries are in memory
+     */
+    public CompletableFuture<Void> whenLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * @return what is known about {@code motion}, null if nothing
+     */
+    public Entry get(String motion) {
+        return mEntries.get(motion);
+    }
+
+    /**
+     * @return length of {@code motion} in milliseconds, {@link #UNKNOWN} if not known
+     */
+    public long getDurationMillis(String motion) {
+        Entry entry = mEntries.get(motion);
+        return entry == null ? UNKNOWN : entry.durationMillis;
+    }
+
+    /**
+     * @return motors {@code motion} moves, null if not known
+     */
+    public List<String> getMotors(String motion) {
+        Entry entry = mEntries.get(motion);
+        return entry == null ? null : entry.motors;
+    }
+
+    /**
+     * @return wall clock time {@code motion} last started, 0 if never
+     */
+    public long getLastPlayed(String motion) {
+        Entry entry = mEntries.get(motion);
+        return entry == null ? 0 : entry.lastPlayed;
+    }
+
+    /**
+     * Learn the length of {@code motion} from its prepare event, {@code duration} is in seconds.
+     */
+    public void onPrepareMotion(boolean isError, String motion, float duration) {
+        if (isError || motion == null || !(duration > 0)) {
+            return;
+        }
+        update(motion, Math.round(duration * 1000), null, 0);
+    }
+
+    /**
+     * Record that {@code motion} started now.
+     */
+    public void onPlayed(String motion) {
+        update(motion, UNKNOWN, null, System.currentTimeMillis());
+    }
+
+    /**
+     * @param motionName name in the motion parsed from {@code fst}, null if it has none
+     * @return key the motion is stored under: its own name, failing that the file name without .fst
+     */
+    public static String keyOf(String motionName, File fst) {
+        if (motionName != null && !motionName.isEmpty()) {
+            return motionName;
+        }
+        String fileName = fst.getName();
+        return fileName.endsWith(".fst") ? fileName.substring(0, fileName.length() - 4) : fileName;
+    }
+
+    /**
+     * Record duration and moved motors of a parsed motion.
+     * @param name key to store it under, null for the name in the motion
+     */
+    public Entry put(String name, Motion motion) {
+        String key = name != null ? name : motion.getName();
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("motion without name");
+        }
+        List<String> motors = new ArrayList<>();
+        for (MotorTrack track : motion.getTracks()) {
+            if (moves(track)) {
+                motors.add(track.getMotor());
+            }
+        }
+        return update(key, motion.getDurationMillis(), Collections.unmodifiableList(motors), 0);
+    }
+
+    /**
+     * Parse {@code fst} in the background unless its motion is known already.
+     * @return future completed with the entry of the motion, stored under {@link #keyOf}
+     */
+    public CompletableFuture<Entry> scan(File fst) {
+        CompletableFuture<Entry> result = new CompletableFuture<>();
+        mExecutor.execute(() -> {
+            String key = mFileKeys.get(fst.getPath());
+            Entry entry = key == null ? null : mEntries.get(key);
+            if (entry != null && entry.durationMillis != UNKNOWN && entry.motors != null) {
+                result.complete(entry);
+                return;
+            }
+            try {
+                Motion motion = FstMotionParser.parse(fst);
+                key = keyOf(motion.getName(), fst);
+                mFileKeys.put(fst.getPath(), key);
+                entry = mEntries.get(key);
+                if (entry != null && entry.durationMillis != UNKNOWN && entry.motors != null) {
+                    result.complete(entry);
+                    return;
+                }
+                result.complete(put(key, motion));
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "can't scan " + fst, e);
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private static boolean moves(MotorTrack track) {
+        int count = track.getKeyCount();
+        if (count == 0) {
+            return false;
+        }
+        float min = track.getValue(0);
+        float max = min;
+        for (int key = 1; key < count; key++) {
+            min = Math.min(min, track.getValue(key));
+            max = Math.max(max, track.getValue(key));
+        }
+        return max - min >= MOVE_THRESHOLD;
+    }
+
+    /**
+     * Merge the known facts into the entry of {@code motion}, unknown values keep what was there.
+     */
+    private Entry update(String motion, long durationMillis, List<String> motors, long lastPlayed) {
+        Entry entry = mEntries.compute(motion, (key, old) -> old == null
+                ? new Entry(motion, durationMillis, motors, lastPlayed)
+                : new Entry(motion,
+                        durationMillis != UNKNOWN ? durationMillis : old.durationMillis,
+                        motors != null ? motors : old.motors,
+                        Math.max(lastPlayed, old.lastPlayed)));
+        scheduleSave();
+        return entry;
+    }
+
+    private void scheduleSave() {
+        if (mSavePending.compareAndSet(false, true)) {
+            mExecutor.execute(() -> {
+                mSavePending.set(false);
+                try {
+                    save();
+                } catch (IOException e) {
+                    Log.w(TAG, "can't save " + mFile, e);
+                }
+            });
+        }
+    }
+
+    private void load() {
+        try {
+            if (!mFile.isFile()) {
+                return;
+            }
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(mFile), StandardCharsets.UTF_8))) {
+                if (!HEADER.equals(reader.readLine())) {
+                    return;
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t", -1);
+                    if (fields.length != 4) {
+                        continue;
+                    }
+                    List<String> motors = null;
+                    if (!fields[2].isEmpty()) {
+                        List<String> list = new ArrayList<>();
+                        Collections.addAll(list, fields[2].split(","));
+                        motors = Collections.unmodifiableList(list);
+                    }
+                    Entry stored = new Entry(fields[0], Long.parseLong(fields[1]), motors, Long.parseLong(fields[3]));
+                    // facts recorded since the start are newer
+                    mEntries.merge(stored.motion, stored, (current, old) -> new Entry(current.motion,
+                            current.durationMillis != UNKNOWN ? current.durationMillis : old.durationMillis,
+                            current.motors != null ? current.motors : old.motors,
+                            Math.max(current.lastPlayed, old.lastPlayed)));
+                }
+            } catch (IOException | NumberFormatException e) {
+                Log.w(TAG, "ignore broken " + mFile, e);
+            }
+        } finally {
+            mLoaded.complete(null);
+        }
+    }
+
+    /**
+     * Write to a temporary file first, so a crash never leaves a half written cache behind.
+     */
+    private void save() throws IOException {
+        File tmp = new File(mFile.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            writer.write(HEADER + "\n");
+            for (Entry entry : mEntries.values()) {
+                writer.write(entry.motion + "\t" + entry.durationMillis + "\t"
+                        + (entry.motors == null ? "" : String.join(",", entry.motors)) + "\t" + entry.lastPlayed + "\n");
+            }
+        }
+        if (!tmp.renameTo(mFile)) {
+            throw new IOException("can't rename " + tmp + " to " + mFile);
+        }
+    }
+}
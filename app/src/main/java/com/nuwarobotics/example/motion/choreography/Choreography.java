@@ -0,0 +1,654 @@
+package com.nuwarobotics.example.motion.choreography;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.nuwarobotics.service.agent.NuwaRobotAPI;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Plays a script of steps, each a set of robot actions (TTS, motion, LED, motor) that start together; the next step
+ * starts when every action of the current one reported its end. Nothing polls or waits on a thread: actions complete
+ * futures from the robot events the app forwards here, and the steps are chained on the choreography's own thread.
+ * A step that doesn't end within its timeout fails the performance, a cancelled performance stops its running actions.
+ * The robot still reports the end of a stopped TTS or motion; until it did, or for at most {@link #STOP_GRACE_MS},
+ * the next TTS, or the next play of that motion, waits, so that end can't be taken for the end of the new one.
+ * <pre>
+ * Choreography.Step.of(Choreography.Action.tts("Hello"), Choreography.Action.motion("666_RE_Hello"))
+ * </pre>
+ * Shows loaded with {@link ShowScriptLoader} are played the same way, as tracks of events side by side.
+ * Forward {@code onTTSComplete} and the motion events of the robot callbacks to the {@code on...} methods.
+ */
+public final class Choreography {
+    private static final String TAG = "Choreography";
+
+    public static final long DEFAULT_STEP_TIMEOUT_MS = 30000;
+    // after a stop the robot reports the end of the stopped TTS or motion within this time, if at all
+    public static final long STOP_GRACE_MS = 500;
+
+    /**
+     * Something the robot does within a step. Started on the choreography thread; the returned future completes
+     * when it is over. The factories cover the robot API, subclass for anything else.
+     */
+    public abstract static class Action {
+        protected abstract CompletableFuture<Void> start(Choreography choreography);
+
+        /**
+         * Stop the action, it was started but its step was cancelled or timed out.
+         */
+        protected void cancel(Choreography choreography) {
+        }
+
+        /**
+         * Speak {@code text}, over when the robot reports the end of the TTS.
+         */
+        public static Action tts(String text) {
+            return new Action() {
+                @Override
+                protected CompletableFuture<Void> start(Choreography choreography) {
+                    CompletableFuture<Void> done = new CompletableFuture<>();
+                    choreography.enqueue(choreography.mTtsWaiters, done, () -> choreography.mRobotAPI.startTTS(text));
+                    return done;
+                }
+
+                @Override
+                protected void cancel(Choreography choreography) {
+                    choreography.mRobotAPI.stopTTS();
+                }
+
+                @Override
+                public String toString() {
+                    return "tts " + text;
+                }
+            };
+        }
+
+        /**
+         * Play robot motion {@code name} without window, over when it completes or stops.
+         */
+        public static Action motion(String name) {
+            return new Action() {
+                @Override
+                protected CompletableFuture<Void> start(Choreography choreography) {
+                    CompletableFuture<Void> done = new CompletableFuture<>();
+                    // auto_fadein is false, motions of a script have nothing to display
+                    choreography.enqueue(choreography.mMotionWaiters.computeIfAbsent(name, key -> new ArrayDeque<>()),
+                            done, () -> choreography.mRobotAPI.motionPlay(name, false));
+                    return done;
+                }
+
+                @Override
+                protected void cancel(Choreography choreography) {
+                    choreography.mRobotAPI.motionStop(true);
+                }
+
+                @Override
+                public String toString() {
+                    return "motion " + name;
+                }
+            };
+        }
+
+        /**
+         * Set an LED, over at once. The system LED control has to be disabled by the app.
+         * @param id 1 face, 2 chest, 3 left hand, 4 right hand
+         */
+        public static Action led(int id, int brightness, int r, int g, int b) {
+            return new Action() {
+                @Override
+                protected CompletableFuture<Void> start(Choreography choreography) {
+                    choreography.mRobotAPI.setLedColor(id, brightness, r, g, b);
+                    return CompletableFuture.completedFuture(null);
+                }
+
+                @Override
+                public String toString() {
+                    return "led " + id;
+                }
+            };
+        }
+
+        /**
+         * Turn a motor, over when it should have arrived: the robot reports no end of a motor move.
+         * @param motor a {@code NuwaRobotAPI.MOTOR_*} id
+         * @param speed degrees per second
+         */
+        public static Action motor(int motor, float degree, float speed) {
+            return new Action() {
+                @Override
+                protected CompletableFuture<Void> start(Choreography choreography) {
+                    choreography.mRobotAPI.ctlMotor(motor, degree, speed);
+                    return choreography.after(speed > 0 ? Math.round(Math.abs(degree) / speed * 1000) : 0);
+                }
+
+                @Override
+                public String toString() {
+                    return "motor " + motor + " " + degree;
+                }
+            };
+        }
+
+        /**
+         * Do nothing for a while, e.g. to hold a pose.
+         */
+        public static Action pause(long millis) {
+            return new Action() {
+                @Override
+                protected CompletableFuture<Void> start(Choreography choreography) {
+                    return choreography.after(millis);
+                }
+
+                @Override
+                public String toString() {
+                    return "pause " + millis;
+                }
+            };
+        }
+    }
+
+    /**
+     * Actions that start together, the step ends when all of them ended.
+     */
+    public static final class Step {
+        final List<Action> actions;
+        final long timeoutMillis;
+
+        private Step(List<Action> actions, long timeoutMillis) {
+            this.actions = actions;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        public static Step of(Action... actions) {
+            return new Step(Collections.unmodifiableList(new ArrayList<>(Arrays.asList(actions))), DEFAULT_STEP_TIMEOUT_MS);
+        }
+
+        /**
+         * @param millis time the step may take before it fails the performance
+         */
+        public Step withTimeout(long millis) {
+            if (millis <= 0) {
+                throw new IllegalArgumentException("bad timeout " + millis);
+            }
+            return new Step(actions, millis);
+        }
+
+        @Override
+        public String toString() {
+            return actions.toString();
+        }
+    }
+
+    /**
+     * A TTS or motion waiting for its end event, in the order they were sent. Waiters of an earlier generation were
+     * stopped, the next end is theirs; the waiters behind them are sent once they got it.
+     */
+    private static final class Waiter {
+        final long generation;
+        final CompletableFuture<Void> done;
+        final Runnable send;
+        boolean sent;
+
+        Waiter(long generation, CompletableFuture<Void> done, Runnable send) {
+            this.generation = generation;
+            this.done = done;
+            this.send = send;
+        }
+    }
+
+    private final NuwaRobotAPI mRobotAPI;
+    private final ScheduledThreadPoolExecutor mExecutor;
+
+    // only touched on the choreography thread
+    private final ArrayDeque<Waiter> mTtsWaiters = new ArrayDeque<>();
+    private final Map<String, ArrayDeque<Waiter>> mMotionWaiters = new HashMap<>();
+    // each stop starts a generation, actions started before it are stopped
+    private long mGeneration;
+    private CompletableFuture<Void> mPerformance;
+    // actions of the running step that were started and haven't ended
+    private final Map<Action, CompletableFuture<Void>> mRunning = new HashMap<>();
+    private CompletableFuture<Void> mStep;
+
+    public Choreography(NuwaRobotAPI robotAPI) {
+        mRobotAPI = robotAPI;
+        mExecutor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+                r.run();
+            }, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+        mExecutor.setRemoveOnCancelPolicy(true);
+        // timeouts of a show stopped by shutdown() have nothing left to do
+        mExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Play {@code steps} one after the other, cancelling the performance that runs.
+     * @return future completed after the last step; failed with a {@link TimeoutException} if a step took too long
+     * or the exception of a failed action; cancel it to stop the performance
+     */
+    public CompletableFuture<Void> perform(List<Step> steps) {
+        CompletableFuture<Void> performance = new CompletableFuture<>();
+        List<Step> copy = new ArrayList<>(steps);
+        mExecutor.execute(() -> {
+            begin(performance);
+            CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+            for (int i = 0; i < copy.size(); i++) {
+                Step step = copy.get(i);
+                int index = i;
+                chain = chain.thenComposeAsync(v -> runStep(performance, index, step), mExecutor);
+            }
+            finish(performance, chain);
+        });
+        return watch(performance);
+    }
+
+    /**
+     * Play the tracks of {@code show} side by side, cancelling the performance that runs. An event that doesn't
+     * end within its timeout, {@link #DEFAULT_STEP_TIMEOUT_MS} unless the script sets one, fails the performance;
+     * for a sync that is the wait for the other tracks. A failed track stops the others.
+     * @return future completed when every track played to its end; cancel it to stop the show
+     */
+    public CompletableFuture<Void> perform(ShowScript show) {
+        CompletableFuture<Void> performance = new CompletableFuture<>();
+        mExecutor.execute(() -> {
+            begin(performance);
+            Log.d(TAG, "show " + show);
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            mStep = done;
+            Gates gates = new Gates(show);
+            long origin = System.nanoTime();
+            CompletableFuture<?>[] tracks = new CompletableFuture<?>[show.getTrackCount()];
+            for (int track = 0; track < tracks.length; track++) {
+                CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+                for (int i = show.getTrackStart(track); i < show.getTrackEnd(track); i++) {
+                    int instruction = i;
+                    chain = chain.thenComposeAsync(v -> runInstruction(performance, show, instruction, origin, gates),
+                            mExecutor);
+                }
+                // the tracks waiting at a sync for this one would never go on
+                chain.whenCompleteAsync((v, error) -> {
+                    if (error != null && mStep == done) {
+                        stopStep(error instanceof CompletionException ? error.getCause() : error);
+                    }
+                }, mExecutor);
+                tracks[track] = chain;
+            }
+            CompletableFuture.allOf(tracks).whenComplete((v, error) -> {
+                if (error == null) {
+                    done.complete(null);
+                } else {
+                    done.completeExceptionally(error);
+                }
+            });
+            finish(performance, done);
+        });
+        return watch(performance);
+    }
+
+    /**
+     * Make {@code performance} the running one, on the choreography thread.
+     */
+    private void begin(CompletableFuture<Void> performance) {
+        if (mPerformance != null) {
+            // stopped right here, so none of its events reach the new one
+            mPerformance.cancel(false);
+            stopStep(new CancellationException("replaced"));
+        }
+        mPerformance = performance;
+    }
+
+    private static void finish(CompletableFuture<Void> performance, CompletableFuture<Void> done) {
+        done.whenComplete((v, error) -> {
+            if (error == null) {
+                performance.complete(null);
+            } else {
+                performance.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            }
+        });
+    }
+
+    private CompletableFuture<Void> watch(CompletableFuture<Void> performance) {
+        // also when the app cancels it
+        performance.whenComplete((v, error) -> mExecutor.execute(() -> {
+            if (performance == mPerformance) {
+                mPerformance = null;
+                stopStep(error instanceof CancellationException ? error : null);
+            }
+        }));
+        return performance;
+    }
+
+    /**
+     * Cancel the running performance, if any.
+     */
+    public void cancel() {
+        mExecutor.execute(() -> {
+            if (mPerformance != null) {
+                mPerformance.cancel(false);
+            }
+        });
+    }
+
+    /**
+     * Stop the running performance and the choreography thread.
+     */
+    public void shutdown() {
+        mExecutor.execute(() -> {
+            // stopped here, the executor takes no tasks once this returns
+            CompletableFuture<Void> performance = mPerformance;
+            mPerformance = null;
+            if (performance != null) {
+                performance.cancel(false);
+            }
+            stopStep(new CancellationException("shut down"));
+            mExecutor.shutdown();
+        });
+    }
+
+    /**
+     * Forward of {@code VoiceEventListener.onTTSComplete}.
+     */
+    public void onTTSComplete(boolean isError) {
+        // a failed TTS is over as well, the script goes on
+        mExecutor.execute(() -> onEnd(mTtsWaiters, "tts"));
+    }
+
+    public void onCompleteOfMotionPlay(String motion) {
+        onMotionEnd(motion);
+    }
+
+    public void onStopOfMotionPlay(String motion) {
+        onMotionEnd(motion);
+    }
+
+    /**
+     * The event doesn't tell which motion failed, all motions waited for fail; stopped ones still wait for their end.
+     */
+    public void onErrorOfMotionPlay(int errorCode) {
+        mExecutor.execute(() -> {
+            List<CompletableFuture<Void>> failed = new ArrayList<>();
+            for (ArrayDeque<Waiter> waiters : mMotionWaiters.values()) {
+                for (Iterator<Waiter> iterator = waiters.iterator(); iterator.hasNext(); ) {
+                    Waiter waiter = iterator.next();
+                    if (waiter.sent && waiter.generation == mGeneration) {
+                        iterator.remove();
+                        failed.add(waiter.done);
+                    }
+                }
+            }
+            mMotionWaiters.values().removeIf(ArrayDeque::isEmpty);
+            for (CompletableFuture<Void> waiter : failed) {
+                waiter.completeExceptionally(new IllegalStateException("motion failed with " + errorCode));
+            }
+        });
+    }
+
+    private void onMotionEnd(String motion) {
+        mExecutor.execute(() -> {
+            ArrayDeque<Waiter> waiters = mMotionWaiters.get(motion);
+            if (waiters != null) {
+                onEnd(waiters, motion);
+                if (waiters.isEmpty()) {
+                    mMotionWaiters.remove(motion);
+                }
+            }
+        });
+    }
+
+    /**
+     * Send an action that reports its end, now or after the end of a stopped one, on the choreography thread.
+     */
+    private void enqueue(ArrayDeque<Waiter> waiters, CompletableFuture<Void> done, Runnable send) {
+        waiters.add(new Waiter(mGeneration, done, send));
+        flush(waiters);
+    }
+
+    /**
+     * Send the waiters not sent yet, unless a stopped one still waits for its end.
+     */
+    private void flush(ArrayDeque<Waiter> waiters) {
+        Waiter first = waiters.peek();
+        if (first == null || first.generation != mGeneration) {
+            return;
+        }
+        for (Waiter waiter : new ArrayList<>(waiters)) {
+            if (!waiter.sent) {
+                waiter.sent = true;
+                waiter.send.run();
+            }
+        }
+    }
+
+    /**
+     * An end event, for the oldest waiter; the end of a stopped action only lets the ones behind it go.
+     */
+    private void onEnd(ArrayDeque<Waiter> waiters, String what) {
+        Waiter waiter = waiters.poll();
+        if (waiter == null) {
+            return;
+        }
+        if (waiter.generation != mGeneration) {
+            Log.d(TAG, "end of stopped " + what);
+            flush(waiters);
+            return;
+        }
+        waiter.done.complete(null);
+    }
+
+    /**
+     * Give up waiting for the ends of actions stopped before {@code generation} that the robot didn't report.
+     */
+    private void expireStopped(long generation) {
+        for (ArrayDeque<Waiter> waiters : allWaiters()) {
+            if (waiters.removeIf(waiter -> waiter.generation < generation)) {
+                Log.w(TAG, "no end of a stopped action within " + STOP_GRACE_MS + " ms");
+                flush(waiters);
+            }
+        }
+        mMotionWaiters.values().removeIf(ArrayDeque::isEmpty);
+    }
+
+    private List<ArrayDeque<Waiter>> allWaiters() {
+        List<ArrayDeque<Waiter>> all = new ArrayList<>(mMotionWaiters.values());
+        all.add(mTtsWaiters);
+        return all;
+    }
+
+    /**
+     * Start the actions of a step, on the choreography thread.
+     */
+    private CompletableFuture<Void> runStep(CompletableFuture<Void> performance, int index, Step step) {
+        if (performance.isDone()) {
+            throw new CancellationException("performance over");
+        }
+        Log.d(TAG, "step " + index + " " + step);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        mStep = done;
+        List<CompletableFuture<Void>> started = new ArrayList<>();
+        for (Action action : step.actions) {
+            CompletableFuture<Void> future = start(action);
+            started.add(future);
+            mRunning.put(action, future);
+            future.whenCompleteAsync((v, error) -> mRunning.remove(action, future), mExecutor);
+        }
+        CompletableFuture.allOf(started.toArray(new CompletableFuture[0])).whenComplete((v, error) -> {
+            if (error == null) {
+                done.complete(null);
+            } else {
+                done.completeExceptionally(error);
+            }
+        });
+        ScheduledFuture<?> timeout = mExecutor.schedule(() -> {
+            if (!done.isDone()) {
+                Log.w(TAG, "step " + index + " " + step + " timed out");
+                stopStep(new TimeoutException("step " + index + " took over " + step.timeoutMillis + " ms"));
+            }
+        }, step.timeoutMillis, TimeUnit.MILLISECONDS);
+        done.whenComplete((v, error) -> timeout.cancel(false));
+        return done;
+    }
+
+    /**
+     * Start one instruction of a show once its time has come, on the choreography thread.
+     */
+    private CompletableFuture<Void> runInstruction(CompletableFuture<Void> performance, ShowScript show,
+                                                   int instruction, long origin, Gates gates) {
+        if (performance.isDone()) {
+            throw new CancellationException("performance over");
+        }
+        int at = show.get(instruction, ShowScript.F_AT);
+        long delay = at == ShowScript.NO_TIME ? 0 : at - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - origin);
+        if (delay > 0) {
+            return after(delay).thenComposeAsync(v -> runInstruction(performance, show, instruction, origin, gates),
+                    mExecutor);
+        }
+        Action action;
+        switch (show.get(instruction, ShowScript.F_OP)) {
+            case ShowScript.OP_SAY:
+                action = Action.tts(show.getString(show.get(instruction, ShowScript.F_A)));
+                break;
+            case ShowScript.OP_PLAY:
+                action = Action.motion(show.getString(show.get(instruction, ShowScript.F_A)));
+                break;
+            case ShowScript.OP_LED:
+                int color = show.get(instruction, ShowScript.F_C);
+                action = Action.led(show.get(instruction, ShowScript.F_A), show.get(instruction, ShowScript.F_B),
+                        (color >> 16) & 0xff, (color >> 8) & 0xff, color & 0xff);
+                break;
+            case ShowScript.OP_MOTOR:
+                action = Action.motor(show.get(instruction, ShowScript.F_A),
+                        show.getFloat(instruction, ShowScript.F_B), show.getFloat(instruction, ShowScript.F_C));
+                break;
+            case ShowScript.OP_WAIT:
+                action = Action.pause(show.get(instruction, ShowScript.F_A));
+                break;
+            case ShowScript.OP_SYNC:
+                action = null;
+                break;
+            default:
+                throw new IllegalStateException("bad op at " + instruction);
+        }
+        int timeout = show.get(instruction, ShowScript.F_TIMEOUT);
+        long timeoutMillis = timeout == ShowScript.NO_TIME ? DEFAULT_STEP_TIMEOUT_MS : timeout;
+        if (action == null) {
+            int sync = show.get(instruction, ShowScript.F_A);
+            return failAfter(gates.arrive(sync), "sync " + sync, timeoutMillis);
+        }
+        return runAction(action, timeoutMillis);
+    }
+
+    /**
+     * Start an action of a show, which fails the show unless it ends within {@code timeoutMillis}.
+     */
+    private CompletableFuture<Void> runAction(Action action, long timeoutMillis) {
+        CompletableFuture<Void> future = start(action);
+        mRunning.put(action, future);
+        future.whenCompleteAsync((v, error) -> mRunning.remove(action, future), mExecutor);
+        return failAfter(future, action.toString(), timeoutMillis);
+    }
+
+    /**
+     * Fail the show unless {@code future} completes within {@code timeoutMillis}.
+     */
+    private CompletableFuture<Void> failAfter(CompletableFuture<Void> future, String what, long timeoutMillis) {
+        ScheduledFuture<?> timeout = mExecutor.schedule(() -> {
+            if (!future.isDone()) {
+                Log.w(TAG, what + " timed out");
+                stopStep(new TimeoutException(what + " took over " + timeoutMillis + " ms"));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((v, error) -> timeout.cancel(false));
+        return future;
+    }
+
+    /**
+     * Sync points of a running show, only touched on the choreography thread.
+     */
+    private static final class Gates {
+        private final int[] mMissing;
+        private final List<CompletableFuture<Void>> mGates = new ArrayList<>();
+
+        Gates(ShowScript show) {
+            mMissing = new int[show.getSyncCount()];
+            for (int sync = 0; sync < mMissing.length; sync++) {
+                mMissing[sync] = show.getSyncParties(sync);
+                mGates.add(new CompletableFuture<>());
+            }
+        }
+
+        /**
+         * @return future completed when the last track arrived at {@code sync}
+         */
+        CompletableFuture<Void> arrive(int sync) {
+            if (--mMissing[sync] == 0) {
+                mGates.get(sync).complete(null);
+            }
+            return mGates.get(sync);
+        }
+    }
+
+    private CompletableFuture<Void> start(Action action) {
+        try {
+            return action.start(this);
+        } catch (RuntimeException e) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    /**
+     * Stop the actions still running and end the step, on the choreography thread.
+     * @param reason exception the step fails with, null if it is over anyway
+     */
+    private void stopStep(Throwable reason) {
+        for (Map.Entry<Action, CompletableFuture<Void>> entry : new ArrayList<>(mRunning.entrySet())) {
+            if (!entry.getValue().isDone()) {
+                entry.getKey().cancel(this);
+            }
+        }
+        mRunning.clear();
+        // the stopped actions still get their end event, waiters never sent are dropped
+        boolean stopped = false;
+        for (ArrayDeque<Waiter> waiters : allWaiters()) {
+            waiters.removeIf(waiter -> !waiter.sent);
+            stopped |= !waiters.isEmpty();
+        }
+        mMotionWaiters.values().removeIf(ArrayDeque::isEmpty);
+        long generation = ++mGeneration;
+        if (stopped) {
+            mExecutor.schedule(() -> expireStopped(generation), STOP_GRACE_MS, TimeUnit.MILLISECONDS);
+        }
+        CompletableFuture<Void> step = mStep;
+        mStep = null;
+        if (step != null && !step.isDone()) {
+            step.completeExceptionally(reason != null ? reason : new CancellationException("stopped"));
+        }
+    }
+
+    /**
+     * @return future completed on the choreography thread after {@code millis}
+     */
+    private CompletableFuture<Void> after(long millis) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        mExecutor.schedule(() -> done.complete(null), millis, TimeUnit.MILLISECONDS);
+        return done;
+    }
+}
@@ -0,0 +1,12 @@
+package com.nuwarobotics.example.motion.choreography;
+
+import java.io.IOException;
+
+/**
+ * The JSON is not a show script the loader understands.
+ */
+public class ShowFormatException extends IOException {
+    public ShowFormatException(String message, String path) {
+        super(message + " at " + path);
+    }
+}
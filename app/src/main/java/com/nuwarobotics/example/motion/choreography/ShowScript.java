@@ -0,0 +1,98 @@
+package com.nuwarobotics.example.motion.choreography;
+
+/**
+ * A compiled interaction script, see {@link ShowScriptLoader} for its JSON form. Immutable and shared through the
+ * loader's cache, so a show parsed once is performed again without touching its JSON.
+ *
+ * Each track is a run of fixed size instructions in one int array: op code, start offset, timeout and three
+ * operands; texts and motion names are indexes into a string pool, motor angles and speeds float bits.
+ * {@link Choreography#perform(ShowScript)} plays the tracks side by side, each track one instruction after the other.
+ */
+public final class ShowScript {
+    static final int OP_SAY = 1;
+    static final int OP_PLAY = 2;
+    static final int OP_LED = 3;
+    static final int OP_MOTOR = 4;
+    static final int OP_WAIT = 5;
+    static final int OP_SYNC = 6;
+
+    static final int STRIDE = 6;
+    static final int F_OP = 0;
+    // ms from the start of the show, NO_TIME to start right after the instruction before
+    static final int F_AT = 1;
+    // ms, NO_TIME for the default
+    static final int F_TIMEOUT = 2;
+    static final int F_A = 3;
+    static final int F_B = 4;
+    static final int F_C = 5;
+    static final int NO_TIME = -1;
+
+    private final String mName;
+    private final String mHash;
+    private final int[] mCode;
+    private final int[] mTrackStarts;
+    private final String[] mStrings;
+    // per sync label, how many tracks meet there
+    private final int[] mSyncParties;
+
+    ShowScript(String name, String hash, int[] code, int[] trackStarts, String[] strings, int[] syncParties) {
+        mName = name;
+        mHash = hash;
+        mCode = code;
+        mTrackStarts = trackStarts;
+        mStrings = strings;
+        mSyncParties = syncParties;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return hash of the JSON the script was compiled from
+     */
+    public String getHash() {
+        return mHash;
+    }
+
+    public int getTrackCount() {
+        return mTrackStarts.length - 1;
+    }
+
+    public int getInstructionCount() {
+        return mCode.length / STRIDE;
+    }
+
+    int getTrackStart(int track) {
+        return mTrackStarts[track];
+    }
+
+    int getTrackEnd(int track) {
+        return mTrackStarts[track + 1];
+    }
+
+    int get(int instruction, int field) {
+        return mCode[instruction * STRIDE + field];
+    }
+
+    float getFloat(int instruction, int field) {
+        return Float.intBitsToFloat(get(instruction, field));
+    }
+
+    String getString(int index) {
+        return mStrings[index];
+    }
+
+    int getSyncCount() {
+        return mSyncParties.length;
+    }
+
+    int getSyncParties(int sync) {
+        return mSyncParties[sync];
+    }
+
+    @Override
+    public String toString() {
+        return mName + " " + getTrackCount() + " tracks, " + getInstructionCount() + " instructions";
+    }
+}
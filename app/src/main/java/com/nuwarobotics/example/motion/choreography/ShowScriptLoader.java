@@ -0,0 +1,352 @@
+package com.nuwarobotics.example.motion.choreography;
+
+import android.content.Context;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.nuwarobotics.example.motion.player.Motors;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles JSON show scripts into {@link ShowScript}s, streaming through the JSON with Gson's {@link JsonReader}
+ * without building a tree. Compiled scripts are cached by a hash of their bytes, loading the same show again only
+ * hashes it.
+ * <pre>
+ * {
+ *   "name": "hello",
+ *   "tracks": [
+ *     {"name": "voice", "events": [{"say": "Hello"}, {"sync": "bow"}, {"say": "I am Kebbi", "timeout": 8000}]},
+ *     {"name": "body", "events": [{"play": "666_RE_Hello"}, {"sync": "bow"}, {"at": 1500, "motor": "neck_z", "degree": 20, "speed": 40}]},
+ *     {"name": "light", "events": [{"led": 1, "color": "#00ff80", "brightness": 200}, {"wait": 500}, {"led": 1, "color": "#000000"}]}
+ *   ]
+ * }
+ * </pre>
+ * Tracks play side by side, the events of a track one after the other. Event kinds: {@code say} (TTS), {@code play}
+ * (robot motion), {@code led} (1 face, 2 chest, 3 left hand, 4 right hand), {@code motor} (name as in motion files
+ * or id), {@code wait} (ms) and {@code sync}, where the tracks that name the same label wait for each other.
+ * Any event may have {@code at}, the earliest ms from the start of the show it starts at, and {@code timeout} in ms.
+ */
+public final class ShowScriptLoader {
+    // compiled scripts kept for shows loaded again
+    private static final int CACHE_SIZE = 16;
+    private static final float DEFAULT_MOTOR_SPEED = 30;
+    private static final int DEFAULT_BRIGHTNESS = 255;
+
+    private static final Map<String, ShowScript> sCache = new LinkedHashMap<String, ShowScript>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ShowScript> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private ShowScriptLoader() {
+    }
+
+    public static ShowScript loadAsset(Context context, String path) throws IOException {
+        try (InputStream in = context.getAssets().open(path)) {
+            return load(in);
+        }
+    }
+
+    public static ShowScript load(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return load(in);
+        }
+    }
+
+    /**
+     * @param in JSON of a show, read to its end but not closed
+     */
+    public static ShowScript load(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return load(bytes.toByteArray());
+    }
+
+    public static ShowScript load(byte[] json) throws IOException {
+        String hash = hashOf(json);
+        synchronized (sCache) {
+            ShowScript cached = sCache.get(hash);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        ShowScript script;
+        JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8));
+        try {
+            script = new Compiler(hash).compile(reader);
+        } catch (IllegalStateException | NumberFormatException e) {
+            // thrown by JsonReader for a value of the wrong type
+            throw new ShowFormatException(e.getMessage(), reader.getPath());
+        } finally {
+            reader.close();
+        }
+        synchronized (sCache) {
+            sCache.put(hash, script);
+        }
+        return script;
+    }
+
+    private static String hashOf(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * One pass over the JSON, appending instructions as events are read.
+     */
+    private static final class Compiler {
+        private final String mHash;
+        private int[] mCode = new int[64 * ShowScript.STRIDE];
+        private int mSize;
+        private final List<Integer> mTrackStarts = new ArrayList<>();
+        private final List<String> mStrings = new ArrayList<>();
+        private final Map<String, Integer> mStringIndex = new HashMap<>();
+        private final Map<String, Integer> mSyncIndex = new HashMap<>();
+        private final List<Integer> mSyncParties = new ArrayList<>();
+        private final Set<String> mTrackSyncs = new HashSet<>();
+        private String mName = "";
+
+        Compiler(String hash) {
+            mHash = hash;
+        }
+
+        ShowScript compile(JsonReader reader) throws IOException {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                if ("name".equals(key)) {
+                    mName = reader.nextString();
+                } else if ("tracks".equals(key)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readTrack(reader);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (mTrackStarts.isEmpty()) {
+                throw new ShowFormatException("no tracks", reader.getPath());
+            }
+            int[] trackStarts = new int[mTrackStarts.size() + 1];
+            for (int i = 0; i < mTrackStarts.size(); i++) {
+                trackStarts[i] = mTrackStarts.get(i);
+            }
+            trackStarts[mTrackStarts.size()] = mSize / ShowScript.STRIDE;
+            int[] syncParties = new int[mSyncParties.size()];
+            for (int i = 0; i < syncParties.length; i++) {
+                syncParties[i] = mSyncParties.get(i);
+            }
+            return new ShowScript(mName, mHash, Arrays.copyOf(mCode, mSize), trackStarts,
+                    mStrings.toArray(new String[0]), syncParties);
+        }
+
+        private void readTrack(JsonReader reader) throws IOException {
+            mTrackStarts.add(mSize / ShowScript.STRIDE);
+            mTrackSyncs.clear();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("events".equals(reader.nextName())) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readEvent(reader);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+
+        private void readEvent(JsonReader reader) throws IOException {
+            int op = 0;
+            int at = ShowScript.NO_TIME;
+            int timeout = ShowScript.NO_TIME;
+            String text = null;
+            int number = 0;
+            float degree = 0;
+            float speed = DEFAULT_MOTOR_SPEED;
+            int brightness = DEFAULT_BRIGHTNESS;
+            int color = 0xffffff;
+            String path = reader.getPath();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String key = reader.nextName();
+                switch (key) {
+                    case "at":
+                        at = readMillis(reader);
+                        break;
+                    case "timeout":
+                        timeout = readMillis(reader);
+                        break;
+                    case "say":
+                        op = setOp(op, ShowScript.OP_SAY, path);
+                        text = reader.nextString();
+                        break;
+                    case "play":
+                        op = setOp(op, ShowScript.OP_PLAY, path);
+                        text = reader.nextString();
+                        break;
+                    case "sync":
+                        op = setOp(op, ShowScript.OP_SYNC, path);
+                        text = reader.nextString();
+                        break;
+                    case "wait":
+                        op = setOp(op, ShowScript.OP_WAIT, path);
+                        number = readMillis(reader);
+                        break;
+                    case "led":
+                        op = setOp(op, ShowScript.OP_LED, path);
+                        number = reader.nextInt();
+                        break;
+                    case "motor":
+                        op = setOp(op, ShowScript.OP_MOTOR, path);
+                        if (reader.peek() == JsonToken.STRING) {
+                            String motor = reader.nextString();
+                            number = Motors.idOf(motor);
+                            if (number == Motors.UNKNOWN) {
+                                throw new ShowFormatException("unknown motor " + motor, path);
+                            }
+                        } else {
+                            number = reader.nextInt();
+                        }
+                        break;
+                    case "degree":
+                        degree = (float) reader.nextDouble();
+                        break;
+                    case "speed":
+                        speed = (float) reader.nextDouble();
+                        break;
+                    case "brightness":
+                        brightness = reader.nextInt();
+                        break;
+                    case "color":
+                        color = parseColor(reader.nextString(), path);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            switch (op) {
+                case ShowScript.OP_SAY:
+                case ShowScript.OP_PLAY:
+                    emit(op, at, timeout, intern(text), 0, 0);
+                    break;
+                case ShowScript.OP_SYNC:
+                    emit(op, at, timeout, sync(text, path), 0, 0);
+                    break;
+                case ShowScript.OP_WAIT:
+                    emit(op, at, timeout, number, 0, 0);
+                    break;
+                case ShowScript.OP_LED:
+                    emit(op, at, timeout, number, brightness, color);
+                    break;
+                case ShowScript.OP_MOTOR:
+                    emit(op, at, timeout, number, Float.floatToIntBits(degree), Float.floatToIntBits(speed));
+                    break;
+                default:
+                    throw new ShowFormatException("event without say, play, led, motor, wait or sync", path);
+            }
+        }
+
+        private static int setOp(int op, int next, String path) throws ShowFormatException {
+            if (op != 0) {
+                throw new ShowFormatException("event with two kinds", path);
+            }
+            return next;
+        }
+
+        private static int readMillis(JsonReader reader) throws IOException {
+            long millis = reader.nextLong();
+            if (millis < 0 || millis > Integer.MAX_VALUE) {
+                throw new ShowFormatException("bad time " + millis, reader.getPath());
+            }
+            return (int) millis;
+        }
+
+        private static int parseColor(String color, String path) throws ShowFormatException {
+            if (color.length() != 7 || color.charAt(0) != '#') {
+                throw new ShowFormatException("bad color " + color + ", expected #rrggbb", path);
+            }
+            try {
+                return Integer.parseInt(color.substring(1), 16);
+            } catch (NumberFormatException e) {
+                throw new ShowFormatException("bad color " + color, path);
+            }
+        }
+
+        private int intern(String text) {
+            Integer index = mStringIndex.get(text);
+            if (index == null) {
+                index = mStrings.size();
+                mStrings.add(text);
+                mStringIndex.put(text, index);
+            }
+            return index;
+        }
+
+        private int sync(String label, String path) throws ShowFormatException {
+            if (!mTrackSyncs.add(label)) {
+                throw new ShowFormatException("sync " + label + " twice in one track", path);
+            }
+            Integer index = mSyncIndex.get(label);
+            if (index == null) {
+                index = mSyncParties.size();
+                mSyncParties.add(0);
+                mSyncIndex.put(label, index);
+            }
+            mSyncParties.set(index, mSyncParties.get(index) + 1);
+            return index;
+        }
+
+        private void emit(int op, int at, int timeout, int a, int b, int c) {
+            if (mSize + ShowScript.STRIDE > mCode.length) {
+                mCode = Arrays.copyOf(mCode, mCode.length * 2);
+            }
+            mCode[mSize + ShowScript.F_OP] = op;
+            mCode[mSize + ShowScript.F_AT] = at;
+            mCode[mSize + ShowScript.F_TIMEOUT] = timeout;
+            mCode[mSize + ShowScript.F_A] = a;
+            mCode[mSize + ShowScript.F_B] = b;
+            mCode[mSize + ShowScript.F_C] = c;
+            mSize += ShowScript.STRIDE;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.nuwarobotics.example.motion.compact;
+
+import com.nuwarobotics.example.motion.model.Motion;
+import com.nuwarobotics.example.motion.model.MotorTrack;
+import com.nuwarobotics.example.motion.model.Timeline;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A motion in the compact form written by {@link CompactMotionWriter}.
+ * Opening only reads the header and the motor names, the keys of a track are expanded on first use.
+ */
+public final class CompactMotion implements Timeline {
+    private final String mName;
+    private final float mFps;
+    private final int mFrameCount;
+    private final String[] mMotors;
+    private final ByteBuffer[] mTrackData;
+    private final MotorTrack[] mTracks;
+
+    private CompactMotion(ByteBuffer content) throws IOException {
+        ByteBuffer buffer = content.duplicate().order(ByteOrder.BIG_ENDIAN);
+        DataInputStream in = new DataInputStream(new BufferInputStream(buffer));
+        if (in.readInt() != CompactMotionWriter.MAGIC) {
+            throw new IOException("not a compact motion");
+        }
+        short version = in.readShort();
+        if (version != CompactMotionWriter.VERSION) {
+            throw new IOException("unsupported compact motion version " + version);
+        }
+        mName = in.readBoolean() ? in.readUTF() : null;
+        mFps = in.readFloat();
+        mFrameCount = in.readInt();
+        int trackCount = in.readInt();
+        if (!(mFps > 0) || trackCount < 0 || trackCount > buffer.remaining()) {
+            throw new IOException("broken compact motion header");
+        }
+        mMotors = new String[trackCount];
+        mTrackData = new ByteBuffer[trackCount];
+        mTracks = new MotorTrack[trackCount];
+        for (int i = 0; i < trackCount; i++) {
+            int length = in.readInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IOException("broken compact motion track " + i);
+            }
+            ByteBuffer track = buffer.slice();
+            track.limit(length);
+            mTrackData[i] = track;
+            mMotors[i] = new DataInputStream(new BufferInputStream(track.duplicate())).readUTF();
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    public static CompactMotion read(ByteBuffer content) throws IOException {
+        return new CompactMotion(content);
+    }
+
+    public static CompactMotion open(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            return new CompactMotion(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public float getFps() {
+        return mFps;
+    }
+
+    @Override
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    @Override
+    public int getTrackCount() {
+        return mMotors.length;
+    }
+
+    @Override
+    public String getMotor(int track) {
+        return mMotors[track];
+    }
+
+    /**
+     * @throws IllegalStateException if the track data is corrupt
+     */
+    @Override
+    public void poseAt(float frame, float[] out) {
+        for (int i = 0; i < mMotors.length; i++) {
+            out[i] = getTrack(i).valueAt(frame);
+        }
+    }
+
+    /**
+     * @return the expanded track, decoded on first call
+     * @throws IllegalStateException if the track data is corrupt
+     */
+    public synchronized MotorTrack getTrack(int track) {
+        if (mTracks[track] == null) {
+            try {
+                mTracks[track] = decodeTrack(mTrackData[track].duplicate());
+            } catch (IOException e) {
+                throw new IllegalStateException("corrupt track " + mMotors[track] + " of " + mName, e);
+            }
+            // the expanded track replaces the encoded bytes
+            mTrackData[track] = null;
+        }
+        return mTracks[track];
+    }
+
+    /**
+     * @return all tracks expanded into a regular motion
+     */
+    public Motion toMotion() {
+        List<MotorTrack> tracks = new ArrayList<>(mMotors.length);
+        for (int i = 0; i < mMotors.length; i++) {
+            tracks.add(getTrack(i));
+        }
+        return new Motion(mName, mFps, mFrameCount, tracks);
+    }
+
+    private static MotorTrack decodeTrack(ByteBuffer data) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferInputStream(data));
+        String motor = in.readUTF();
+        int color = in.readInt();
+        byte type = in.readByte();
+        long count = readVarint(in);
+        if (count < 0 || count > data.remaining()) {
+            throw new IOException("bad key count " + count);
+        }
+        int keyCount = (int) count;
+        float[] frames = new float[keyCount];
+        float[] values = new float[keyCount];
+        float[] inAngles = new float[keyCount];
+        float[] inWeights = new float[keyCount];
+        byte[] inTypes = new byte[keyCount];
+        float[] outAngles = new float[keyCount];
+        float[] outWeights = new float[keyCount];
+        byte[] outTypes = new byte[keyCount];
+
+        long frame = 0;
+        long value = 0;
+        long inAngle = 0;
+        long outAngle = 0;
+        for (int i = 0; i < keyCount; i++) {
+            int flags = in.readUnsignedByte();
+            frame += unzigzag(readVarint(in));
+            value += unzigzag(readVarint(in));
+            outAngle += unzigzag(readVarint(in));
+            inAngle = (flags & CompactMotionWriter.FLAG_IN_ANGLE) != 0 ? inAngle + unzigzag(readVarint(in)) : outAngle;
+            frames[i] = (float) frame / CompactMotionWriter.FRAME_SCALE;
+            values[i] = (float) value / CompactMotionWriter.ANGLE_SCALE;
+            inAngles[i] = (float) inAngle / CompactMotionWriter.ANGLE_SCALE;
+            outAngles[i] = (float) outAngle / CompactMotionWriter.ANGLE_SCALE;
+            if ((flags & CompactMotionWriter.FLAG_WEIGHTS) != 0) {
+                inWeights[i] = in.readFloat();
+                outWeights[i] = in.readFloat();
+            }
+            if ((flags & CompactMotionWriter.FLAG_TYPES) != 0) {
+                inTypes[i] = in.readByte();
+                outTypes[i] = in.readByte();
+            } else {
+                inTypes[i] = type;
+                outTypes[i] = type;
+            }
+            if (i > 0 && frames[i] < frames[i - 1]) {
+                throw new IOException("keys out of order");
+            }
+        }
+        return new MotorTrack(motor, color, frames, values,
+                inAngles, inWeights, inTypes, outAngles, outWeights, outTypes);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("varint too long");
+    }
+
+    /**
+     * Lets a DataInputStream read from a buffer without copying it.
+     */
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer mBuffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!mBuffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, mBuffer.remaining());
+            mBuffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.nuwarobotics.example.motion.compact;
+
+import com.nuwarobotics.example.motion.fst.FstMotionParser;
+import com.nuwarobotics.example.motion.model.Motion;
+import com.nuwarobotics.example.motion.model.MotorTrack;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes motions in the compact form read by {@link CompactMotion}.
+ * Can run on a workstation to shrink fst files before they are packed into the apk:
+ * <pre>
+ * java -cp classes com.nuwarobotics.example.motion.compact.CompactMotionWriter 0.5 example_fst_approve.fst approve.cmotion
+ * </pre>
+ *
+ * Layout, big endian:
+ * <pre>
+ * header : int magic "NWCM", short version, name (boolean present, utf), float fps, int frames, int track count
+ * track  : int byte length, utf motor, int color, byte type, varint key count, keys
+ * key    : byte flags, varint frame delta, varint value delta, varint out angle delta,
+ *          [varint in angle delta] [float in weight, float out weight] [byte in type, byte out type]
+ * </pre>
+ * Frames are stored in 1/{@value #FRAME_SCALE} frames, angles in 1/{@value #ANGLE_SCALE} degrees;
+ * deltas are to the previous key of the same track, zigzag encoded.
+ */
+public final class CompactMotionWriter {
+    static final int MAGIC = 0x4E57434D; // "NWCM"
+    static final short VERSION = 1;
+    static final int FRAME_SCALE = 100;
+    static final int ANGLE_SCALE = 100;
+
+    static final int FLAG_IN_ANGLE = 1;
+    static final int FLAG_WEIGHTS = 2;
+    static final int FLAG_TYPES = 4;
+
+    private CompactMotionWriter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: CompactMotionWriter <max error in degrees> <fst file> <output file>");
+            System.exit(1);
+        }
+        File fst = new File(args[1]);
+        Motion motion = FstMotionParser.parse(fst);
+        Motion simplified = KeyframeSimplifier.simplify(motion, Float.parseFloat(args[0]));
+        try (OutputStream out = new FileOutputStream(args[2])) {
+            write(simplified, out);
+        }
+        System.out.println(fst.getName() + ": " + keyCount(motion) + " -> " + keyCount(simplified) + " keys, "
+                + fst.length() + " -> " + new File(args[2]).length() + " bytes");
+    }
+
+    private static int keyCount(Motion motion) {
+        int count = 0;
+        for (MotorTrack track : motion.getTracks()) {
+            count += track.getKeyCount();
+        }
+        return count;
+    }
+
+    /**
+     * Write {@code motion} as is, simplify it with {@link KeyframeSimplifier} first to drop redundant keys.
+     */
+    public static void write(Motion motion, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeBoolean(motion.getName() != null);
+        if (motion.getName() != null) {
+            out.writeUTF(motion.getName());
+        }
+        out.writeFloat(motion.getFps());
+        out.writeInt(motion.getFrameCount());
+        out.writeInt(motion.getTrackCount());
+        ByteArrayOutputStream trackBytes = new ByteArrayOutputStream();
+        for (MotorTrack track : motion.getTracks()) {
+            trackBytes.reset();
+            writeTrack(track, new DataOutputStream(trackBytes));
+            // tracks are length prefixed, so the reader can skip them until they are needed
+            out.writeInt(trackBytes.size());
+            trackBytes.writeTo(out);
+        }
+        out.flush();
+    }
+
+    private static void writeTrack(MotorTrack track, DataOutputStream out) throws IOException {
+        int count = track.getKeyCount();
+        int type = count == 0 ? 0 : track.getOutType(0);
+        out.writeUTF(track.getMotor());
+        out.writeInt(track.getColor());
+        out.writeByte(type);
+        writeVarint(out, count);
+
+        long frame = 0;
+        long value = 0;
+        long inAngle = 0;
+        long outAngle = 0;
+        for (int i = 0; i < count; i++) {
+            long keyFrame = Math.round((double) track.getFrame(i) * FRAME_SCALE);
+            long keyValue = Math.round((double) track.getValue(i) * ANGLE_SCALE);
+            long keyIn = Math.round((double) track.getInAngle(i) * ANGLE_SCALE);
+            long keyOut = Math.round((double) track.getOutAngle(i) * ANGLE_SCALE);
+            boolean weights = track.getInWeight(i) != 0 || track.getOutWeight(i) != 0;
+            boolean types = track.getInType(i) != type || track.getOutType(i) != type;
+            // smooth keys have the same angle on both sides, only store one
+            int flags = (keyIn != keyOut ? FLAG_IN_ANGLE : 0) | (weights ? FLAG_WEIGHTS : 0) | (types ? FLAG_TYPES : 0);
+
+            out.writeByte(flags);
+            writeVarint(out, zigzag(keyFrame - frame));
+            writeVarint(out, zigzag(keyValue - value));
+            writeVarint(out, zigzag(keyOut - outAngle));
+            if ((flags & FLAG_IN_ANGLE) != 0) {
+                writeVarint(out, zigzag(keyIn - inAngle));
+            }
+            if (weights) {
+                out.writeFloat(track.getInWeight(i));
+                out.writeFloat(track.getOutWeight(i));
+            }
+            if (types) {
+                out.writeByte(track.getInType(i));
+                out.writeByte(track.getOutType(i));
+            }
+            frame = keyFrame;
+            value = keyValue;
+            inAngle = keyIn;
+            outAngle = keyOut;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,149 @@
+package com.nuwarobotics.example.motion.compact;
+
+import com.nuwarobotics.example.motion.model.Curves;
+import com.nuwarobotics.example.motion.model.Motion;
+import com.nuwarobotics.example.motion.model.MotorTrack;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drops keys that don't change a curve by more than a given angle, Ramer-Douglas-Peucker style:
+ * keep the first and last key, and split at the key where the shortened curve is furthest from the original,
+ * until every part is within the bound. Kept keys keep their handles.
+ * The error is measured in motor degrees along the curve, sampled every {@link #SAMPLE_STEP} frames.
+ */
+public final class KeyframeSimplifier {
+    static final float SAMPLE_STEP = 0.25f;
+
+    private KeyframeSimplifier() {
+    }
+
+    /**
+     * @param maxError largest allowed deviation from the original curve, in degrees
+     */
+    public static Motion simplify(Motion motion, float maxError) {
+        List<MotorTrack> tracks = new ArrayList<>(motion.getTrackCount());
+        for (MotorTrack track : motion.getTracks()) {
+            tracks.add(simplify(track, maxError));
+        }
+        return new Motion(motion.getName(), motion.getFps(), motion.getFrameCount(), tracks);
+    }
+
+    /**
+     * @param maxError largest allowed deviation from the original curve, in degrees
+     * @return {@code track} itself if no key can be dropped
+     */
+    public static MotorTrack simplify(MotorTrack track, float maxError) {
+        int count = track.getKeyCount();
+        if (count <= 2) {
+            return track;
+        }
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+        // explicit stack instead of recursion, dense tracks can have thousands of keys
+        int[] stack = new int[2 * count];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            if (last - first < 2) {
+                continue;
+            }
+            int split = worstKey(track, first, last, maxError);
+            if (split >= 0) {
+                keep[split] = true;
+                stack[top++] = first;
+                stack[top++] = split;
+                stack[top++] = split;
+                stack[top++] = last;
+            }
+        }
+
+        int kept = 0;
+        for (boolean k : keep) {
+            if (k) {
+                kept++;
+            }
+        }
+        if (kept == count) {
+            return track;
+        }
+        float[] frames = new float[kept];
+        float[] values = new float[kept];
+        float[] inAngles = new float[kept];
+        float[] inWeights = new float[kept];
+        byte[] inTypes = new byte[kept];
+        float[] outAngles = new float[kept];
+        float[] outWeights = new float[kept];
+        byte[] outTypes = new byte[kept];
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            if (!keep[i]) {
+                continue;
+            }
+            frames[j] = track.getFrame(i);
+            values[j] = track.getValue(i);
+            inAngles[j] = track.getInAngle(i);
+            inWeights[j] = track.getInWeight(i);
+            inTypes[j] = (byte) track.getInType(i);
+            outAngles[j] = track.getOutAngle(i);
+            outWeights[j] = track.getOutWeight(i);
+            outTypes[j] = (byte) track.getOutType(i);
+            j++;
+        }
+        return new MotorTrack(track.getMotor(), track.getColor(), frames, values,
+                inAngles, inWeights, inTypes, outAngles, outWeights, outTypes);
+    }
+
+    /**
+     * Compare the curve from key {@code first} straight to key {@code last} with the original one.
+     * @return the inner key closest to the largest deviation, -1 if the deviation stays within {@code maxError}
+     */
+    private static int worstKey(MotorTrack track, int first, int last, float maxError) {
+        float frame0 = track.getFrame(first);
+        float value0 = track.getValue(first);
+        float outAngle = track.getOutAngle(first);
+        float frame1 = track.getFrame(last);
+        float value1 = track.getValue(last);
+        float inAngle = track.getInAngle(last);
+
+        float worstError = maxError;
+        float worstFrame = Float.NaN;
+        for (float frame = frame0; frame <= frame1; frame += SAMPLE_STEP) {
+            float error = Math.abs(track.valueAt(frame)
+                    - Curves.interpolate(frame0, value0, outAngle, frame1, value1, inAngle, frame));
+            if (error > worstError) {
+                worstError = error;
+                worstFrame = frame;
+            }
+        }
+        // keys between the samples matter too
+        for (int key = first + 1; key < last; key++) {
+            float frame = track.getFrame(key);
+            float error = Math.abs(track.getValue(key)
+                    - Curves.interpolate(frame0, value0, outAngle, frame1, value1, inAngle, frame));
+            if (error > worstError) {
+                worstError = error;
+                worstFrame = frame;
+            }
+        }
+        if (Float.isNaN(worstFrame)) {
+            return -1;
+        }
+
+        int best = first + 1;
+        float bestDistance = Float.MAX_VALUE;
+        for (int key = first + 1; key < last; key++) {
+            float distance = Math.abs(track.getFrame(key) - worstFrame);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = key;
+            }
+        }
+        return best;
+    }
+}
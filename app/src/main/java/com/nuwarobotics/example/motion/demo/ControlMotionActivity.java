@@ -1,24 +1,57 @@
 package com.nuwarobotics.example.motion.demo;
 
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.text.method.ScrollingMovementMethod;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.PopupMenu;
+import android.widget.SeekBar;
 import android.widget.TextView;
 
 import com.nuwarobotics.example.R;
 import com.nuwarobotics.example.motion.base.BaseAppCompatActivity;
+import com.nuwarobotics.example.motion.catalog.MotionIndex;
+import com.nuwarobotics.example.motion.catalog.MotionMetadataCache;
+import com.nuwarobotics.example.motion.fst.FstMotionParser;
+import com.nuwarobotics.example.motion.model.Motion;
+import com.nuwarobotics.example.motion.player.MotionPlayer;
+import com.nuwarobotics.example.motion.stats.MotionLatencyTracker;
+import com.nuwarobotics.example.util.AssetStagingTask;
+import com.nuwarobotics.example.util.FileUtil;
 import com.nuwarobotics.service.IClientId;
 import com.nuwarobotics.service.agent.NuwaRobotAPI;
 import com.nuwarobotics.service.agent.RobotEventCallback;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
 public class ControlMotionActivity extends BaseAppCompatActivity implements View.OnClickListener{
     private NuwaRobotAPI mRobotAPI;
     private IClientId mClientId;
 
     private TextView mTexPlayStatus;
+    private TextView mTexTempo;
+    private EditText mEditFilter;
+    private TextView mTexFilterResult;
+    private MotionIndex.Filter mMotionFilter;
+    private List<String> mShownMotions;
+
+    // Motions played by the app itself can change tempo while playing and cross-fade into each other,
+    // motionPlay can't; each click plays the next one, also while the last one still plays
+    private final String[] LOCAL_MOTIONS = {"example_fst_approve.fst", "example_fst_touching.fst"};
+    private int mNextLocalMotion;
+    private final String EXTERNAL_FOLDER = "MyAssets";
+    private MotionPlayer mPlayer;
+    private AssetStagingTask mStaging;
+    private MotionMetadataCache mMetadataCache;
+    // commands go through the tracker, so their latency shows on the motion latency screen
+    private final MotionLatencyTracker mLatencyTracker = MotionLatencyTracker.getInstance();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -30,22 +63,63 @@ public class ControlMotionActivity extends BaseAppCompatActivity implements View
         mRobotAPI = new NuwaRobotAPI(this, mClientId);
         mRobotAPI.registerRobotEventListener(robotEventCallback); //listen callback of robot service event
 
+        // Durations and moved motors learned from prepare events and fst files, kept across starts
+        mMetadataCache = MotionMetadataCache.getInstance(this);
+
+        mStaging = FileUtil.copyAssetsToDstAsync(this, "motion_bin", FileUtil.getExternalAssetFolder(EXTERNAL_FOLDER), null);
     }
 
+    private MotionPlayer.Listener playerListener = new MotionPlayer.Listener() {
+        @Override
+        public void onStartOfMotionPlay(String motion) {
+            showEventMsg("[Local]Start playing Motion... ,Motion: " + motion);
+            mMetadataCache.onPlayed(motion);
+        }
+
+        @Override
+        public void onPauseOfMotionPlay(String motion) {
+            showEventMsg("[Local]Pausing Motion... ,Motion: " + motion);
+        }
+
+        @Override
+        public void onPlayBackOfMotionPlay(String motion) {
+            showEventMsg("[Local]Playing Motion... ,Motion: " + motion);
+        }
+
+        @Override
+        public void onStopOfMotionPlay(String motion) {
+            showEventMsg("[Local]Stop playing Motion... ,Motion: " + motion);
+        }
+
+        @Override
+        public void onCompleteOfMotionPlay(String motion) {
+            showEventMsg("[Local]Playing Motion is complete!!! Motion: " + motion);
+        }
+
+        @Override
+        public void onErrorOfMotionPlay(int i) {
+            showEventMsg("[Local]When playing Motion, error happen!!! error code: " + i);
+        }
+    };
+
     private RobotEventCallback robotEventCallback = new RobotEventCallback() {
         @Override
         public void onStartOfMotionPlay(String motion) {
             showEventMsg("[Event]Start playing Motion... ,Motion: " + motion);
+            mLatencyTracker.onStartOfMotionPlay(motion);
+            mMetadataCache.onPlayed(motion);
         }
 
         @Override
         public void onStopOfMotionPlay(String motion) {
             showEventMsg("[Event]Stop playing Motion... ,Motion: " + motion);
+            mLatencyTracker.onStopOfMotionPlay(motion);
         }
 
         @Override
         public void onCompleteOfMotionPlay(String motion) {
             showEventMsg("[Event]Playing Motion is complete!!! Motion: " + motion);
+            mLatencyTracker.onCompleteOfMotionPlay(motion);
         }
 
         @Override
@@ -56,6 +130,7 @@ public class ControlMotionActivity extends BaseAppCompatActivity implements View
         @Override
         public void onErrorOfMotionPlay(int i) {
             showEventMsg("[Event]When playing Motion, error happen!!! error code: " + i);
+            mLatencyTracker.onErrorOfMotionPlay(i);
         }
 
         @Override
@@ -67,15 +142,30 @@ public class ControlMotionActivity extends BaseAppCompatActivity implements View
         public void onPrepareMotion(boolean isError, String motion, float duration) {
             showEventMsg("[Event]Prepare status, isError: " + isError + " ,Motion: " + motion
                 + " ,duration: " + duration);
+            mMetadataCache.onPrepareMotion(isError, motion, duration);
         }
 
     };
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // onStop releases the player, a restarted activity plays local motions again
+        if (mPlayer == null) {
+            mPlayer = new MotionPlayer(mRobotAPI);
+            mPlayer.setListener(playerListener);
+        }
+    }
+
     @Override
     protected void onStop(){
         super.onStop();
 
         //Step 3 : Release robotAPI before closing activity
+        if(mPlayer != null){
+            mPlayer.release();
+            mPlayer = null;
+        }
         if(mRobotAPI != null){
             mRobotAPI.release();
         }
@@ -111,6 +201,7 @@ public class ControlMotionActivity extends BaseAppCompatActivity implements View
                 R.id.btn_pause,
                 R.id.btn_resume,
                 R.id.btn_stop,
+                R.id.btn_play_local,
         };
 
         for(int resId : btnResIdList){
@@ -120,6 +211,71 @@ public class ControlMotionActivity extends BaseAppCompatActivity implements View
                 btn.setOnClickListener(this);
             }
         }
+
+        String[] itemList = {
+                "666_RE_Bye",
+                "666_TA_LookRL",
+                "666_PE_Killed",
+                "666_DA_Scratching",
+                "666_IM_Rooster",
+                "666_TA_LookLR",
+                "666_PE_PlayGuitar",
+                "666_DA_PickUp"};
+        //The motion menu shows the motions matching the filter field, e.g. "TA" or "look"
+        mMotionFilter = MotionIndex.build(Arrays.asList(itemList)).newFilter();
+        mEditFilter = findViewById(R.id.edit_filter_motions);
+        mTexFilterResult = findViewById(R.id.filter_result);
+        showFilterResult(mMotionFilter.update(""));
+        mEditFilter.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                showFilterResult(mMotionFilter.update(s.toString()));
+            }
+        });
+
+        //Tempo from 0.25x to 4x, the middle of the bar is the authored speed
+        mTexTempo = findViewById(R.id.tempo_label);
+        mTexTempo.setText(getString(R.string.txt_tempo, 1f));
+        SeekBar seekTempo = findViewById(R.id.seek_tempo);
+        seekTempo.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                float tempo = (float) Math.pow(2, (progress - 100) / 50.0);
+                mTexTempo.setText(getString(R.string.txt_tempo, tempo));
+                if (mPlayer != null) {
+                    mPlayer.setTempo(tempo);
+                }
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+            }
+        });
+    }
+
+    private void showFilterResult(List<String> motions) {
+        // most keys typed don't change the result
+        if (motions.equals(mShownMotions)) {
+            return;
+        }
+        mShownMotions = motions;
+        mTexFilterResult.setText(getString(R.string.txt_filter_result, motions.size(), TextUtils.join(", ", motions)));
+    }
+
+    private boolean isLocalPlayback() {
+        return mPlayer != null && mPlayer.getState() != MotionPlayer.STATE_IDLE;
     }
 
     @Override
@@ -180,36 +336,72 @@ public class ControlMotionActivity extends BaseAppCompatActivity implements View
             popup.getMenuInflater().inflate(R.menu.popup_menu_querymotions, popup.getMenu());
             popup.getMenu().clear();
 
-            String[] itemList = {
-                    "666_RE_Bye",
-                    "666_TA_LookRL",
-                    "666_PE_Killed",
-                    "666_DA_Scratching",
-                    "666_IM_Rooster",
-                    "666_TA_LookLR",
-                    "666_PE_PlayGuitar",
-                    "666_DA_PickUp"};
-
-            for (String item : itemList) {
+            for (String item : mMotionFilter.update(mEditFilter.getText().toString())) {
                 popup.getMenu().add(item);
             }
 
             popup.setOnMenuItemClickListener((item) -> {
-                mRobotAPI.motionStop(true);
-                mRobotAPI.motionPlay(item.getTitle().toString(), false);
+                if (isLocalPlayback()) {
+                    mPlayer.stop();
+                }
+                mLatencyTracker.stop(mRobotAPI, true);
+                String motion = item.getTitle().toString();
+                long duration = mMetadataCache.getDurationMillis(motion);
+                if (duration != MotionMetadataCache.UNKNOWN) {
+                    showEventMsg("Motion " + motion + " lasts " + duration + " ms");
+                }
+                mLatencyTracker.play(mRobotAPI, motion, false);
+                // the robot leaves the last local pose, the next local motion must not fade from it
+                if (mPlayer != null) {
+                    mPlayer.forgetPose();
+                }
                 return true;
             });
 
             popup.show();
+        } else if (id == R.id.btn_play_local) {
+            showEventMsg("[Click Button]Play local");
+            mLatencyTracker.stop(mRobotAPI, true);
+            String motion = LOCAL_MOTIONS[mNextLocalMotion];
+            mNextLocalMotion = (mNextLocalMotion + 1) % LOCAL_MOTIONS.length;
+            mStaging.getFile(motion).whenComplete((file, error) -> {
+                if (error != null) {
+                    showEventMsg("Motion file not ready: " + error.getMessage());
+                    return;
+                }
+                MotionPlayer player = mPlayer;
+                if (player == null) {
+                    return;
+                }
+                try {
+                    Motion parsed = FstMotionParser.parse(file);
+                    mMetadataCache.put(MotionMetadataCache.keyOf(parsed.getName(), file), parsed);
+                    player.play(parsed);
+                } catch (IOException e) {
+                    showEventMsg("Can't read " + file + ": " + e.getMessage());
+                }
+            });
         } else if (id == R.id.btn_pause) {
             showEventMsg("[Click Button]Pause");
-            mRobotAPI.motionPause();
+            if (isLocalPlayback()) {
+                mPlayer.pause();
+            } else {
+                mRobotAPI.motionPause();
+            }
         } else if (id == R.id.btn_resume) {
             showEventMsg("[Click Button]Resume");
-            mRobotAPI.motionResume();
+            if (isLocalPlayback()) {
+                mPlayer.resume();
+            } else {
+                mRobotAPI.motionResume();
+            }
         } else if (id == R.id.btn_stop) {
             showEventMsg("[Click Button]Stop");
-            mRobotAPI.motionStop(true);
+            if (isLocalPlayback()) {
+                mPlayer.stop();
+            } else {
+                mLatencyTracker.stop(mRobotAPI, true);
+            }
         } else if (id == R.id.play_status) {
             mTexPlayStatus.setText("");
         } else {
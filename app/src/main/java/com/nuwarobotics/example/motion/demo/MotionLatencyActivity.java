@@ -0,0 +1,129 @@
+package com.nuwarobotics.example.motion.demo;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.method.ScrollingMovementMethod;
+import android.widget.TextView;
+
+import com.nuwarobotics.example.R;
+import com.nuwarobotics.example.motion.base.BaseAppCompatActivity;
+import com.nuwarobotics.example.motion.stats.MotionLatencyTracker;
+import com.nuwarobotics.service.IClientId;
+import com.nuwarobotics.service.agent.NuwaRobotAPI;
+import com.nuwarobotics.service.agent.RobotEventCallback;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Debug screen of the app wide {@link MotionLatencyTracker}: p50/p95/p99 from motion command to robot event,
+ * per motion, refreshed every second. Compare the numbers before and after a robot SDK upgrade.
+ */
+public class MotionLatencyActivity extends BaseAppCompatActivity {
+    private static final long REFRESH_MS = 1000;
+
+    private NuwaRobotAPI mRobotAPI;
+    private IClientId mClientId;
+
+    private final String MOTION_SAMPLE = "987_EN_HappyBirthdayWaltz";
+    private final MotionLatencyTracker mLatencyTracker = MotionLatencyTracker.getInstance();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private TextView mTexStats;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mTexStats = findViewById(R.id.latency_stats);
+        mTexStats.setMovementMethod(ScrollingMovementMethod.getInstance());
+
+        //Step 1 : Initial Nuwa API Object
+        mClientId = new IClientId(this.getPackageName());
+        mRobotAPI = new NuwaRobotAPI(this, mClientId);
+        mRobotAPI.registerRobotEventListener(robotEventCallback); //listen callback of robot service event
+
+        //Step 2 : Commands sent through the tracker are measured until their event arrives
+        findViewById(R.id.btn_latency_play).setOnClickListener(v -> mLatencyTracker.play(mRobotAPI, MOTION_SAMPLE, false));
+        findViewById(R.id.btn_latency_stop).setOnClickListener(v -> mLatencyTracker.stop(mRobotAPI, true));
+        findViewById(R.id.btn_latency_reset).setOnClickListener(v -> {
+            mLatencyTracker.reset();
+            showStats();
+        });
+    }
+
+    private final Runnable mRefresh = new Runnable() {
+        @Override
+        public void run() {
+            showStats();
+            mHandler.postDelayed(this, REFRESH_MS);
+        }
+    };
+
+    private void showStats() {
+        List<MotionLatencyTracker.Stats> snapshot = mLatencyTracker.snapshot();
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "%-32s %-5s %6s %8s %8s %8s %8s %8s\n",
+                "motion", "kind", "n", "p50 ms", "p95 ms", "p99 ms", "max ms", "timeout"));
+        boolean any = false;
+        for (MotionLatencyTracker.Stats stats : snapshot) {
+            any |= stats.count > 0 || stats.timeouts > 0;
+            text.append(String.format(Locale.ROOT, "%-32s %-5s %6d %8.1f %8.1f %8.1f %8.1f %8d\n",
+                    stats.motion == null ? "(all)" : stats.motion, stats.kind, stats.count,
+                    stats.p50Millis, stats.p95Millis, stats.p99Millis, stats.maxMillis, stats.timeouts));
+        }
+        mTexStats.setText(any ? text : getString(R.string.txt_latency_empty));
+    }
+
+    private RobotEventCallback robotEventCallback = new RobotEventCallback() {
+        @Override
+        public void onStartOfMotionPlay(String motion) {
+            mLatencyTracker.onStartOfMotionPlay(motion);
+        }
+
+        @Override
+        public void onStopOfMotionPlay(String motion) {
+            mLatencyTracker.onStopOfMotionPlay(motion);
+        }
+
+        @Override
+        public void onCompleteOfMotionPlay(String motion) {
+            mLatencyTracker.onCompleteOfMotionPlay(motion);
+        }
+
+        @Override
+        public void onErrorOfMotionPlay(int errorCode) {
+            mLatencyTracker.onErrorOfMotionPlay(errorCode);
+        }
+    };
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mHandler.post(mRefresh);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mHandler.removeCallbacks(mRefresh);
+    }
+
+    @Override
+    protected void onStop(){
+        super.onStop();
+
+        if(mRobotAPI != null){
+            mRobotAPI.release();
+        }
+    }
+
+    @Override
+    protected int getLayoutRes(){
+        return R.layout.activity_motion_latency;
+    }
+
+    @Override
+    protected int getToolBarTitleRes(){
+        return R.string.lbl_motion_latency;
+    }
+}
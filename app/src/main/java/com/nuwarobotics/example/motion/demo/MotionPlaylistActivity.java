@@ -0,0 +1,199 @@
+package com.nuwarobotics.example.motion.demo;
+
+import android.os.Bundle;
+import android.text.method.ScrollingMovementMethod;
+import android.util.Log;
+import android.widget.CheckBox;
+import android.widget.TextView;
+
+import com.nuwarobotics.example.R;
+import com.nuwarobotics.example.motion.base.BaseAppCompatActivity;
+import com.nuwarobotics.example.motion.catalog.MotionMetadataCache;
+import com.nuwarobotics.example.motion.player.MotionPlayer;
+import com.nuwarobotics.example.motion.player.MotionPrefetcher;
+import com.nuwarobotics.example.motion.player.MotionQueue;
+import com.nuwarobotics.example.motion.stats.MotionLatencyTracker;
+import com.nuwarobotics.example.util.AssetStagingTask;
+import com.nuwarobotics.example.util.FileUtil;
+import com.nuwarobotics.service.IClientId;
+import com.nuwarobotics.service.agent.NuwaRobotAPI;
+import com.nuwarobotics.service.agent.RobotEventCallback;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A playlist of robot motions and fst files played back to back by a {@link MotionQueue}. Once started the queue
+ * goes on by itself from the robot events, the UI only shows what it does.
+ */
+public class MotionPlaylistActivity extends BaseAppCompatActivity {
+    private NuwaRobotAPI mRobotAPI;
+    private IClientId mClientId;
+
+    //Motions installed on the robot and fst files of the app, mixed; you can customize this list
+    private final String[] PLAYLIST = {
+            "666_RE_Bye",
+            "example_fst_approve.fst",
+            "666_TA_LookRL",
+            "666_DA_PickUp",
+            "example_fst_touching.fst",
+            "666_TA_LookLR"};
+    private final String EXTERNAL_FOLDER = "MyAssets";
+
+    private MotionPlayer mPlayer;
+    private MotionQueue mQueue;
+    private MotionPrefetcher mPrefetcher;
+    private AssetStagingTask mStaging;
+    private final MotionLatencyTracker mLatencyTracker = MotionLatencyTracker.getInstance();
+    private TextView mTexPlayStatus;
+    private CheckBox mCheckLoop;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mTexPlayStatus = findViewById(R.id.play_status);
+        mTexPlayStatus.setMovementMethod(ScrollingMovementMethod.getInstance());
+        mCheckLoop = findViewById(R.id.check_loop);
+
+        //Step 1 : Initial Nuwa API Object
+        mClientId = new IClientId(this.getPackageName());
+        mRobotAPI = new NuwaRobotAPI(this, mClientId);
+        mRobotAPI.registerRobotEventListener(robotEventCallback); //listen callback of robot service event
+
+        //Step 2 : The queue plays fst items with its own player and named items with motionPlay, prepared ahead
+        mPlayer = new MotionPlayer(mRobotAPI);
+        mPrefetcher = new MotionPrefetcher(mRobotAPI);
+        mQueue = new MotionQueue(mRobotAPI, mPlayer);
+        mQueue.setListener(queueListener);
+        mQueue.setPrefetcher(mPrefetcher);
+        mQueue.setMetadataCache(MotionMetadataCache.getInstance(this));
+        mStaging = FileUtil.copyAssetsToDstAsync(this, "motion_bin", FileUtil.getExternalAssetFolder(EXTERNAL_FOLDER), null);
+
+        //Step 3 : Start the playlist once its fst files are staged, the queue needs no UI from then on
+        findViewById(R.id.btn_playlist_start).setOnClickListener(v -> {
+            showEventMsg("[Click Button]Start playlist");
+            mQueue.setLoop(mCheckLoop.isChecked());
+            buildPlaylist().whenComplete((items, error) -> {
+                if (error != null) {
+                    showEventMsg("Motion file not ready: " + error.getMessage());
+                    return;
+                }
+                mQueue.stop();
+                mQueue.clear();
+                mQueue.addAll(items);
+                mQueue.start();
+            });
+        });
+        findViewById(R.id.btn_playlist_skip).setOnClickListener(v -> {
+            showEventMsg("[Click Button]Skip");
+            mQueue.skip();
+        });
+        findViewById(R.id.btn_playlist_stop).setOnClickListener(v -> {
+            showEventMsg("[Click Button]Stop");
+            mQueue.stop();
+        });
+        mCheckLoop.setOnCheckedChangeListener((button, checked) -> mQueue.setLoop(checked));
+    }
+
+    private CompletableFuture<List<MotionQueue.Item>> buildPlaylist() {
+        List<CompletableFuture<MotionQueue.Item>> items = new ArrayList<>();
+        for (String entry : PLAYLIST) {
+            if (entry.endsWith(".fst")) {
+                items.add(mStaging.getFile(entry).thenApply(MotionQueue.Item::file));
+            } else {
+                items.add(CompletableFuture.completedFuture(MotionQueue.Item.named(entry)));
+            }
+        }
+        return CompletableFuture.allOf(items.toArray(new CompletableFuture[0])).thenApply(done -> {
+            List<MotionQueue.Item> playlist = new ArrayList<>();
+            for (CompletableFuture<MotionQueue.Item> item : items) {
+                playlist.add(item.join());
+            }
+            return playlist;
+        });
+    }
+
+    private MotionQueue.Listener queueListener = new MotionQueue.Listener() {
+        @Override
+        public void onItemStarted(MotionQueue.Item item) {
+            File file = item.getFile();
+            showEventMsg("[Queue]Playing " + (file != null ? "[Local]" + file.getName() : item.getName())
+                    + ", prepared ahead: " + mPrefetcher.getPreparedAhead());
+        }
+
+        @Override
+        public void onItemFailed(MotionQueue.Item item, int errorCode) {
+            showEventMsg("[Queue]" + item + " failed, error code: " + errorCode);
+        }
+
+        @Override
+        public void onQueueFinished() {
+            showEventMsg("[Queue]Playlist finished");
+        }
+    };
+
+    //Step 4 : Forward the motion events, they drive the queue from one item to the next
+    private RobotEventCallback robotEventCallback = new RobotEventCallback() {
+        @Override
+        public void onStartOfMotionPlay(String motion) {
+            mLatencyTracker.onStartOfMotionPlay(motion);
+            mQueue.onStartOfMotionPlay(motion);
+        }
+
+        @Override
+        public void onStopOfMotionPlay(String motion) {
+            mLatencyTracker.onStopOfMotionPlay(motion);
+            mQueue.onStopOfMotionPlay(motion);
+        }
+
+        @Override
+        public void onCompleteOfMotionPlay(String motion) {
+            mLatencyTracker.onCompleteOfMotionPlay(motion);
+            mQueue.onCompleteOfMotionPlay(motion);
+        }
+
+        @Override
+        public void onErrorOfMotionPlay(int errorCode) {
+            mLatencyTracker.onErrorOfMotionPlay(errorCode);
+            mQueue.onErrorOfMotionPlay(errorCode);
+        }
+
+        @Override
+        public void onPrepareMotion(boolean isError, String motion, float duration) {
+            mQueue.onPrepareMotion(isError, motion, duration);
+        }
+    };
+
+    @Override
+    protected void onDestroy(){
+        super.onDestroy();
+
+        //Step 5 : Stop the queue and release robotAPI when closing activity, in background the playlist goes on
+        mQueue.shutdown();
+        mPrefetcher.release();
+        mPlayer.release();
+        if(mRobotAPI != null){
+            mRobotAPI.release();
+        }
+    }
+
+    @Override
+    protected int getLayoutRes(){
+        return R.layout.activity_motion_playlist;
+    }
+
+    @Override
+    protected int getToolBarTitleRes(){
+        return R.string.lbl_motion_playlist;
+    }
+
+    private void showEventMsg(String status){
+        runOnUiThread(()->{
+            mTexPlayStatus.append(status);
+            mTexPlayStatus.append("\n");
+            Log.d(TAG, status);
+        });
+    }
+}
@@ -7,6 +7,7 @@ import android.widget.TextView;
 
 import com.nuwarobotics.example.R;
 import com.nuwarobotics.example.motion.base.BaseAppCompatActivity;
+import com.nuwarobotics.example.motion.player.MotionWindowManager;
 import com.nuwarobotics.service.IClientId;
 import com.nuwarobotics.service.agent.NuwaRobotAPI;
 import com.nuwarobotics.service.agent.RobotEventCallback;
@@ -17,6 +18,7 @@ public class PlayMotionActivity extends BaseAppCompatActivity {
 
     private final String MOTION_SAMPLE = "987_EN_HappyBirthdayWaltz";
     private TextView mTexPlayStatus;
+    private MotionWindowManager mWindowManager;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -27,13 +29,14 @@ public class PlayMotionActivity extends BaseAppCompatActivity {
         mClientId = new IClientId(this.getPackageName());
         mRobotAPI = new NuwaRobotAPI(this, mClientId);
         mRobotAPI.registerRobotEventListener(robotEventCallback); //listen callback of robot service event
+        mWindowManager = new MotionWindowManager(mRobotAPI);
 
         Button btn = findViewById(R.id.btn_playmotion);
         btn.setOnClickListener(v->{
             mTexPlayStatus.setText("");
 
-            //Step 2 : Execute "Play motion"
-            mRobotAPI.motionPlay(MOTION_SAMPLE, true);
+            //Step 2 : Execute "Play motion", with auto_fadein unless the window of the last play is still there
+            mWindowManager.play(MOTION_SAMPLE);
         });
 
     }
@@ -51,11 +54,13 @@ public class PlayMotionActivity extends BaseAppCompatActivity {
         @Override
         public void onStartOfMotionPlay(String s) {
             showEventMsg("Start Playing Motion...");
+            mWindowManager.onStartOfMotionPlay(s);
         }
 
         @Override
         public void onStopOfMotionPlay(String s) {
             showEventMsg("Stop Playing Motion...");
+            mWindowManager.onStopOfMotionPlay(s);
         }
 
         @Override
@@ -64,9 +69,8 @@ public class PlayMotionActivity extends BaseAppCompatActivity {
 
             //Step 3 : If (the parameter of motionPlay)auto_fadein is ture,
             // the transparent view must be closed after motion is complete, error or other case.
-            if(mRobotAPI != null){
-                mRobotAPI.hideWindow(true);
-            }
+            // The manager keeps it a moment, so playing again doesn't wait for a new window.
+            mWindowManager.onCompleteOfMotionPlay(s);
         }
 
         @Override
@@ -77,10 +81,17 @@ public class PlayMotionActivity extends BaseAppCompatActivity {
         @Override
         public void onErrorOfMotionPlay(int i) {
             showEventMsg("When playing Motion, error happen!!! error code: " + i);
+            mWindowManager.onErrorOfMotionPlay(i);
+        }
+
+        @Override
+        public void onWindowSurfaceReady() {
+            mWindowManager.onWindowSurfaceReady();
+        }
 
-            if(mRobotAPI != null){
-                mRobotAPI.hideWindow(true);
-            }
+        @Override
+        public void onWindowSurfaceDestroy() {
+            mWindowManager.onWindowSurfaceDestroy();
         }
     };
 
@@ -89,6 +100,9 @@ public class PlayMotionActivity extends BaseAppCompatActivity {
         super.onStop();
 
         //Step 4 : Release robotAPI before closing activity
+        if(mWindowManager != null){
+            mWindowManager.release();
+        }
         if(mRobotAPI != null){
             mRobotAPI.release();
         }
@@ -8,11 +8,14 @@ import android.widget.TextView;
 
 import com.nuwarobotics.example.R;
 import com.nuwarobotics.example.motion.base.BaseAppCompatActivity;
+import com.nuwarobotics.example.util.AssetStagingTask;
 import com.nuwarobotics.example.util.FileUtil;
 import com.nuwarobotics.service.IClientId;
 import com.nuwarobotics.service.agent.NuwaRobotAPI;
 import com.nuwarobotics.service.agent.RobotEventCallback;
 
+import java.util.List;
+
 /**
  * This example present how to play app preload fst motion file.
  * API : public void motionPlay (String motion, boolean show, String path)
@@ -34,6 +37,9 @@ public class PlayMotionFileActivity extends BaseAppCompatActivity {
     private final String EXTERNAL_FOLDER = "MyAssets";
 
     private TextView mTexPlayStatus;
+    private AssetStagingTask mStaging;
+    // set by onStop on the main thread, a file staged later must not reach the released robot API
+    private boolean mReleased;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -47,10 +53,10 @@ public class PlayMotionFileActivity extends BaseAppCompatActivity {
         mRobotAPI.registerRobotEventListener(robotEventCallback); //listen callback of robot service event
 
         //Step 1.1 : prepare preload assets
-        //Initial external assets folder
-        String destPath = FileUtil.createExternalAssetFolder(EXTERNAL_FOLDER);
-        //Clone preloaded fst to shared external storage
-        FileUtil.copyAssetsToDst(this, "motion_bin", destPath);
+        //External assets folder, created by the copy on demand
+        String destPath = FileUtil.getExternalAssetFolder(EXTERNAL_FOLDER);
+        //Clone preloaded fst to shared external storage, in background to keep onCreate fast
+        mStaging = FileUtil.copyAssetsToDstAsync(this, "motion_bin", destPath, stagingListener);
 
         Button btn = findViewById(R.id.btn_playmotion);
         btn.setOnClickListener(v->{
@@ -58,7 +64,19 @@ public class PlayMotionFileActivity extends BaseAppCompatActivity {
 
             //Step 2 : Play local fst motion
             //https://developer-docs.nuwarobotics.com/sdk/javadoc/reference/com/nuwarobotics/service/agent/NuwaRobotAPI.html#motionPlay(java.lang.String,%20boolean,%20java.lang.String)
-            mRobotAPI.motionPlay(MOTION_SAMPLE_1, false, Environment.getExternalStorageDirectory()+"/"+EXTERNAL_FOLDER);
+            //Only wait for the fst file of this motion, not for the whole folder
+            mStaging.getFile(MOTION_SAMPLE_1 + ".fst").whenComplete((file, error) -> {
+                if (error != null) {
+                    showEventMsg("Motion file not ready: " + error.getMessage());
+                    return;
+                }
+                runOnUiThread(() -> {
+                    if (mReleased) {
+                        return;
+                    }
+                    mRobotAPI.motionPlay(MOTION_SAMPLE_1, false, Environment.getExternalStorageDirectory()+"/"+EXTERNAL_FOLDER);
+                });
+            });
         });
 
     }
@@ -72,6 +90,20 @@ public class PlayMotionFileActivity extends BaseAppCompatActivity {
 
     }
 
+    private AssetStagingTask.Listener stagingListener = new AssetStagingTask.Listener() {
+        @Override
+        public void onProgress(AssetStagingTask.FileResult result, int done, int total) {
+            if (result.status == AssetStagingTask.Status.FAILED) {
+                showEventMsg("Copy " + result.name + " failed: " + result.error.getMessage());
+            }
+        }
+
+        @Override
+        public void onComplete(List<AssetStagingTask.FileResult> results) {
+            Log.d(TAG, "motion files staged: " + results);
+        }
+    };
+
     private RobotEventCallback robotEventCallback = new RobotEventCallback() {
         @Override
         public void onStartOfMotionPlay(String s) {
@@ -114,6 +146,7 @@ public class PlayMotionFileActivity extends BaseAppCompatActivity {
         super.onStop();
 
         //Step 4 : Release robotAPI before closing activity
+        mReleased = true;
         if(mRobotAPI != null){
             mRobotAPI.release();
         }
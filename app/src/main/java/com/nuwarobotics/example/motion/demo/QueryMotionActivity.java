@@ -1,11 +1,19 @@
 package com.nuwarobotics.example.motion.demo;
 
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.PopupMenu;
+import android.widget.TextView;
+import android.widget.Toast;
 
 import com.nuwarobotics.example.R;
 import com.nuwarobotics.example.motion.base.BaseAppCompatActivity;
+import com.nuwarobotics.example.motion.catalog.MotionCatalog;
+import com.nuwarobotics.example.motion.catalog.MotionIndex;
 import com.nuwarobotics.service.IClientId;
 import com.nuwarobotics.service.agent.NuwaRobotAPI;
 
@@ -14,7 +22,13 @@ import java.util.List;
 public class QueryMotionActivity extends BaseAppCompatActivity {
     private NuwaRobotAPI mRobotAPI;
     private IClientId mClientId;
-    List<String> mMotionsList;
+    private MotionCatalog mCatalog;
+    private EditText mEditFilter;
+    private TextView mTexFilterResult;
+    private List<String> mShownMotions;
+    // filter over the index of the catalog's current list, recreated when the list changes
+    private MotionIndex mIndex;
+    private MotionIndex.Filter mFilter;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -24,41 +38,88 @@ public class QueryMotionActivity extends BaseAppCompatActivity {
         mClientId = new IClientId(this.getPackageName());
         mRobotAPI = new NuwaRobotAPI(this, mClientId);
 
+        //Step 1.1 : The app wide motion catalog answers from memory, refresh it from the robot in background
+        mCatalog = MotionCatalog.getInstance(this);
+        mCatalog.refresh(mRobotAPI);
 
         Button btn = findViewById(R.id.btn_query_motions);
         btn.setOnClickListener(v->{
+            //Step2 : Get the list of all motions, only the very first start has to wait for the robot
+            if (mCatalog.isLoaded()) {
+                showMotions(btn, filterMotions());
+            } else {
+                mCatalog.refresh(mRobotAPI).whenComplete((motions, error) -> runOnUiThread(() -> {
+                    if (error != null) {
+                        Toast.makeText(this, getString(R.string.txt_query_motions_failed, error.getMessage()),
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        showMotions(btn, filterMotions());
+                    }
+                }));
+            }
+        });
 
-            if(mMotionsList == null) {
-                mMotionsList = mRobotAPI.getMotionList();
+        //Step2.1 : Typing narrows the last result instead of scanning all motions again
+        mEditFilter = findViewById(R.id.edit_filter_motions);
+        mTexFilterResult = findViewById(R.id.filter_result);
+        mEditFilter.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
             }
 
-            PopupMenu popup = new PopupMenu(QueryMotionActivity.this, btn);
-            popup.getMenuInflater().inflate(R.menu.popup_menu_querymotions, popup.getMenu());
-            popup.getMenu().clear();
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
 
-            //Step2 : Call API to get the list of all motions
-            for(String item : mMotionsList) {
-                popup.getMenu().add(item);
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (mCatalog.isLoaded()) {
+                    filterMotions();
+                }
             }
+        });
+    }
 
-            popup.setOnMenuItemClickListener((item)->{
-                mRobotAPI.motionStop(true);
-                mRobotAPI.motionPlay(item.getTitle().toString(), false);
-                return true;
-            });
+    private List<String> filterMotions() {
+        MotionIndex index = mCatalog.getIndex();
+        if (index != mIndex) {
+            mIndex = index;
+            mFilter = index.newFilter();
+        }
+        List<String> motions = mFilter.update(mEditFilter.getText().toString());
+        // most keys typed don't change the result
+        if (!motions.equals(mShownMotions)) {
+            mShownMotions = motions;
+            mTexFilterResult.setText(getString(R.string.txt_filter_result, motions.size(), TextUtils.join(", ", motions)));
+        }
+        return motions;
+    }
 
+    private void showMotions(Button anchor, List<String> motions) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        PopupMenu popup = new PopupMenu(QueryMotionActivity.this, anchor);
+        popup.getMenuInflater().inflate(R.menu.popup_menu_querymotions, popup.getMenu());
+        popup.getMenu().clear();
 
-            popup.show();
+        for(String item : motions) {
+            popup.getMenu().add(item);
+        }
 
+        popup.setOnMenuItemClickListener((item)->{
+            mRobotAPI.motionStop(true);
+            mRobotAPI.motionPlay(item.getTitle().toString(), false);
+            return true;
         });
+
+        popup.show();
     }
 
     @Override
     protected void onStop(){
         super.onStop();
 
-        mMotionsList = null;
-
         if(mRobotAPI != null){
             mRobotAPI.release();
         }
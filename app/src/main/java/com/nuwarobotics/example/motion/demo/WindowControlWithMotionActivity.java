@@ -1,14 +1,13 @@
 package com.nuwarobotics.example.motion.demo;
 
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 import android.widget.Button;
 import android.widget.TextView;
 
 import com.nuwarobotics.example.R;
 import com.nuwarobotics.example.motion.base.BaseAppCompatActivity;
+import com.nuwarobotics.example.motion.player.MotionWindowManager;
 import com.nuwarobotics.service.IClientId;
 import com.nuwarobotics.service.agent.NuwaRobotAPI;
 import com.nuwarobotics.service.agent.RobotEventCallback;
@@ -18,13 +17,14 @@ public class WindowControlWithMotionActivity extends BaseAppCompatActivity {
     private IClientId mClientId;
 
     private final String MOTION_SAMPLE = "987_EN_HappyBirthdayWaltz";
+    // offset into the motion at which its window is on screen
+    private final long SHOW_WINDOW_AT_MS = 6000;
     private TextView mTexPlayStatus;
-    Handler mainHandler;
+    private MotionWindowManager mWindowManager;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        mainHandler = new Handler(Looper.getMainLooper());
 
 
         mTexPlayStatus = findViewById(R.id.play_status);
@@ -33,44 +33,34 @@ public class WindowControlWithMotionActivity extends BaseAppCompatActivity {
         mClientId = new IClientId(this.getPackageName());
         mRobotAPI = new NuwaRobotAPI(this, mClientId);
         mRobotAPI.registerRobotEventListener(robotEventCallback); //listen callback of robot service event
+        mWindowManager = new MotionWindowManager(mRobotAPI);
 
         Button btn = findViewById(R.id.btn_playmotion);
         btn.setOnClickListener(v->{
             mTexPlayStatus.setText("");
 
-            //Step 2 : Execute "Play motion" without window
-            //Notice: If motionPlay with paramter "auto_fadin = true", the displayed window should not be hidden.
+            //Step 2 : Execute "Play motion" without window, the window is shown at an offset of the motion
+            //Notice: The displayed window should not be hidden while the motion plays.
             //        Because the method hideWindow() will execute motionStop to stop the current motion.
-            mRobotAPI.motionPlay(MOTION_SAMPLE, false);  //"auto_fadin" is false. The initial window is hidden.
+            //Step 3:  Setup the timing of showing window by user's requirement. The manager shows it ahead by the
+            //         time its surface takes to set up, so it is on screen right at the offset.
+            mWindowManager.play(MOTION_SAMPLE, SHOW_WINDOW_AT_MS, -1);
 
         });
 
     }
 
-    Runnable showWindowRunable = ()->{
-        if(mRobotAPI != null){
-            showEventMsgOnTextView("[Handler]Show Window...");
-
-            //Step 3:  Setup the timing of showing window by user's requirement
-            mRobotAPI.showWindow(true);
-        }
-    };
-
     private RobotEventCallback robotEventCallback = new RobotEventCallback() {
         @Override
         public void onStartOfMotionPlay(String s) {
             showEventMsgOnTextView("[Event]Start Playing Motion...");
-
-            if(mainHandler == null){
-                return;
-            }
-
-            mainHandler.postDelayed(showWindowRunable,6000);
+            mWindowManager.onStartOfMotionPlay(s);
         }
 
         @Override
         public void onStopOfMotionPlay(String s) {
             showEventMsgOnTextView("[Event]Stop Playing Motion...");
+            mWindowManager.onStopOfMotionPlay(s);
         }
 
         @Override
@@ -79,9 +69,8 @@ public class WindowControlWithMotionActivity extends BaseAppCompatActivity {
 
             //Step 3 : Hide window for the displayed window
             // the transparent view must be closed after motion is complete, error or other case.
-            if(mRobotAPI != null){
-                mRobotAPI.hideWindow(true);
-            }
+            // The manager keeps it a moment for a motion played right after, then hides it.
+            mWindowManager.onCompleteOfMotionPlay(s);
         }
 
         @Override
@@ -92,10 +81,18 @@ public class WindowControlWithMotionActivity extends BaseAppCompatActivity {
         @Override
         public void onErrorOfMotionPlay(int i) {
             showEventMsgOnTextView("[Event]When playing Motion, error happen!!! error code: " + i);
+            mWindowManager.onErrorOfMotionPlay(i);
+        }
+
+        @Override
+        public void onWindowSurfaceReady() {
+            showEventMsgOnTextView("[Event]Window is shown, setup ~" + mWindowManager.getSetupMillis() + " ms");
+            mWindowManager.onWindowSurfaceReady();
+        }
 
-            if(mRobotAPI != null){
-                mRobotAPI.hideWindow(true);
-            }
+        @Override
+        public void onWindowSurfaceDestroy() {
+            mWindowManager.onWindowSurfaceDestroy();
         }
     };
 
@@ -116,6 +113,9 @@ public class WindowControlWithMotionActivity extends BaseAppCompatActivity {
         super.onStop();
 
         //Step 4 : Release robotAPI before closing activity
+        if(mWindowManager != null){
+            mWindowManager.release();
+        }
         if(mRobotAPI != null){
             mRobotAPI.release();
         }
@@ -0,0 +1,22 @@
+package com.nuwarobotics.example.motion.fst;
+
+import java.io.IOException;
+
+/**
+ * The stream is not a motion file the parser understands.
+ */
+public class FstFormatException extends IOException {
+    private final int mOffset;
+
+    public FstFormatException(String message, int offset) {
+        super(message + " at offset " + offset);
+        mOffset = offset;
+    }
+
+    /**
+     * @return byte offset in the stream where the problem was found
+     */
+    public int getOffset() {
+        return mOffset;
+    }
+}
@@ -0,0 +1,207 @@
+package com.nuwarobotics.example.motion.fst;
+
+import com.nuwarobotics.example.motion.model.Motion;
+import com.nuwarobotics.example.motion.model.MotorTrack;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes fst motion files, as exported by the motion editor and played by {@code NuwaRobotAPI.motionPlay},
+ * into a {@link Motion}. Single pass over the stream, keys go straight into primitive arrays.
+ * Has no Android dependency, so it also runs in JVM tests and on a workstation:
+ * <pre>
+ * java -cp classes com.nuwarobotics.example.motion.fst.FstMotionParser app/src/main/assets/motion_bin/example_fst_approve.fst
+ * </pre>
+ *
+ * Object layouts, each object ends with a version byte:
+ * <pre>
+ * Motion        : int, float fps, int frames, int, list of MotorTimeline, String name
+ * MotorTimeline : float fps, float, int frames, int, int, list of BezierLayer
+ * BezierLayer   : float fps, int color, int, int, list of BezierKey, null, String "BezierLayer", String motor
+ * BezierKey     : float frame, KeyPoint
+ * KeyPoint      : float frame, float value, Handle in, Handle out
+ * Handle        : float angle, float weight, BezierType
+ * </pre>
+ */
+public final class FstMotionParser {
+    static final String CLASS_MOTION = "com.nuwarobotics.sdk.motion.Motion";
+    static final String CLASS_MOTOR_TIMELINE = "com.nuwarobotics.sdk.motion.MotorTimeline";
+    static final String CLASS_BEZIER_LAYER = "com.nuwarobotics.sdk.motion.BezierLayer";
+    static final String CLASS_BEZIER_KEY = "com.nuwarobotics.sdk.motion.BezierKey";
+    static final String CLASS_BEZIER_TYPE = "com.nuwarobotics.sdk.motion.BezierKey$BezierType";
+
+    private final FstReader mReader;
+    // stream offsets of every key per layer, only collected for FstTimeIndex
+    private final List<int[]> mKeyOffsets;
+
+    private FstMotionParser(ByteBuffer buffer, List<int[]> keyOffsets) {
+        mReader = new FstReader(buffer);
+        mKeyOffsets = keyOffsets;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: FstMotionParser <fst file>...");
+            System.exit(1);
+        }
+        for (String path : args) {
+            Motion motion = parse(new File(path));
+            System.out.println(path + ": " + motion.getName() + ", " + motion.getFrameCount() + " frames @"
+                    + motion.getFps() + "fps, " + motion.getDurationMillis() + "ms");
+            for (MotorTrack track : motion.getTracks()) {
+                System.out.println("  " + track.getMotor() + ": " + track.getKeyCount() + " keys, last at frame "
+                        + track.getLastFrame());
+            }
+        }
+    }
+
+    /**
+     * Parse a motion from the current position of {@code buffer}, e.g. a slice of a
+     * {@link com.nuwarobotics.example.motion.pack.MotionPack}. The buffer position is not changed.
+     */
+    public static Motion parse(ByteBuffer buffer) throws IOException {
+        return new FstMotionParser(buffer, null).readMotion();
+    }
+
+    /**
+     * Parse and collect the stream offset of every key, one array per track.
+     */
+    static Motion parse(ByteBuffer buffer, List<int[]> keyOffsets) throws IOException {
+        return new FstMotionParser(buffer, keyOffsets).readMotion();
+    }
+
+    public static Motion parse(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static Motion parse(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        int length = 0;
+        int count;
+        while ((count = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += count;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        return parse(ByteBuffer.wrap(buffer, 0, length));
+    }
+
+    private Motion readMotion() throws IOException {
+        FstReader r = mReader;
+        r.readObjectHeader(CLASS_MOTION);
+        r.readFInt();
+        float fps = r.readFloat();
+        int frameCount = r.readFInt();
+        r.readFInt();
+        int timelineCount = r.readListHeader();
+        List<MotorTrack> tracks = new ArrayList<>();
+        for (int i = 0; i < timelineCount; i++) {
+            readTimeline(tracks);
+        }
+        String name = r.readString();
+        r.readObjectEnd();
+        if (!(fps > 0) || frameCount < 0) {
+            throw new FstFormatException("bad timing " + frameCount + " frames @" + fps + "fps", 0);
+        }
+        return new Motion(name, fps, frameCount, tracks);
+    }
+
+    private void readTimeline(List<MotorTrack> tracks) throws IOException {
+        FstReader r = mReader;
+        r.readObjectHeader(CLASS_MOTOR_TIMELINE);
+        r.readFloat();
+        r.readFloat();
+        r.readFInt();
+        r.readFInt();
+        r.readFInt();
+        int layerCount = r.readListHeader();
+        for (int i = 0; i < layerCount; i++) {
+            tracks.add(readLayer());
+        }
+        r.readObjectEnd();
+    }
+
+    private MotorTrack readLayer() throws IOException {
+        FstReader r = mReader;
+        r.readObjectHeader(CLASS_BEZIER_LAYER);
+        r.readFloat();
+        int color = r.readFInt();
+        r.readFInt();
+        r.readFInt();
+        int keyCount = r.readListHeader();
+        // a key takes at least 20 bytes, don't let a corrupt count allocate huge arrays
+        if (keyCount > r.remaining() / 20) {
+            throw new FstFormatException("bad key count " + keyCount, r.position());
+        }
+        float[] frames = new float[keyCount];
+        float[] values = new float[keyCount];
+        float[] inAngles = new float[keyCount];
+        float[] inWeights = new float[keyCount];
+        byte[] inTypes = new byte[keyCount];
+        float[] outAngles = new float[keyCount];
+        float[] outWeights = new float[keyCount];
+        byte[] outTypes = new byte[keyCount];
+        int[] offsets = mKeyOffsets == null ? null : new int[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            int keyPosition = r.position();
+            if (offsets != null) {
+                offsets[i] = keyPosition;
+            }
+            r.readObjectHeader(CLASS_BEZIER_KEY);
+            frames[i] = r.readFloat();
+            if (i > 0 && frames[i] < frames[i - 1]) {
+                throw new FstFormatException("keys out of order", keyPosition);
+            }
+            readTyped();
+            r.readFloat();
+            values[i] = r.readFloat();
+            readTyped();
+            inAngles[i] = r.readFloat();
+            inWeights[i] = r.readFloat();
+            inTypes[i] = (byte) r.readEnum(CLASS_BEZIER_TYPE);
+            r.readObjectEnd();
+            readTyped();
+            outAngles[i] = r.readFloat();
+            outWeights[i] = r.readFloat();
+            outTypes[i] = (byte) r.readEnum(CLASS_BEZIER_TYPE);
+            r.readObjectEnd();
+            r.readObjectEnd();
+            r.readObjectEnd();
+        }
+        r.readNull();
+        r.readString();
+        String motor = r.readString();
+        r.readObjectEnd();
+        if (motor == null) {
+            throw new FstFormatException("layer without motor", r.position());
+        }
+        if (offsets != null) {
+            mKeyOffsets.add(offsets);
+        }
+        return new MotorTrack(motor, color, frames, values,
+                inAngles, inWeights, inTypes, outAngles, outWeights, outTypes);
+    }
+
+    /**
+     * Key points and handles are always written without class, their type is implied by the field.
+     */
+    private void readTyped() throws FstFormatException {
+        int position = mReader.position();
+        int tag = mReader.readTag();
+        if (tag != FstReader.TAG_TYPED) {
+            throw new FstFormatException("typed object expected, tag " + Integer.toHexString(tag), position);
+        }
+    }
+}
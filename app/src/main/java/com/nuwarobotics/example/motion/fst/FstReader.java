@@ -0,0 +1,258 @@
+package com.nuwarobotics.example.motion.fst;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Low level reader for the subset of the FST (fast-serialization 2.x) stream format used by motion files.
+ * Only knows tags, numbers, strings and class references; the field layout of each class is up to the caller.
+ */
+final class FstReader {
+    static final int TAG_OBJECT = 0x00;
+    static final int TAG_ENUM = 0xfa;
+    static final int TAG_STRING = 0xfc;
+    static final int TAG_TYPED = 0xfd;
+    static final int TAG_NULL = 0xff;
+    static final int TAG_HANDLE = 0xf9;
+
+    static final int CLASS_ARRAY_LIST = 16;
+
+    private static final int CLASS_NAME_FOLLOWS = 1;
+    private static final int FIRST_REGISTERED_CLASS = 1000;
+
+    private final ByteBuffer mBuffer;
+    private final int mStart;
+    private final List<String> mClasses = new ArrayList<>();
+    // strings by stream offset, a repeated string is written as handle to its first occurrence
+    private final Map<Integer, String> mStrings = new HashMap<>();
+    private char[] mChars = new char[64];
+
+    FstReader(ByteBuffer buffer) {
+        mBuffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        mStart = mBuffer.position();
+    }
+
+    int position() {
+        return mBuffer.position() - mStart;
+    }
+
+    /**
+     * Continue reading at {@code position}, relative to the start of the stream.
+     */
+    void seek(int position) {
+        mBuffer.position(mStart + position);
+    }
+
+    int remaining() {
+        return mBuffer.remaining();
+    }
+
+    int readTag() throws FstFormatException {
+        return readUnsignedByte();
+    }
+
+    int readUnsignedByte() throws FstFormatException {
+        try {
+            return mBuffer.get() & 0xff;
+        } catch (BufferUnderflowException e) {
+            throw new FstFormatException("unexpected end of stream", position());
+        }
+    }
+
+    /**
+     * FST compressed int: one byte, or 0x80 plus a short, or 0x81 plus an int.
+     */
+    int readFInt() throws FstFormatException {
+        try {
+            byte head = mBuffer.get();
+            if (head == (byte) 0x80) {
+                return mBuffer.getShort();
+            } else if (head == (byte) 0x81) {
+                return mBuffer.getInt();
+            }
+            return head;
+        } catch (BufferUnderflowException e) {
+            throw new FstFormatException("unexpected end of stream", position());
+        }
+    }
+
+    float readFloat() throws FstFormatException {
+        try {
+            return mBuffer.getFloat();
+        } catch (BufferUnderflowException e) {
+            throw new FstFormatException("unexpected end of stream", position());
+        }
+    }
+
+    /**
+     * Class reference following an object or enum tag. The first use of a class carries its name,
+     * later uses refer to it by the id it was registered with.
+     */
+    String readClass() throws FstFormatException {
+        int id = readCShort();
+        if (id == CLASS_NAME_FOLLOWS) {
+            int length = readFInt();
+            if (length < 0 || length > mBuffer.remaining()) {
+                throw new FstFormatException("bad class name length " + length, position());
+            }
+            byte[] name = new byte[length];
+            mBuffer.get(name);
+            String className = new String(name, StandardCharsets.US_ASCII);
+            mClasses.add(className);
+            return className;
+        }
+        if (id == CLASS_ARRAY_LIST) {
+            return ArrayList.class.getName();
+        }
+        int index = id - FIRST_REGISTERED_CLASS;
+        if (index < 0 || index >= mClasses.size()) {
+            throw new FstFormatException("unknown class id " + id, position());
+        }
+        return mClasses.get(index);
+    }
+
+    /**
+     * Skip a class reference without resolving it, for decoding an object in the middle of a stream
+     * where the ids of the classes registered before are unknown.
+     */
+    void skipClass() throws FstFormatException {
+        if (readCShort() == CLASS_NAME_FOLLOWS) {
+            int length = readFInt();
+            if (length < 0 || length > mBuffer.remaining()) {
+                throw new FstFormatException("bad class name length " + length, position());
+            }
+            mBuffer.position(mBuffer.position() + length);
+        }
+    }
+
+    /**
+     * @return the size of the list that follows an object tag with an ArrayList class
+     */
+    int readListHeader() throws FstFormatException {
+        int tagPosition = position();
+        int tag = readTag();
+        if (tag != TAG_OBJECT) {
+            throw new FstFormatException("list expected, tag " + Integer.toHexString(tag), tagPosition);
+        }
+        String className = readClass();
+        if (!ArrayList.class.getName().equals(className)) {
+            throw new FstFormatException("list expected, found " + className, tagPosition);
+        }
+        int size = readFInt();
+        if (size < 0) {
+            throw new FstFormatException("bad list size " + size, tagPosition);
+        }
+        return size;
+    }
+
+    /**
+     * Expect an object of {@code className}, either typed (class implied by the field) or tagged with its class.
+     */
+    void readObjectHeader(String className) throws FstFormatException {
+        int tagPosition = position();
+        int tag = readTag();
+        if (tag == TAG_TYPED) {
+            return;
+        }
+        if (tag != TAG_OBJECT) {
+            throw new FstFormatException(className + " expected, tag " + Integer.toHexString(tag), tagPosition);
+        }
+        String actual = readClass();
+        if (!className.equals(actual)) {
+            throw new FstFormatException(className + " expected, found " + actual, tagPosition);
+        }
+    }
+
+    /**
+     * Every object ends with a version byte, 0 for all classes of a motion file.
+     */
+    void readObjectEnd() throws FstFormatException {
+        int position = position();
+        int version = readUnsignedByte();
+        if (version != 0) {
+            throw new FstFormatException("end of object expected, found " + Integer.toHexString(version), position);
+        }
+    }
+
+    /**
+     * @return string, null, or the string a handle refers to
+     */
+    String readString() throws FstFormatException {
+        int tagPosition = position();
+        int tag = readTag();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_HANDLE: {
+                int offset = readFInt();
+                String string = mStrings.get(offset);
+                if (string == null) {
+                    throw new FstFormatException("handle to unknown string at " + offset, tagPosition);
+                }
+                return string;
+            }
+            case TAG_STRING: {
+                int length = readFInt();
+                if (length < 0 || length > mBuffer.remaining()) {
+                    throw new FstFormatException("bad string length " + length, tagPosition);
+                }
+                if (mChars.length < length) {
+                    mChars = new char[length];
+                }
+                for (int i = 0; i < length; i++) {
+                    mChars[i] = (char) readCShort();
+                }
+                String string = new String(mChars, 0, length);
+                mStrings.put(tagPosition, string);
+                return string;
+            }
+            default:
+                throw new FstFormatException("string expected, tag " + Integer.toHexString(tag), tagPosition);
+        }
+    }
+
+    /**
+     * @return ordinal of the enum constant that follows
+     */
+    int readEnum(String className) throws FstFormatException {
+        int tagPosition = position();
+        int tag = readTag();
+        if (tag != TAG_ENUM) {
+            throw new FstFormatException(className + " expected, tag " + Integer.toHexString(tag), tagPosition);
+        }
+        String actual = readClass();
+        if (!className.equals(actual)) {
+            throw new FstFormatException(className + " expected, found " + actual, tagPosition);
+        }
+        return readFInt();
+    }
+
+    void readNull() throws FstFormatException {
+        int tagPosition = position();
+        int tag = readTag();
+        if (tag != TAG_NULL) {
+            throw new FstFormatException("unsupported object, tag " + Integer.toHexString(tag), tagPosition);
+        }
+    }
+
+    /**
+     * FST short: one byte below 255, otherwise 255 plus an unsigned short.
+     */
+    private int readCShort() throws FstFormatException {
+        int head = readUnsignedByte();
+        if (head < 255) {
+            return head;
+        }
+        try {
+            return mBuffer.getChar();
+        } catch (BufferUnderflowException e) {
+            throw new FstFormatException("unexpected end of stream", position());
+        }
+    }
+}
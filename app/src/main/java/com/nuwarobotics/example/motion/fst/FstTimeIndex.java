@@ -0,0 +1,165 @@
+package com.nuwarobotics.example.motion.fst;
+
+import com.nuwarobotics.example.motion.model.Motion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sparse index over the keys of a fst motion file: for every {@link #STRIDE}th key of each track
+ * its frame and stream offset. With it a key near any frame is found by binary search
+ * and only a few keys have to be decoded, see {@link FstTimeline}.
+ * Building the index parses the whole file once, so it's cached next to other app caches.
+ */
+final class FstTimeIndex {
+    static final int STRIDE = 8;
+
+    private static final int MAGIC = 0x4E574649; // "NWFI"
+    private static final int VERSION = 1;
+
+    final String name;
+    final float fps;
+    final int frameCount;
+    final String[] motors;
+    final int[] keyCounts;
+    final float[][] frames;
+    final int[][] offsets;
+
+    private FstTimeIndex(String name, float fps, int frameCount, String[] motors, int[] keyCounts,
+                         float[][] frames, int[][] offsets) {
+        this.name = name;
+        this.fps = fps;
+        this.frameCount = frameCount;
+        this.motors = motors;
+        this.keyCounts = keyCounts;
+        this.frames = frames;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @param cacheDir where built indexes are kept, null to always build
+     */
+    static FstTimeIndex load(File fst, ByteBuffer content, File cacheDir) throws IOException {
+        File cacheFile = null;
+        if (cacheDir != null) {
+            cacheFile = new File(cacheDir, fst.getName() + "." + Integer.toHexString(fst.getAbsolutePath().hashCode()) + ".idx");
+            FstTimeIndex cached = read(cacheFile, fst.length(), fst.lastModified());
+            if (cached != null) {
+                return cached;
+            }
+        }
+        FstTimeIndex index = build(content);
+        if (cacheFile != null) {
+            try {
+                index.write(cacheFile, fst.length(), fst.lastModified());
+            } catch (IOException e) {
+                // a missing cache only costs time
+                cacheFile.delete();
+            }
+        }
+        return index;
+    }
+
+    static FstTimeIndex build(ByteBuffer content) throws IOException {
+        List<int[]> keyOffsets = new ArrayList<>();
+        Motion motion = FstMotionParser.parse(content, keyOffsets);
+        int trackCount = motion.getTrackCount();
+        String[] motors = new String[trackCount];
+        int[] keyCounts = new int[trackCount];
+        float[][] frames = new float[trackCount][];
+        int[][] offsets = new int[trackCount][];
+        for (int track = 0; track < trackCount; track++) {
+            int keyCount = motion.getTracks().get(track).getKeyCount();
+            int sparseCount = (keyCount + STRIDE - 1) / STRIDE;
+            motors[track] = motion.getMotor(track);
+            keyCounts[track] = keyCount;
+            frames[track] = new float[sparseCount];
+            offsets[track] = new int[sparseCount];
+            for (int i = 0; i < sparseCount; i++) {
+                frames[track][i] = motion.getTracks().get(track).getFrame(i * STRIDE);
+                offsets[track][i] = keyOffsets.get(track)[i * STRIDE];
+            }
+        }
+        return new FstTimeIndex(motion.getName(), motion.getFps(), motion.getFrameCount(),
+                motors, keyCounts, frames, offsets);
+    }
+
+    /**
+     * @return the cached index, null if there is none for this version of the motion file
+     */
+    private static FstTimeIndex read(File cacheFile, long sourceLength, long sourceModified) {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || in.readLong() != sourceLength || in.readLong() != sourceModified) {
+                return null;
+            }
+            String name = in.readBoolean() ? in.readUTF() : null;
+            float fps = in.readFloat();
+            int frameCount = in.readInt();
+            int trackCount = in.readInt();
+            String[] motors = new String[trackCount];
+            int[] keyCounts = new int[trackCount];
+            float[][] frames = new float[trackCount][];
+            int[][] offsets = new int[trackCount][];
+            for (int track = 0; track < trackCount; track++) {
+                motors[track] = in.readUTF();
+                keyCounts[track] = in.readInt();
+                int sparseCount = in.readInt();
+                frames[track] = new float[sparseCount];
+                offsets[track] = new int[sparseCount];
+                for (int i = 0; i < sparseCount; i++) {
+                    frames[track][i] = in.readFloat();
+                    offsets[track][i] = in.readInt();
+                }
+            }
+            return new FstTimeIndex(name, fps, frameCount, motors, keyCounts, frames, offsets);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void write(File cacheFile, long sourceLength, long sourceModified) throws IOException {
+        File dir = cacheFile.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can't create " + dir);
+        }
+        File tmp = new File(cacheFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceLength);
+            out.writeLong(sourceModified);
+            out.writeBoolean(name != null);
+            if (name != null) {
+                out.writeUTF(name);
+            }
+            out.writeFloat(fps);
+            out.writeInt(frameCount);
+            out.writeInt(motors.length);
+            for (int track = 0; track < motors.length; track++) {
+                out.writeUTF(motors[track]);
+                out.writeInt(keyCounts[track]);
+                out.writeInt(frames[track].length);
+                for (int i = 0; i < frames[track].length; i++) {
+                    out.writeFloat(frames[track][i]);
+                    out.writeInt(offsets[track][i]);
+                }
+            }
+        }
+        if (!tmp.renameTo(cacheFile)) {
+            throw new IOException("can't rename " + tmp + " to " + cacheFile);
+        }
+    }
+}
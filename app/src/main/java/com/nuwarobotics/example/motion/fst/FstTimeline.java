@@ -0,0 +1,201 @@
+package com.nuwarobotics.example.motion.fst;
+
+import com.nuwarobotics.example.motion.model.Curves;
+import com.nuwarobotics.example.motion.model.Timeline;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Random access to a memory mapped fst motion file, e.g. for scrubbing or resuming a motion at an offset.
+ * A pose is evaluated without decoding the file: per track a binary search in the {@link FstTimeIndex}
+ * and at most {@link FstTimeIndex#STRIDE} keys read straight from the mapping, O(log n) per track.
+ */
+public final class FstTimeline implements Timeline {
+    private final FstTimeIndex mIndex;
+    private final FstReader mReader;
+
+    // the two keys around the frame of the last lookup
+    private float mFrame0;
+    private float mValue0;
+    private float mOutAngle0;
+    private float mFrame1;
+    private float mValue1;
+    private float mInAngle1;
+    private float mOutAngle1;
+
+    private FstTimeline(ByteBuffer content, FstTimeIndex index) {
+        mReader = new FstReader(content);
+        mIndex = index;
+    }
+
+    /**
+     * @param fst motion file, e.g. one staged by {@link com.nuwarobotics.example.util.FileUtil#copyAssetsToDst}
+     * @param indexCacheDir where the key index is cached, e.g. {@code Context.getCacheDir()}; null to not cache
+     */
+    public static FstTimeline open(File fst, File indexCacheDir) throws IOException {
+        ByteBuffer content;
+        try (FileInputStream in = new FileInputStream(fst)) {
+            FileChannel channel = in.getChannel();
+            content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return new FstTimeline(content, FstTimeIndex.load(fst, content, indexCacheDir));
+    }
+
+    /**
+     * Random access to a motion that is already in memory, e.g. from a
+     * {@link com.nuwarobotics.example.motion.pack.MotionPack}. The index is built, not cached.
+     */
+    public static FstTimeline open(ByteBuffer content) throws IOException {
+        return new FstTimeline(content, FstTimeIndex.build(content));
+    }
+
+    @Override
+    public String getName() {
+        return mIndex.name;
+    }
+
+    @Override
+    public float getFps() {
+        return mIndex.fps;
+    }
+
+    @Override
+    public int getFrameCount() {
+        return mIndex.frameCount;
+    }
+
+    public long getDurationMillis() {
+        return (long) (mIndex.frameCount * 1000L / mIndex.fps);
+    }
+
+    @Override
+    public int getTrackCount() {
+        return mIndex.motors.length;
+    }
+
+    @Override
+    public String getMotor(int track) {
+        return mIndex.motors[track];
+    }
+
+    /**
+     * @throws IllegalStateException if the mapped file changed and no longer matches its index
+     */
+    @Override
+    public synchronized void poseAt(float frame, float[] out) {
+        for (int track = 0; track < mIndex.motors.length; track++) {
+            out[track] = valueAtLocked(track, frame);
+        }
+    }
+
+    /**
+     * @return angle of {@code track} in degrees at {@code frame}
+     */
+    public synchronized float valueAt(int track, float frame) {
+        return valueAtLocked(track, frame);
+    }
+
+    private float valueAtLocked(int track, float frame) {
+        int keyCount = mIndex.keyCounts[track];
+        if (keyCount == 0) {
+            return 0;
+        }
+        float[] frames = mIndex.frames[track];
+        int sparse = floorIndex(frames, frame);
+        try {
+            mReader.seek(mIndex.offsets[track][Math.max(0, sparse)]);
+            readKey(false);
+            if (sparse < 0) {
+                return mValue0;
+            }
+            // walk from the indexed key to the pair of keys around frame
+            for (int key = sparse * FstTimeIndex.STRIDE + 1; key < keyCount; key++) {
+                readKey(true);
+                if (mFrame1 > frame) {
+                    return Curves.interpolate(mFrame0, mValue0, mOutAngle0, mFrame1, mValue1, mInAngle1, frame);
+                }
+                mFrame0 = mFrame1;
+                mValue0 = mValue1;
+                mOutAngle0 = mOutAngle1;
+            }
+            return mValue0;
+        } catch (FstFormatException e) {
+            throw new IllegalStateException(mIndex.name + " changed on disk", e);
+        }
+    }
+
+    /**
+     * Decode the key at the reader position, into the first or second key slot.
+     * Class references are skipped, so any key can be decoded without the ones before it.
+     */
+    private void readKey(boolean second) throws FstFormatException {
+        FstReader r = mReader;
+        readHeader();
+        float frame = r.readFloat();
+        readHeader();
+        r.readFloat();
+        float value = r.readFloat();
+        readHeader();
+        float inAngle = r.readFloat();
+        r.readFloat();
+        readEnum();
+        r.readObjectEnd();
+        readHeader();
+        float outAngle = r.readFloat();
+        r.readFloat();
+        readEnum();
+        r.readObjectEnd();
+        r.readObjectEnd();
+        r.readObjectEnd();
+        if (second) {
+            mFrame1 = frame;
+            mValue1 = value;
+            mInAngle1 = inAngle;
+            mOutAngle1 = outAngle;
+        } else {
+            mFrame0 = frame;
+            mValue0 = value;
+            mOutAngle0 = outAngle;
+        }
+    }
+
+    private void readHeader() throws FstFormatException {
+        int position = mReader.position();
+        int tag = mReader.readTag();
+        if (tag == FstReader.TAG_OBJECT) {
+            mReader.skipClass();
+        } else if (tag != FstReader.TAG_TYPED) {
+            throw new FstFormatException("key expected, tag " + Integer.toHexString(tag), position);
+        }
+    }
+
+    private void readEnum() throws FstFormatException {
+        int position = mReader.position();
+        if (mReader.readTag() != FstReader.TAG_ENUM) {
+            throw new FstFormatException("enum expected", position);
+        }
+        mReader.skipClass();
+        mReader.readFInt();
+    }
+
+    /**
+     * @return index of the last entry at or before {@code frame}, -1 if there is none
+     */
+    private static int floorIndex(float[] frames, float frame) {
+        int low = 0;
+        int high = frames.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (frames[mid] <= frame) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+}
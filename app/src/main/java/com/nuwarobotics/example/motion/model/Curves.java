@@ -0,0 +1,41 @@
+package com.nuwarobotics.example.motion.model;
+
+/**
+ * Curve math shared by all timelines.
+ */
+public final class Curves {
+    // a vertical handle would give an infinite slope
+    private static final float MAX_HANDLE_ANGLE = 89f;
+
+    private Curves() {
+    }
+
+    /**
+     * Cubic Hermite interpolation between two keys, the handle angles give the slope at each key.
+     * @param outAngle handle angle leaving the first key, degrees of motor angle per frame
+     * @param inAngle handle angle entering the second key
+     * @return value at {@code frame}, clamped to the keys outside [frame0, frame1]
+     */
+    public static float interpolate(float frame0, float value0, float outAngle,
+                                    float frame1, float value1, float inAngle, float frame) {
+        float span = frame1 - frame0;
+        if (span <= 0 || frame <= frame0) {
+            return frame >= frame1 ? value1 : value0;
+        }
+        if (frame >= frame1) {
+            return value1;
+        }
+        float s = (frame - frame0) / span;
+        float s2 = s * s;
+        float s3 = s2 * s;
+        float m0 = slope(outAngle) * span;
+        float m1 = slope(inAngle) * span;
+        return (2 * s3 - 3 * s2 + 1) * value0 + (s3 - 2 * s2 + s) * m0
+                + (-2 * s3 + 3 * s2) * value1 + (s3 - s2) * m1;
+    }
+
+    private static float slope(float angle) {
+        float clamped = Math.max(-MAX_HANDLE_ANGLE, Math.min(MAX_HANDLE_ANGLE, angle));
+        return (float) Math.tan(Math.toRadians(clamped));
+    }
+}
@@ -0,0 +1,94 @@
+package com.nuwarobotics.example.motion.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A motion as stored in a fst motion file: a name, a frame rate and one keyframe track per motor.
+ */
+public final class Motion implements Timeline {
+    private final String mName;
+    private final float mFps;
+    private final int mFrameCount;
+    private final List<MotorTrack> mTracks;
+
+    /**
+     * @param name motion name from the motion editor, e.g. "666_DA_Approve"
+     * @param fps frames per second the key frames refer to
+     * @param frameCount length of the motion in frames
+     */
+    public Motion(String name, float fps, int frameCount, List<MotorTrack> tracks) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("bad fps " + fps);
+        }
+        mName = name;
+        mFps = fps;
+        mFrameCount = frameCount;
+        mTracks = Collections.unmodifiableList(tracks);
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public float getFps() {
+        return mFps;
+    }
+
+    @Override
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public long getDurationMillis() {
+        return (long) (mFrameCount * 1000L / mFps);
+    }
+
+    public List<MotorTrack> getTracks() {
+        return mTracks;
+    }
+
+    @Override
+    public int getTrackCount() {
+        return mTracks.size();
+    }
+
+    @Override
+    public String getMotor(int track) {
+        return mTracks.get(track).getMotor();
+    }
+
+    @Override
+    public void poseAt(float frame, float[] out) {
+        for (int i = 0; i < mTracks.size(); i++) {
+            out[i] = mTracks.get(i).valueAt(frame);
+        }
+    }
+
+    /**
+     * @return track of {@code motor}, null if the motion doesn't move it
+     */
+    public MotorTrack getTrack(String motor) {
+        for (MotorTrack track : mTracks) {
+            if (track.getMotor().equals(motor)) {
+                return track;
+            }
+        }
+        return null;
+    }
+
+    public float frameToMillis(float frame) {
+        return frame * 1000f / mFps;
+    }
+
+    public float millisToFrame(float millis) {
+        return millis * mFps / 1000f;
+    }
+
+    @Override
+    public String toString() {
+        return mName + " " + mFrameCount + " frames @" + mFps + "fps " + mTracks;
+    }
+}
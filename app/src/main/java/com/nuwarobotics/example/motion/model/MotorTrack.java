@@ -0,0 +1,140 @@
+package com.nuwarobotics.example.motion.model;
+
+/**
+ * Keyframes of one motor, e.g. "neck_y" or "right_shoulder_z".
+ * Keys are stored column wise in primitive arrays, sorted by frame.
+ *
+ * Every key has an in and an out handle. The handle angle is the slope of the curve at the key
+ * in degrees, measured in motor degrees per frame; weight and type are kept as found in the motion file.
+ */
+public final class MotorTrack {
+    private final String mMotor;
+    private final int mColor;
+    private final float[] mFrames;
+    private final float[] mValues;
+    private final float[] mInAngles;
+    private final float[] mInWeights;
+    private final byte[] mInTypes;
+    private final float[] mOutAngles;
+    private final float[] mOutWeights;
+    private final byte[] mOutTypes;
+
+    /**
+     * The arrays are taken over, not copied. All must have the same length.
+     * @param motor motor name as used in motion files
+     * @param color ARGB color of the track in the motion editor
+     * @param frames key times in frames, ascending
+     * @param values motor angles in degrees
+     */
+    public MotorTrack(String motor, int color, float[] frames, float[] values,
+                      float[] inAngles, float[] inWeights, byte[] inTypes,
+                      float[] outAngles, float[] outWeights, byte[] outTypes) {
+        int count = frames.length;
+        if (values.length != count || inAngles.length != count || inWeights.length != count || inTypes.length != count
+                || outAngles.length != count || outWeights.length != count || outTypes.length != count) {
+            throw new IllegalArgumentException("key arrays of " + motor + " differ in length");
+        }
+        mMotor = motor;
+        mColor = color;
+        mFrames = frames;
+        mValues = values;
+        mInAngles = inAngles;
+        mInWeights = inWeights;
+        mInTypes = inTypes;
+        mOutAngles = outAngles;
+        mOutWeights = outWeights;
+        mOutTypes = outTypes;
+    }
+
+    public String getMotor() {
+        return mMotor;
+    }
+
+    public int getColor() {
+        return mColor;
+    }
+
+    public int getKeyCount() {
+        return mFrames.length;
+    }
+
+    public float getFrame(int key) {
+        return mFrames[key];
+    }
+
+    public float getValue(int key) {
+        return mValues[key];
+    }
+
+    public float getInAngle(int key) {
+        return mInAngles[key];
+    }
+
+    public float getInWeight(int key) {
+        return mInWeights[key];
+    }
+
+    public int getInType(int key) {
+        return mInTypes[key];
+    }
+
+    public float getOutAngle(int key) {
+        return mOutAngles[key];
+    }
+
+    public float getOutWeight(int key) {
+        return mOutWeights[key];
+    }
+
+    public int getOutType(int key) {
+        return mOutTypes[key];
+    }
+
+    /**
+     * @return index of the last key at or before {@code frame}, -1 if {@code frame} is before the first key
+     */
+    public int keyAt(float frame) {
+        int low = 0;
+        int high = mFrames.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (mFrames[mid] <= frame) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * @return motor angle in degrees at {@code frame}, 0 for a track without keys
+     */
+    public float valueAt(float frame) {
+        int count = mFrames.length;
+        if (count == 0) {
+            return 0;
+        }
+        int key = keyAt(frame);
+        if (key < 0) {
+            return mValues[0];
+        }
+        if (key >= count - 1) {
+            return mValues[count - 1];
+        }
+        return Curves.interpolate(mFrames[key], mValues[key], mOutAngles[key],
+                mFrames[key + 1], mValues[key + 1], mInAngles[key + 1], frame);
+    }
+
+    /**
+     * @return frame of the last key, 0 for a track without keys
+     */
+    public float getLastFrame() {
+        return mFrames.length == 0 ? 0 : mFrames[mFrames.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        return mMotor + "[" + mFrames.length + " keys]";
+    }
+}
@@ -0,0 +1,75 @@
+package com.nuwarobotics.example.motion.model;
+
+/**
+ * A timeline played at another tempo, without copying its keys: the frames stay the same,
+ * only the frame rate they are played at changes. Poses are evaluated from the wrapped timeline.
+ */
+public final class TempoTimeline implements Timeline {
+    private final Timeline mTimeline;
+    private final float mTempo;
+
+    /**
+     * @param tempo 2 to play twice as fast, 0.5 for half speed
+     */
+    public TempoTimeline(Timeline timeline, float tempo) {
+        if (!(tempo > 0)) {
+            throw new IllegalArgumentException("bad tempo " + tempo);
+        }
+        // don't stack wrappers
+        if (timeline instanceof TempoTimeline) {
+            tempo *= ((TempoTimeline) timeline).mTempo;
+            timeline = ((TempoTimeline) timeline).mTimeline;
+        }
+        mTimeline = timeline;
+        mTempo = tempo;
+    }
+
+    /**
+     * @return {@code timeline} stretched or squeezed to last {@code durationMillis}, e.g. the length of a TTS sentence
+     */
+    public static TempoTimeline fitTo(Timeline timeline, long durationMillis) {
+        if (durationMillis <= 0) {
+            throw new IllegalArgumentException("bad duration " + durationMillis);
+        }
+        float sourceMillis = timeline.getFrameCount() * 1000f / timeline.getFps();
+        return new TempoTimeline(timeline, sourceMillis / durationMillis);
+    }
+
+    public Timeline getSource() {
+        return mTimeline;
+    }
+
+    public float getTempo() {
+        return mTempo;
+    }
+
+    @Override
+    public String getName() {
+        return mTimeline.getName();
+    }
+
+    @Override
+    public float getFps() {
+        return mTimeline.getFps() * mTempo;
+    }
+
+    @Override
+    public int getFrameCount() {
+        return mTimeline.getFrameCount();
+    }
+
+    @Override
+    public int getTrackCount() {
+        return mTimeline.getTrackCount();
+    }
+
+    @Override
+    public String getMotor(int track) {
+        return mTimeline.getMotor(track);
+    }
+
+    @Override
+    public void poseAt(float frame, float[] out) {
+        mTimeline.poseAt(frame, out);
+    }
+}
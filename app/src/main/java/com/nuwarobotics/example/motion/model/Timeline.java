@@ -0,0 +1,26 @@
+package com.nuwarobotics.example.motion.model;
+
+/**
+ * Anything that can tell the angle of each of its motors at a given frame,
+ * e.g. a parsed {@link Motion} or a memory mapped motion file.
+ */
+public interface Timeline {
+    String getName();
+
+    float getFps();
+
+    int getFrameCount();
+
+    int getTrackCount();
+
+    /**
+     * @return motor name of {@code track}, e.g. "neck_y"
+     */
+    String getMotor(int track);
+
+    /**
+     * Evaluate all tracks at {@code frame}, frames outside the keys hold the first or last key.
+     * @param out receives one angle in degrees per track, at least {@link #getTrackCount()} long
+     */
+    void poseAt(float frame, float[] out);
+}
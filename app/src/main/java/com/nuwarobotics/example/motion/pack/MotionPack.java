@@ -0,0 +1,202 @@
+package com.nuwarobotics.example.motion.pack;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read only view of a motion pack, many fst motion files concatenated into one file behind an index.
+ * The pack is memory mapped, a motion is only read when it's asked for.
+ * Packs are built with {@link MotionPackWriter}, the layout is in {@link MotionPackFormat}.
+ */
+public final class MotionPack implements Closeable {
+    public static final String EXTENSION = MotionPackFormat.EXTENSION;
+    public static final String MOTION_EXTENSION = MotionPackFormat.MOTION_EXTENSION;
+
+    private static final class Entry {
+        final long offset;
+        final int length;
+        final int crc;
+        volatile boolean verified;
+
+        Entry(long offset, int length, int crc) {
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    private final String mSource;
+    private final List<String> mNames;
+    private final Map<String, Entry> mEntries;
+    private volatile ByteBuffer mBuffer;
+
+    private MotionPack(String source, ByteBuffer buffer) throws IOException {
+        mSource = source;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < MotionPackFormat.HEADER_SIZE || buffer.getInt(0) != MotionPackFormat.MAGIC) {
+            throw new IOException(source + " is not a motion pack");
+        }
+        if (buffer.getShort(4) != MotionPackFormat.VERSION) {
+            throw new IOException(source + " has unsupported version " + buffer.getShort(4));
+        }
+        int count = buffer.getInt(8);
+        int indexSize = buffer.getInt(12);
+        if (count < 0 || indexSize < 0 || MotionPackFormat.HEADER_SIZE + (long) indexSize > buffer.limit()) {
+            throw new IOException(source + " has a broken header");
+        }
+        ByteBuffer index = slice(buffer, MotionPackFormat.HEADER_SIZE, indexSize);
+        if (MotionPackFormat.crc32(index.duplicate()) != buffer.getInt(16)) {
+            throw new IOException(source + " has a corrupt index");
+        }
+
+        List<String> names = new ArrayList<>(count);
+        Map<String, Entry> entries = new HashMap<>(count * 2);
+        byte[] nameBytes = new byte[256];
+        for (int i = 0; i < count; i++) {
+            int nameLength = index.getShort() & 0xffff;
+            if (nameLength > nameBytes.length) {
+                nameBytes = new byte[nameLength];
+            }
+            index.get(nameBytes, 0, nameLength);
+            String name = new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8);
+            Entry entry = new Entry(index.getLong(), index.getInt(), index.getInt());
+            if (entry.offset < MotionPackFormat.HEADER_SIZE + indexSize || entry.length < 0
+                    || entry.offset + entry.length > buffer.limit()) {
+                throw new IOException(source + ": motion " + name + " out of bounds");
+            }
+            names.add(name);
+            entries.put(name, entry);
+        }
+        mNames = Collections.unmodifiableList(names);
+        mEntries = entries;
+        mBuffer = buffer;
+    }
+
+    public static MotionPack open(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            // the mapping stays valid after the channel is closed
+            return new MotionPack(file.getPath(), channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Map a pack straight out of the apk, no copy needed.
+     * The pack must be stored uncompressed, see aaptOptions.noCompress in build.gradle.
+     */
+    public static MotionPack openAsset(Context context, String assetPath) throws IOException {
+        try (AssetFileDescriptor afd = context.getAssets().openFd(assetPath);
+             FileInputStream in = afd.createInputStream()) {
+            MappedByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    afd.getStartOffset(), afd.getLength());
+            return new MotionPack("assets/" + assetPath, buffer);
+        }
+    }
+
+    /**
+     * @return motion names in pack order, without the fst extension
+     */
+    public List<String> getNames() {
+        return mNames;
+    }
+
+    public boolean contains(String name) {
+        return mEntries.containsKey(name);
+    }
+
+    /**
+     * @return size of the fst payload of {@code name} in bytes, -1 if the pack doesn't have it
+     */
+    public int getLength(String name) {
+        Entry entry = mEntries.get(name);
+        return entry == null ? -1 : entry.length;
+    }
+
+    /**
+     * @return read only view of the fst payload of {@code name}, checked against its crc32 on first access
+     * @throws IOException if the pack doesn't have the motion or its payload is corrupt
+     */
+    public ByteBuffer get(String name) throws IOException {
+        ByteBuffer buffer = mBuffer;
+        if (buffer == null) {
+            throw new IOException(mSource + " is closed");
+        }
+        Entry entry = mEntries.get(name);
+        if (entry == null) {
+            throw new IOException(mSource + " has no motion " + name);
+        }
+        ByteBuffer payload = slice(buffer, (int) entry.offset, entry.length).asReadOnlyBuffer();
+        if (!entry.verified) {
+            if (MotionPackFormat.crc32(payload.duplicate()) != entry.crc) {
+                throw new IOException(mSource + ": motion " + name + " is corrupt");
+            }
+            entry.verified = true;
+        }
+        return payload;
+    }
+
+    /**
+     * Write {@code name} as fst file into {@code dir}, e.g. for {@code NuwaRobotAPI.motionPlay(name, show, path)}.
+     * An existing file with the payload's size and crc32 is kept.
+     * @return the fst file
+     */
+    public File extract(String name, File dir) throws IOException {
+        ByteBuffer payload = get(name);
+        File file = new File(dir, name + MOTION_EXTENSION);
+        if (file.isFile() && file.length() == payload.remaining() && crc32(file) == mEntries.get(name).crc) {
+            return file;
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can't create " + dir);
+        }
+        File tmp = new File(dir, name + MOTION_EXTENSION + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            FileChannel channel = out.getChannel();
+            while (payload.hasRemaining()) {
+                channel.write(payload);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("can't rename " + tmp + " to " + file);
+        }
+        return file;
+    }
+
+    /**
+     * Drop the reference to the mapping, it's unmapped once the buffers handed out are collected.
+     */
+    @Override
+    public void close() {
+        mBuffer = null;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(offset + length);
+        slice.position(offset);
+        return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int crc32(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            return MotionPackFormat.crc32(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+}
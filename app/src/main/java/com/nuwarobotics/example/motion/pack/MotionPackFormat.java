@@ -0,0 +1,33 @@
+package com.nuwarobotics.example.motion.pack;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * File format of a motion pack, shared by {@link MotionPack} and {@link MotionPackWriter}.
+ * Plain Java, the writer runs without Android.
+ *
+ * Layout, all numbers little endian:
+ * <pre>
+ * header : int magic "NWMP", short version, short reserved, int entry count, int index size, int index crc32
+ * index  : per motion short name length, utf8 name, long offset, int length, int crc32 of the payload
+ * data   : the fst payloads at their offsets, relative to the start of the pack
+ * </pre>
+ */
+final class MotionPackFormat {
+    static final String EXTENSION = ".mpack";
+    static final String MOTION_EXTENSION = ".fst";
+
+    static final int MAGIC = 0x504D574E; // "NWMP" read little endian
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 20;
+
+    private MotionPackFormat() {
+    }
+
+    static int crc32(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,120 @@
+package com.nuwarobotics.example.motion.pack;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds a {@link MotionPack} out of fst motion files.
+ * Plain Java like {@link MotionPackFormat}, so packs can be built on a workstation before they go into app/assets:
+ * <pre>
+ * java -cp classes com.nuwarobotics.example.motion.pack.MotionPackWriter motions.mpack app/src/main/assets/motion_bin
+ * </pre>
+ */
+public final class MotionPackWriter {
+    private final List<String> mNames = new ArrayList<>();
+    private final List<File> mFiles = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: MotionPackWriter <pack file> <folder with fst files>");
+            System.exit(1);
+        }
+        MotionPackWriter writer = new MotionPackWriter();
+        int count = writer.addFolder(new File(args[1]));
+        writer.write(new File(args[0]));
+        System.out.println(count + " motions written to " + args[0]);
+    }
+
+    /**
+     * @param name motion name as passed to motionPlay, without extension
+     */
+    public MotionPackWriter add(String name, File fst) {
+        if (mNames.contains(name)) {
+            throw new IllegalArgumentException("duplicate motion " + name);
+        }
+        mNames.add(name);
+        mFiles.add(fst);
+        return this;
+    }
+
+    /**
+     * Add every fst file of {@code dir}, sorted by name.
+     * @return number of motions added
+     */
+    public int addFolder(File dir) throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(MotionPackFormat.MOTION_EXTENSION));
+        if (files == null) {
+            throw new IOException("can't list " + dir);
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            add(name.substring(0, name.length() - MotionPackFormat.MOTION_EXTENSION.length()), file);
+        }
+        return files.length;
+    }
+
+    public void write(File pack) throws IOException {
+        int indexSize = 0;
+        byte[][] names = new byte[mNames.size()][];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = mNames.get(i).getBytes(StandardCharsets.UTF_8);
+            if (names[i].length > 0xffff) {
+                throw new IllegalArgumentException("motion name too long: " + mNames.get(i));
+            }
+            indexSize += 2 + names[i].length + 8 + 4 + 4;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(pack, "rw")) {
+            raf.setLength(0);
+            FileChannel out = raf.getChannel();
+            ByteBuffer index = ByteBuffer.allocate(indexSize).order(ByteOrder.LITTLE_ENDIAN);
+            long offset = MotionPackFormat.HEADER_SIZE + indexSize;
+            out.position(offset);
+            for (int i = 0; i < names.length; i++) {
+                ByteBuffer payload = readFully(mFiles.get(i));
+                int length = payload.remaining();
+                int crc = MotionPackFormat.crc32(payload.duplicate());
+                while (payload.hasRemaining()) {
+                    out.write(payload);
+                }
+                index.putShort((short) names[i].length).put(names[i]).putLong(offset).putInt(length).putInt(crc);
+                offset += length;
+            }
+            index.flip();
+
+            ByteBuffer header = ByteBuffer.allocate(MotionPackFormat.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MotionPackFormat.MAGIC).putShort(MotionPackFormat.VERSION).putShort((short) 0)
+                    .putInt(names.length).putInt(indexSize).putInt(MotionPackFormat.crc32(index.duplicate()));
+            header.flip();
+            out.position(0);
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            while (index.hasRemaining()) {
+                out.write(index);
+            }
+        }
+    }
+
+    private static ByteBuffer readFully(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // read until the buffer is full
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,596 @@
+package com.nuwarobotics.example.motion.player;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.nuwarobotics.example.motion.model.Timeline;
+import com.nuwarobotics.service.agent.NuwaRobotAPI;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a {@link Timeline} on the robot by streaming interpolated poses through {@link NuwaRobotAPI#ctlMotor},
+ * an alternative to {@code motionPlay} for motions the app parsed or generated itself.
+ *
+ * Poses are sent from an own thread on a fixed rate grid. The motion position is taken from the monotonic clock,
+ * not from the tick count, so late ticks never make the motion run slow: a tick that comes late samples
+ * the pose for the time it actually runs at, and ticks missed entirely are skipped to stay on the grid.
+ * Each motor is sent with the speed that gets it to the new angle by the next tick.
+ *
+ * The tempo can be changed while playing, e.g. to fit a motion to music or to the length of a TTS sentence.
+ * Keys are not resampled into a copy: the motion clock just runs faster or slower and each tick
+ * evaluates the timeline at the scaled position.
+ *
+ * A motion that follows another one, still playing or ended within the cross-fade window, is cross-faded from it:
+ * for {@link #setCrossFade the cross-fade window} each motor moves from the angle of the previous motion, which keeps
+ * running if it was still playing, to the angle of the new one. Sequences flow on without snapping back to a
+ * rest pose between motions. Call {@link #forgetPose()} when the motors were moved without the player.
+ *
+ * Events are reported like {@link com.nuwarobotics.service.agent.RobotEventCallback} reports them for
+ * {@code motionPlay}, on the player thread.
+ */
+public final class MotionPlayer {
+    private static final String TAG = "MotionPlayer";
+
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_PLAYING = 1;
+    public static final int STATE_PAUSED = 2;
+
+    /** The timeline could not be evaluated, e.g. its file changed on disk. */
+    public static final int ERROR_TIMELINE = 1;
+    /** The robot service rejected a motor command. */
+    public static final int ERROR_MOTOR_CONTROL = 2;
+
+    public static final int DEFAULT_TICK_RATE = 20;
+
+    public static final long DEFAULT_CROSS_FADE_MILLIS = 300;
+
+    public static final float MIN_TEMPO = 0.25f;
+    public static final float MAX_TEMPO = 4f;
+
+    // speed of the first move of each motor, whose current angle is not known; same as MotorControlActivity
+    private static final float START_MOTOR_SPEED = 45;
+    private static final float MIN_MOTOR_SPEED = 1;
+    private static final float MAX_MOTOR_SPEED = 200;
+    // changes below this are not worth a binder call
+    private static final float DEAD_BAND = 0.2f;
+
+    public interface Listener {
+        void onStartOfMotionPlay(String motion);
+
+        void onPauseOfMotionPlay(String motion);
+
+        /**
+         * Playback continued after {@link #pause()}.
+         */
+        void onPlayBackOfMotionPlay(String motion);
+
+        /**
+         * Playback was ended early by {@link #stop()} or by playing another motion.
+         */
+        void onStopOfMotionPlay(String motion);
+
+        void onCompleteOfMotionPlay(String motion);
+
+        /**
+         * @param errorCode {@link #ERROR_TIMELINE} or {@link #ERROR_MOTOR_CONTROL}, playback is stopped
+         */
+        void onErrorOfMotionPlay(int errorCode);
+    }
+
+    private static final int EVENT_START = 0;
+    private static final int EVENT_PAUSE = 1;
+    private static final int EVENT_PLAY_BACK = 2;
+    private static final int EVENT_STOP = 3;
+    private static final int EVENT_COMPLETE = 4;
+    private static final int EVENT_ERROR = 5;
+
+    private static final class Event {
+        final int type;
+        final String motion;
+        final int error;
+
+        Event(int type, String motion, int error) {
+            this.type = type;
+            this.motion = motion;
+            this.error = error;
+        }
+    }
+
+    /**
+     * One play() call. The pose is written under the lock and sent outside of it,
+     * a new session gets new arrays so a concurrent play() never changes a pose being sent.
+     */
+    private static final class Session {
+        final Timeline timeline;
+        final int[] motorIds;
+        final float[] pose;
+        final float[] sent;
+        final long endNanos;
+        // position the session was at when it ended and when that was, guarded by mLock
+        long lastPositionNanos;
+        long endedAtNanos;
+
+        // the session this one follows, kept until the cross-fade is over; guarded by mLock
+        Session previous;
+        // per track the track of previous with the same motor, -1 if it has none
+        int[] previousTracks;
+        long previousPositionNanos;
+        boolean previousMoving;
+        long fadeStartNanos;
+        long fadeNanos;
+        // whether sent was taken over from previous, only touched by the player thread
+        boolean sentInherited;
+
+        Session(Timeline timeline) {
+            this.timeline = timeline;
+            int trackCount = timeline.getTrackCount();
+            motorIds = new int[trackCount];
+            for (int track = 0; track < trackCount; track++) {
+                motorIds[track] = Motors.idOf(timeline.getMotor(track));
+                if (motorIds[track] == Motors.UNKNOWN) {
+                    Log.w(TAG, timeline.getName() + ": no motor " + timeline.getMotor(track) + ", track ignored");
+                }
+            }
+            pose = new float[trackCount];
+            sent = new float[trackCount];
+            Arrays.fill(sent, Float.NaN);
+            endNanos = (long) (timeline.getFrameCount() * 1e9 / timeline.getFps());
+        }
+
+        /**
+         * @param moving whether previous keeps running during the fade, else it holds its last pose
+         */
+        void follow(Session previous, boolean moving, long startNanos, long fadeNanos) {
+            this.previous = previous;
+            previousPositionNanos = previous.lastPositionNanos;
+            previousMoving = moving;
+            fadeStartNanos = startNanos;
+            // never fade for longer than the motion lasts, it has to end on its own last pose
+            this.fadeNanos = Math.max(0, Math.min(fadeNanos, endNanos - startNanos));
+            previousTracks = new int[motorIds.length];
+            for (int track = 0; track < motorIds.length; track++) {
+                previousTracks[track] = -1;
+                for (int other = 0; other < previous.motorIds.length; other++) {
+                    if (motorIds[track] != Motors.UNKNOWN && previous.motorIds[other] == motorIds[track]) {
+                        previousTracks[track] = other;
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Evaluate the pose at {@code positionNanos} into {@link #pose}, blended with the previous session while fading.
+         */
+        void evaluate(long positionNanos) {
+            boolean end = positionNanos >= endNanos;
+            float frame = end ? timeline.getFrameCount() : (float) (positionNanos * (double) timeline.getFps() / 1e9);
+            timeline.poseAt(frame, pose);
+            if (previous == null) {
+                return;
+            }
+            long into = positionNanos - fadeStartNanos;
+            if (into >= fadeNanos) {
+                if (sentInherited) {
+                    previous = null;
+                }
+                return;
+            }
+            long previousPosition = previousMoving ? previousPositionNanos + Math.max(0, into) : previousPositionNanos;
+            previous.evaluate(Math.min(previousPosition, previous.endNanos));
+            float x = Math.max(0, (float) into / fadeNanos);
+            float weight = x * x * (3 - 2 * x);
+            for (int track = 0; track < pose.length; track++) {
+                int other = previousTracks[track];
+                if (other >= 0) {
+                    float from = previous.pose[other];
+                    pose[track] = from + (pose[track] - from) * weight;
+                }
+            }
+        }
+
+        /**
+         * Continue from the angles the previous session sent, so the first move of a motor gets a fitting speed.
+         * Runs on the player thread, which owns {@link #sent}.
+         */
+        void inheritSent() {
+            if (sentInherited) {
+                return;
+            }
+            sentInherited = true;
+            if (previous == null) {
+                return;
+            }
+            for (int track = 0; track < sent.length; track++) {
+                int other = previousTracks[track];
+                if (other >= 0) {
+                    sent[track] = previous.sent[other];
+                }
+            }
+        }
+    }
+
+    private final NuwaRobotAPI mRobotAPI;
+    private final Thread mThread;
+    private final Object mLock = new Object();
+    private final ArrayDeque<Event> mEvents = new ArrayDeque<>();
+    private volatile Listener mListener;
+
+    // guarded by mLock
+    private Session mSession;
+    // the session that played last, the next one is cross-faded from it
+    private Session mLastSession;
+    private long mCrossFadeNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_CROSS_FADE_MILLIS);
+    private int mState = STATE_IDLE;
+    private boolean mReleased;
+    // position in motion time, which runs mTempo times as fast as the clock
+    private long mPositionNanos;
+    private float mTempo = 1f;
+    private long mLastTickNanos;
+    private long mNextTickNanos;
+    private long mPeriodNanos = TimeUnit.SECONDS.toNanos(1) / DEFAULT_TICK_RATE;
+    private long mSkippedTicks;
+
+    public MotionPlayer(NuwaRobotAPI robotAPI) {
+        mRobotAPI = robotAPI;
+        mThread = new Thread(this::loop, TAG);
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @param ticksPerSecond how often poses are sent, each tick costs one ctlMotor call per moving motor
+     */
+    public void setTickRate(int ticksPerSecond) {
+        if (ticksPerSecond <= 0 || ticksPerSecond > 100) {
+            throw new IllegalArgumentException("bad tick rate " + ticksPerSecond);
+        }
+        synchronized (mLock) {
+            mPeriodNanos = TimeUnit.SECONDS.toNanos(1) / ticksPerSecond;
+        }
+    }
+
+    /**
+     * Change the playback tempo, also while playing; it stays set for the following motions.
+     * @param tempo 1 for the authored speed, from {@link #MIN_TEMPO} to {@link #MAX_TEMPO}
+     */
+    public void setTempo(float tempo) {
+        if (!(tempo >= MIN_TEMPO && tempo <= MAX_TEMPO)) {
+            throw new IllegalArgumentException("bad tempo " + tempo);
+        }
+        synchronized (mLock) {
+            if (mState == STATE_PLAYING) {
+                // the time since the last tick still runs at the old tempo
+                advanceLocked(System.nanoTime());
+            }
+            mTempo = tempo;
+        }
+    }
+
+    public float getTempo() {
+        synchronized (mLock) {
+            return mTempo;
+        }
+    }
+
+    /**
+     * @param millis how long a motion is blended with the one before it, 0 to switch at once
+     */
+    public void setCrossFade(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("bad cross-fade " + millis);
+        }
+        synchronized (mLock) {
+            mCrossFadeNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+
+    public long getCrossFadeMillis() {
+        synchronized (mLock) {
+            return TimeUnit.NANOSECONDS.toMillis(mCrossFadeNanos);
+        }
+    }
+
+    public void play(Timeline timeline) {
+        play(timeline, 0);
+    }
+
+    /**
+     * Play {@code timeline} from {@code startMillis}, a motion still playing is stopped first
+     * and keeps running while the new one fades in.
+     */
+    public void play(Timeline timeline, long startMillis) {
+        Session session = new Session(timeline);
+        synchronized (mLock) {
+            checkNotReleased();
+            long now = System.nanoTime();
+            boolean wasPlaying = mState == STATE_PLAYING;
+            stopLocked();
+            long start = Math.max(0, TimeUnit.MILLISECONDS.toNanos(startMillis));
+            // an older pose may be long gone, e.g. moved by motionPlay, the motors then start at their own speed
+            if (mLastSession != null && (wasPlaying || now - mLastSession.endedAtNanos <= mCrossFadeNanos)) {
+                session.follow(mLastSession, wasPlaying, start, mCrossFadeNanos);
+            }
+            mSession = session;
+            mState = STATE_PLAYING;
+            mPositionNanos = start;
+            mLastTickNanos = now;
+            mNextTickNanos = now;
+            mEvents.add(new Event(EVENT_START, timeline.getName(), 0));
+        }
+        LockSupport.unpark(mThread);
+    }
+
+    /**
+     * The motors were moved by something else, e.g. {@code motionPlay} or {@code ctlMotor}; the next motion
+     * doesn't fade from the last pose the player sent.
+     */
+    public void forgetPose() {
+        synchronized (mLock) {
+            mLastSession = null;
+        }
+    }
+
+    public void pause() {
+        synchronized (mLock) {
+            if (mState != STATE_PLAYING) {
+                return;
+            }
+            advanceLocked(System.nanoTime());
+            mState = STATE_PAUSED;
+            mEvents.add(new Event(EVENT_PAUSE, mSession.timeline.getName(), 0));
+        }
+        LockSupport.unpark(mThread);
+    }
+
+    public void resume() {
+        synchronized (mLock) {
+            if (mState != STATE_PAUSED) {
+                return;
+            }
+            long now = System.nanoTime();
+            mLastTickNanos = now;
+            mNextTickNanos = now;
+            mState = STATE_PLAYING;
+            mEvents.add(new Event(EVENT_PLAY_BACK, mSession.timeline.getName(), 0));
+        }
+        LockSupport.unpark(mThread);
+    }
+
+    /**
+     * Stop playing, the motors keep their current angles.
+     */
+    public void stop() {
+        synchronized (mLock) {
+            stopLocked();
+        }
+        LockSupport.unpark(mThread);
+    }
+
+    /**
+     * Stop playing and end the player thread once pending events are reported.
+     */
+    public void release() {
+        synchronized (mLock) {
+            stopLocked();
+            mReleased = true;
+        }
+        LockSupport.unpark(mThread);
+    }
+
+    public int getState() {
+        synchronized (mLock) {
+            return mState;
+        }
+    }
+
+    /**
+     * @return position in the current motion in motion time, 0 when idle
+     */
+    public long getPositionMillis() {
+        synchronized (mLock) {
+            if (mState == STATE_IDLE) {
+                return 0;
+            }
+            long position = mPositionNanos;
+            if (mState == STATE_PLAYING) {
+                position += (long) ((System.nanoTime() - mLastTickNanos) * (double) mTempo);
+            }
+            return TimeUnit.NANOSECONDS.toMillis(Math.min(position, mSession.endNanos));
+        }
+    }
+
+    /**
+     * @return ticks dropped because the player thread was late by more than a tick period
+     */
+    public long getSkippedTicks() {
+        synchronized (mLock) {
+            return mSkippedTicks;
+        }
+    }
+
+    private void stopLocked() {
+        if (mState == STATE_PLAYING) {
+            advanceLocked(System.nanoTime());
+        }
+        if (mState != STATE_IDLE) {
+            mEvents.add(new Event(EVENT_STOP, mSession.timeline.getName(), 0));
+            endLocked(Math.min(mPositionNanos, mSession.endNanos));
+        }
+    }
+
+    /**
+     * @param lastPositionNanos where the motors stay, the next motion fades from there
+     */
+    private void endLocked(long lastPositionNanos) {
+        mSession.lastPositionNanos = lastPositionNanos;
+        mSession.endedAtNanos = System.nanoTime();
+        mLastSession = mSession;
+        mState = STATE_IDLE;
+        mSession = null;
+    }
+
+    private void checkNotReleased() {
+        if (mReleased) {
+            throw new IllegalStateException("player released");
+        }
+    }
+
+    private void loop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+        List<Event> events = new ArrayList<>();
+        while (true) {
+            Session session = null;
+            long deadline = 0;
+            boolean released;
+            synchronized (mLock) {
+                if (mState == STATE_PLAYING) {
+                    session = mSession;
+                    if (tickLocked(session)) {
+                        deadline = mNextTickNanos;
+                    } else {
+                        session = null;
+                    }
+                }
+                events.addAll(mEvents);
+                mEvents.clear();
+                released = mReleased;
+            }
+            if (session != null && !send(session)) {
+                events.add(new Event(EVENT_ERROR, session.timeline.getName(), ERROR_MOTOR_CONTROL));
+            }
+            for (Event event : events) {
+                dispatch(event);
+            }
+            events.clear();
+            if (released) {
+                return;
+            }
+            if (session != null) {
+                LockSupport.parkNanos(this, deadline - System.nanoTime());
+            } else {
+                // idle or paused, commands unpark
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    private void advanceLocked(long now) {
+        mPositionNanos += (long) ((now - mLastTickNanos) * (double) mTempo);
+        mLastTickNanos = now;
+    }
+
+    /**
+     * Advance the position to now and evaluate the pose into the session.
+     * @return false if playback ended with this tick
+     */
+    private boolean tickLocked(Session session) {
+        long now = System.nanoTime();
+        advanceLocked(now);
+        boolean complete = mPositionNanos >= session.endNanos;
+        try {
+            session.inheritSent();
+            session.evaluate(mPositionNanos);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "can't evaluate " + session.timeline.getName() + " at " + mPositionNanos + "ns", e);
+            mEvents.add(new Event(EVENT_ERROR, session.timeline.getName(), ERROR_TIMELINE));
+            mState = STATE_IDLE;
+            mSession = null;
+            mLastSession = null;
+            return false;
+        }
+        if (complete) {
+            // the last pose is still sent, the session is only kept to fade the next motion from
+            mEvents.add(new Event(EVENT_COMPLETE, session.timeline.getName(), 0));
+            endLocked(session.endNanos);
+            mNextTickNanos = now;
+            return true;
+        }
+        // stay on the fixed rate grid, skipping ticks that are already over
+        mNextTickNanos += mPeriodNanos;
+        if (mNextTickNanos <= now) {
+            long missed = (now - mNextTickNanos) / mPeriodNanos + 1;
+            mSkippedTicks += missed;
+            mNextTickNanos += missed * mPeriodNanos;
+        }
+        return true;
+    }
+
+    /**
+     * @return false if the robot service failed, playback is stopped then
+     */
+    private boolean send(Session session) {
+        float periodSeconds;
+        synchronized (mLock) {
+            periodSeconds = mPeriodNanos / 1e9f;
+        }
+        try {
+            for (int track = 0; track < session.pose.length; track++) {
+                int motor = session.motorIds[track];
+                float angle = session.pose[track];
+                float sent = session.sent[track];
+                if (motor == Motors.UNKNOWN || Math.abs(angle - sent) < DEAD_BAND) {
+                    continue;
+                }
+                float speed = Float.isNaN(sent) ? START_MOTOR_SPEED
+                        : Math.max(MIN_MOTOR_SPEED, Math.min(MAX_MOTOR_SPEED, Math.abs(angle - sent) / periodSeconds));
+                mRobotAPI.ctlMotor(motor, angle, speed);
+                session.sent[track] = angle;
+            }
+            return true;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "ctlMotor failed, stopping " + session.timeline.getName(), e);
+            synchronized (mLock) {
+                if (mSession == session) {
+                    mState = STATE_IDLE;
+                    mSession = null;
+                }
+                // the motors are wherever the service left them
+                mLastSession = null;
+            }
+            return false;
+        }
+    }
+
+    private void dispatch(Event event) {
+        Listener listener = mListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            switch (event.type) {
+                case EVENT_START:
+                    listener.onStartOfMotionPlay(event.motion);
+                    break;
+                case EVENT_PAUSE:
+                    listener.onPauseOfMotionPlay(event.motion);
+                    break;
+                case EVENT_PLAY_BACK:
+                    listener.onPlayBackOfMotionPlay(event.motion);
+                    break;
+                case EVENT_STOP:
+                    listener.onStopOfMotionPlay(event.motion);
+                    break;
+                case EVENT_COMPLETE:
+                    listener.onCompleteOfMotionPlay(event.motion);
+                    break;
+                case EVENT_ERROR:
+                    listener.onErrorOfMotionPlay(event.error);
+                    break;
+            }
+        } catch (RuntimeException e) {
+            // a failing listener must not stop the playback thread
+            Log.e(TAG, "listener failed on event " + event.type + " of " + event.motion, e);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.nuwarobotics.example.motion.player;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.nuwarobotics.service.agent.NuwaRobotAPI;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prepares upcoming robot motions with {@link NuwaRobotAPI#motionPrepare} while the current one plays,
+ * so {@code motionPlay} of the next one doesn't wait for the robot service to load it.
+ *
+ * Prepares run one at a time, each starts when {@code onPrepareMotion} reported the one before, or the
+ * timeout of the one before ran out on the main looper, and the durations they report are kept. The watermark {@link #getPreparedAhead()} tells how many of the upcoming
+ * motions are ready in a row. The app forwards {@code RobotEventCallback.onPrepareMotion} to
+ * {@link #onPrepareMotion}, directly or through {@link MotionQueue#onPrepareMotion}.
+ */
+public final class MotionPrefetcher {
+    private static final String TAG = "MotionPrefetcher";
+
+    public static final int DEFAULT_DEPTH = 2;
+    // a prepare without answer is given up after this long, so one lost callback doesn't stall the pipeline
+    private static final long PREPARE_TIMEOUT_MS = 5000;
+
+    private final NuwaRobotAPI mRobotAPI;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Object mTimeoutToken = new Object();
+
+    // guarded by this
+    private int mDepth = DEFAULT_DEPTH;
+    private final List<String> mUpcoming = new ArrayList<>();
+    private final Set<String> mPrepared = new HashSet<>();
+    private final Set<String> mFailed = new HashSet<>();
+    private final Map<String, Float> mDurations = new HashMap<>();
+    private String mInFlight;
+
+    public MotionPrefetcher(NuwaRobotAPI robotAPI) {
+        mRobotAPI = robotAPI;
+    }
+
+    /**
+     * @param depth how many upcoming motions are kept prepared
+     */
+    public void setDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("bad depth " + depth);
+        }
+        synchronized (this) {
+            mDepth = depth;
+        }
+        pump();
+    }
+
+    /**
+     * @param upcoming motions that play next, in play order; only the first {@code depth} are prepared
+     */
+    public void prefetch(List<String> upcoming) {
+        synchronized (this) {
+            mUpcoming.clear();
+            mUpcoming.addAll(upcoming);
+        }
+        pump();
+    }
+
+    /**
+     * The motion started playing, it leaves the prepared window and is prepared again when it comes up next time.
+     */
+    public void onPlayed(String motion) {
+        synchronized (this) {
+            mPrepared.remove(motion);
+            mFailed.remove(motion);
+            mUpcoming.remove(motion);
+        }
+        pump();
+    }
+
+    /**
+     * The robot prepared {@code motion} or gave up on it, the next queued motion can be prepared.
+     */
+    public void onPrepareMotion(boolean isError, String motion, float duration) {
+        synchronized (this) {
+            if (motion != null && motion.equals(mInFlight)) {
+                mInFlight = null;
+                mHandler.removeCallbacksAndMessages(mTimeoutToken);
+            }
+            if (isError) {
+                Log.w(TAG, "prepare of " + motion + " failed");
+                mFailed.add(motion);
+            } else {
+                mPrepared.add(motion);
+                mDurations.put(motion, duration);
+            }
+        }
+        pump();
+    }
+
+    public synchronized boolean isPrepared(String motion) {
+        return mPrepared.contains(motion);
+    }
+
+    /**
+     * @return duration in seconds reported when the motion was prepared, NaN if it never was
+     */
+    public synchronized float getDuration(String motion) {
+        Float duration = mDurations.get(motion);
+        return duration == null ? Float.NaN : duration;
+    }
+
+    /**
+     * @return how many of the upcoming motions, counted from the next one, are prepared without a gap
+     */
+    public synchronized int getPreparedAhead() {
+        int ahead = 0;
+        while (ahead < Math.min(mDepth, mUpcoming.size()) && mPrepared.contains(mUpcoming.get(ahead))) {
+            ahead++;
+        }
+        return ahead;
+    }
+
+    /**
+     * Start the prepare of the first upcoming motion that needs one, unless one is running.
+     */
+    private void pump() {
+        String motion = null;
+        synchronized (this) {
+            if (mInFlight != null) {
+                return;
+            }
+            for (String upcoming : mUpcoming.subList(0, Math.min(mDepth, mUpcoming.size()))) {
+                if (!mPrepared.contains(upcoming) && !mFailed.contains(upcoming)) {
+                    motion = upcoming;
+                    break;
+                }
+            }
+            if (motion == null) {
+                return;
+            }
+            mInFlight = motion;
+            String prepared = motion;
+            mHandler.postAtTime(() -> onPrepareTimeout(prepared), mTimeoutToken,
+                    SystemClock.uptimeMillis() + PREPARE_TIMEOUT_MS);
+        }
+        mRobotAPI.motionPrepare(motion);
+    }
+
+    /**
+     * Stop preparing, e.g. before the robot API is released.
+     */
+    public void release() {
+        mHandler.removeCallbacksAndMessages(mTimeoutToken);
+        synchronized (this) {
+            mUpcoming.clear();
+            mInFlight = null;
+        }
+    }
+
+    private void onPrepareTimeout(String motion) {
+        synchronized (this) {
+            if (!motion.equals(mInFlight)) {
+                return;
+            }
+            Log.w(TAG, "no answer to prepare of " + motion + ", going on");
+            mFailed.add(motion);
+            mInFlight = null;
+        }
+        pump();
+    }
+}
@@ -0,0 +1,511 @@
+package com.nuwarobotics.example.motion.player;
+
+import android.util.Log;
+
+import com.nuwarobotics.example.motion.catalog.MotionMetadataCache;
+import com.nuwarobotics.example.motion.fst.FstMotionParser;
+import com.nuwarobotics.example.motion.model.Motion;
+import com.nuwarobotics.example.motion.model.Timeline;
+import com.nuwarobotics.example.motion.stats.MotionLatencyTracker;
+import com.nuwarobotics.service.agent.NuwaRobotAPI;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays a list of motions back to back, starting the next one as soon as the end of the current one is reported.
+ * Items are either robot motion names, played with {@link NuwaRobotAPI#motionPlay(String, boolean)}, or fst files,
+ * played by a {@link MotionPlayer} which cross-fades them. The fst file of the next item is parsed while
+ * the current one plays, so starting it is immediate; with a {@link MotionPrefetcher} the next named motions are
+ * prepared by the robot service as well.
+ *
+ * Everything runs on the queue's own thread; no step needs the UI thread. The queue is the listener of its
+ * player. Robot events go to one callback per app, forward its motion events to the queue:
+ * <pre>
+ * public void onCompleteOfMotionPlay(String motion) {
+ *     mQueue.onCompleteOfMotionPlay(motion);
+ * }
+ * </pre>
+ */
+public final class MotionQueue implements MotionPlayer.Listener {
+    private static final String TAG = "MotionQueue";
+
+    public enum ErrorPolicy {
+        /** Go on with the next item. */
+        SKIP,
+        /** Play the failed item again, up to the retry limit, then skip it. */
+        RETRY,
+        /** Stop the queue. */
+        STOP
+    }
+
+    public static final class Item {
+        private final String mName;
+        private final File mFile;
+        // parsed ahead of playing, only touched on the queue thread
+        private Timeline mTimeline;
+
+        private Item(String name, File file) {
+            mName = name;
+            mFile = file;
+        }
+
+        /**
+         * @param motion a motion installed on the robot, e.g. "666_RE_Bye"
+         */
+        public static Item named(String motion) {
+            return new Item(motion, null);
+        }
+
+        public static Item file(File fst) {
+            return new Item(null, fst);
+        }
+
+        /**
+         * @return an fst item for paths ending in .fst, else a named motion
+         */
+        public static Item parse(String motionOrPath) {
+            return motionOrPath.endsWith(".fst") ? file(new File(motionOrPath)) : named(motionOrPath);
+        }
+
+        /**
+         * @return the robot motion name, null for fst items
+         */
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * @return the fst file, null for named items
+         */
+        public File getFile() {
+            return mFile;
+        }
+
+        @Override
+        public String toString() {
+            return mFile != null ? mFile.getPath() : mName;
+        }
+    }
+
+    public interface Listener {
+        void onItemStarted(Item item);
+
+        /**
+         * @param errorCode as reported by onErrorOfMotionPlay, or {@link #ERROR_LOAD} if the fst file can't be read
+         */
+        void onItemFailed(Item item, int errorCode);
+
+        /**
+         * The last item ended and the queue doesn't loop, or the queue stopped on an error.
+         */
+        void onQueueFinished();
+    }
+
+    public static final int ERROR_LOAD = -1;
+
+    private final NuwaRobotAPI mRobotAPI;
+    private final MotionPlayer mPlayer;
+    private final ExecutorService mExecutor;
+    private final Random mRandom = new Random();
+    private volatile Listener mListener;
+    private volatile MotionPrefetcher mPrefetcher;
+    private volatile MotionMetadataCache mMetadataCache;
+
+    // only touched on the queue thread
+    private final List<Item> mItems = new ArrayList<>();
+    private final ArrayDeque<Item> mPending = new ArrayDeque<>();
+    private boolean mLoop;
+    private boolean mShuffle;
+    private ErrorPolicy mErrorPolicy = ErrorPolicy.SKIP;
+    private int mMaxRetries = 1;
+    private boolean mRunning;
+    private Item mCurrent;
+    // name the events of mCurrent carry, and whether its start was reported yet
+    private String mCurrentName;
+    private boolean mCurrentStarted;
+    private int mRetries;
+    // failures since an item last played to its end, to not loop forever over a playlist that can't play
+    private int mFailures;
+
+    public MotionQueue(NuwaRobotAPI robotAPI, MotionPlayer player) {
+        mRobotAPI = robotAPI;
+        mPlayer = player;
+        mPlayer.setListener(this);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        mExecutor = executor;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * @param prefetcher prepares the next named motions while the current item plays, null for none
+     */
+    public void setPrefetcher(MotionPrefetcher prefetcher) {
+        mPrefetcher = prefetcher;
+    }
+
+    /**
+     * @param cache learns durations, moved motors and play times of the items, null for none
+     */
+    public void setMetadataCache(MotionMetadataCache cache) {
+        mMetadataCache = cache;
+    }
+
+    /**
+     * Append items to the playlist, they play after the ones already queued.
+     */
+    public void addAll(List<Item> items) {
+        List<Item> copy = new ArrayList<>(items);
+        mExecutor.execute(() -> {
+            mItems.addAll(copy);
+            if (mShuffle) {
+                // keep the rest of this pass random too
+                List<Item> pending = new ArrayList<>(mPending);
+                pending.addAll(copy);
+                Collections.shuffle(pending, mRandom);
+                mPending.clear();
+                mPending.addAll(pending);
+            } else {
+                mPending.addAll(copy);
+            }
+        });
+    }
+
+    public void add(Item item) {
+        addAll(Collections.singletonList(item));
+    }
+
+    /**
+     * Play {@code item} once, right after the current item. It is not added to the playlist.
+     */
+    public void insertNext(Item item) {
+        mExecutor.execute(() -> mPending.addFirst(item));
+    }
+
+    /**
+     * Remove all items, the current one plays to its end.
+     */
+    public void clear() {
+        mExecutor.execute(() -> {
+            mItems.clear();
+            mPending.clear();
+        });
+    }
+
+    /**
+     * @param loop start over with the whole playlist after its last item
+     */
+    public void setLoop(boolean loop) {
+        mExecutor.execute(() -> mLoop = loop);
+    }
+
+    /**
+     * @param shuffle play the playlist in random order, reshuffled for each pass
+     */
+    public void setShuffle(boolean shuffle) {
+        mExecutor.execute(() -> {
+            mShuffle = shuffle;
+            if (shuffle) {
+                List<Item> pending = new ArrayList<>(mPending);
+                Collections.shuffle(pending, mRandom);
+                mPending.clear();
+                mPending.addAll(pending);
+            }
+        });
+    }
+
+    /**
+     * @param maxRetries how often a failed item is played again with {@link ErrorPolicy#RETRY}
+     */
+    public void setErrorPolicy(ErrorPolicy policy, int maxRetries) {
+        mExecutor.execute(() -> {
+            mErrorPolicy = policy;
+            mMaxRetries = maxRetries;
+        });
+    }
+
+    public void start() {
+        mExecutor.execute(() -> {
+            if (!mRunning) {
+                mRunning = true;
+                playNext(false);
+            }
+        });
+    }
+
+    /**
+     * Stop the current item and the queue, the playlist is kept.
+     */
+    public void stop() {
+        mExecutor.execute(() -> {
+            if (!mRunning) {
+                return;
+            }
+            mRunning = false;
+            Item current = mCurrent;
+            mCurrent = null;
+            if (current != null) {
+                // the current item goes first again on start()
+                mPending.addFirst(current);
+                stopItem(current);
+            }
+        });
+    }
+
+    /**
+     * End the current item and play the next one.
+     */
+    public void skip() {
+        mExecutor.execute(() -> {
+            if (mRunning) {
+                playNext(true);
+            }
+        });
+    }
+
+    public void shutdown() {
+        stop();
+        mExecutor.shutdown();
+    }
+
+    @Override
+    public void onStartOfMotionPlay(String motion) {
+        mExecutor.execute(() -> {
+            if (isCurrent(motion)) {
+                mCurrentStarted = true;
+            }
+        });
+    }
+
+    @Override
+    public void onPauseOfMotionPlay(String motion) {
+    }
+
+    @Override
+    public void onPlayBackOfMotionPlay(String motion) {
+    }
+
+    @Override
+    public void onStopOfMotionPlay(String motion) {
+        onEnd(motion);
+    }
+
+    @Override
+    public void onCompleteOfMotionPlay(String motion) {
+        onEnd(motion);
+    }
+
+    /**
+     * Forward of {@code RobotEventCallback.onPrepareMotion}, for the prefetcher and the metadata cache.
+     */
+    public void onPrepareMotion(boolean isError, String motion, float duration) {
+        MotionPrefetcher prefetcher = mPrefetcher;
+        if (prefetcher != null) {
+            prefetcher.onPrepareMotion(isError, motion, duration);
+        }
+        MotionMetadataCache cache = mMetadataCache;
+        if (cache != null) {
+            cache.onPrepareMotion(isError, motion, duration);
+        }
+    }
+
+    @Override
+    public void onErrorOfMotionPlay(int errorCode) {
+        mExecutor.execute(() -> {
+            if (mRunning && mCurrent != null) {
+                onItemError(errorCode);
+            }
+        });
+    }
+
+    private void onEnd(String motion) {
+        mExecutor.execute(() -> {
+            // ends of items already replaced by skip() or play of the next item are not ours
+            if (mRunning && mCurrentStarted && isCurrent(motion)) {
+                mRetries = 0;
+                mFailures = 0;
+                playNext(false);
+            }
+        });
+    }
+
+    private boolean isCurrent(String motion) {
+        return mCurrent != null && (mCurrentName == null || mCurrentName.equals(motion));
+    }
+
+    private void onItemError(int errorCode) {
+        Item item = mCurrent;
+        Log.w(TAG, item + " failed with " + errorCode + ", " + mErrorPolicy);
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onItemFailed(item, errorCode);
+        }
+        mFailures++;
+        boolean hopeless = mFailures > (mItems.size() + mPending.size() + 1) * (mMaxRetries + 1);
+        if (hopeless) {
+            Log.e(TAG, mFailures + " failures in a row, stopping");
+        }
+        if (!hopeless && mErrorPolicy == ErrorPolicy.RETRY && mRetries < mMaxRetries) {
+            mRetries++;
+            mPending.addFirst(item);
+            playNext(false);
+        } else if (hopeless || mErrorPolicy == ErrorPolicy.STOP) {
+            mRunning = false;
+            mCurrent = null;
+            mRetries = 0;
+            mFailures = 0;
+            if (listener != null) {
+                listener.onQueueFinished();
+            }
+        } else {
+            mRetries = 0;
+            playNext(false);
+        }
+    }
+
+    /**
+     * @param interrupt whether the current item still plays
+     */
+    private void playNext(boolean interrupt) {
+        Item previous = mCurrent;
+        if (mPending.isEmpty() && mLoop && !mItems.isEmpty()) {
+            List<Item> pass = new ArrayList<>(mItems);
+            if (mShuffle) {
+                Collections.shuffle(pass, mRandom);
+            }
+            mPending.addAll(pass);
+        }
+        Item item = mPending.poll();
+        if (item == null) {
+            mRunning = false;
+            mCurrent = null;
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onQueueFinished();
+            }
+            return;
+        }
+        // a new motion replaces one of the same kind, the player even fades into it, else the old one has to stop
+        if (interrupt && previous != null && (previous.mFile == null) != (item.mFile == null)) {
+            stopItem(previous);
+        }
+        mCurrent = item;
+        mCurrentStarted = false;
+        if (item.mFile != null) {
+            Timeline timeline;
+            try {
+                timeline = load(item);
+            } catch (IOException e) {
+                Log.e(TAG, "can't load " + item, e);
+                onItemError(ERROR_LOAD);
+                return;
+            }
+            mCurrentName = timeline.getName();
+            mPlayer.play(timeline);
+        } else {
+            mCurrentName = item.mName;
+            MotionLatencyTracker.getInstance().play(mRobotAPI, item.mName, false);
+        }
+        remember(item);
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onItemStarted(item);
+        }
+        prefetch(mPending.peek());
+        prepareUpcoming(item);
+    }
+
+    /**
+     * Hand the named motions that come after {@code current} to the prefetcher, wrapping into the next pass
+     * when the queue loops without shuffle.
+     */
+    private void prepareUpcoming(Item current) {
+        MotionPrefetcher prefetcher = mPrefetcher;
+        if (prefetcher == null) {
+            return;
+        }
+        if (current.mName != null) {
+            prefetcher.onPlayed(current.mName);
+        }
+        List<String> upcoming = new ArrayList<>();
+        for (Item item : mPending) {
+            if (item.mName != null) {
+                upcoming.add(item.mName);
+            }
+        }
+        if (mLoop && !mShuffle) {
+            for (Item item : mItems) {
+                if (item.mName != null) {
+                    upcoming.add(item.mName);
+                }
+            }
+        }
+        prefetcher.prefetch(upcoming);
+    }
+
+    private void stopItem(Item item) {
+        if (item.mFile != null) {
+            mPlayer.stop();
+        } else {
+            MotionLatencyTracker.getInstance().stop(mRobotAPI, true);
+        }
+    }
+
+    private static Timeline load(Item item) throws IOException {
+        Timeline timeline = item.mTimeline;
+        if (timeline == null) {
+            timeline = FstMotionParser.parse(item.mFile);
+            item.mTimeline = timeline;
+        }
+        return timeline;
+    }
+
+    /**
+     * Tell the metadata cache that {@code item} started, with what its parsed fst says about it.
+     */
+    private void remember(Item item) {
+        MotionMetadataCache cache = mMetadataCache;
+        if (cache == null) {
+            return;
+        }
+        String name = item.mFile != null ? MotionMetadataCache.keyOf(mCurrentName, item.mFile) : mCurrentName;
+        if (item.mTimeline instanceof Motion && cache.getMotors(name) == null) {
+            cache.put(name, (Motion) item.mTimeline);
+        }
+        cache.onPlayed(name);
+    }
+
+    /**
+     * Parse the fst of the next item now, so starting it doesn't wait for the file.
+     */
+    private void prefetch(Item next) {
+        if (next == null || next.mFile == null || next.mTimeline != null) {
+            return;
+        }
+        mExecutor.execute(() -> {
+            try {
+                load(next);
+            } catch (IOException e) {
+                // reported when the item is due
+                Log.w(TAG, "prefetch of " + next + " failed: " + e.getMessage());
+            }
+        });
+    }
+}
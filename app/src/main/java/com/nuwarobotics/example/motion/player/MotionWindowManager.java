@@ -0,0 +1,264 @@
+package com.nuwarobotics.example.motion.player;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.nuwarobotics.service.agent.NuwaRobotAPI;
+
+/**
+ * Keeps the transparent motion window of the robot service around, so visual motions don't wait for its surface.
+ *
+ * The window state follows {@code onWindowSurfaceReady} / {@code onWindowSurfaceDestroy}, forward them here together
+ * with the motion events. Every {@link NuwaRobotAPI#showWindow} is timed until its surface is ready; that setup time
+ * is learned and a show cue is issued that much ahead, so the window is on screen at the requested offset of the motion.
+ * A window the robot service creates with a motion is not timed, that includes loading the motion.
+ * After a motion ends the window lingers for {@link #setLinger} before it is hidden, a motion played meanwhile reuses it
+ * unless it shows the window at a later offset, then the window is hidden first.
+ * {@link #prewarm()} creates the window before the first motion.
+ *
+ * Cues are offsets from the start event of the next motion played through {@link #play}. The robot service stops
+ * the playing motion on {@code hideWindow}, so a hide cue also ends the motion.
+ * Robot events can be forwarded from the binder thread, the window state is only touched on the main looper.
+ */
+public final class MotionWindowManager {
+    private static final String TAG = "MotionWindowManager";
+
+    public static final int STATE_ABSENT = 0;
+    public static final int STATE_CREATING = 1;
+    public static final int STATE_READY = 2;
+
+    public static final long DEFAULT_LINGER_MILLIS = 3000;
+    // assumed surface setup time until one was measured
+    private static final long DEFAULT_SETUP_MILLIS = 300;
+    // weight of a new measurement in the learned setup time
+    private static final float SETUP_SMOOTHING = 0.3f;
+    // a show without surface event after this long is taken as failed
+    private static final long SETUP_TIMEOUT_MILLIS = 5000;
+    private static final long NO_CUE = -1;
+
+    private final NuwaRobotAPI mRobotAPI;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // tokens to cancel the callbacks of one kind
+    private final Object mCueToken = new Object();
+    private final Object mLingerToken = new Object();
+    private final Object mSetupToken = new Object();
+
+    // written on the main thread only
+    private volatile int mState = STATE_ABSENT;
+    private volatile long mSetupMillis = DEFAULT_SETUP_MILLIS;
+    private long mShowRequestedAt;
+    // the window being created was asked for by showWindow, its setup time is learned
+    private boolean mShowTimed;
+    private long mLingerMillis = DEFAULT_LINGER_MILLIS;
+    // cues of the motion played next, applied on its start event
+    private String mCuedMotion;
+    private long mShowAt = NO_CUE;
+    private long mHideAt = NO_CUE;
+    // motion whose start was reported last, its end lets the window linger
+    private String mPlaying;
+
+    public MotionWindowManager(NuwaRobotAPI robotAPI) {
+        mRobotAPI = robotAPI;
+    }
+
+    public int getState() {
+        return mState;
+    }
+
+    /**
+     * @return learned time from showWindow until the window surface is ready
+     */
+    public long getSetupMillis() {
+        return mSetupMillis;
+    }
+
+    /**
+     * @param millis how long the window stays after a motion ended, 0 to hide it right away
+     */
+    public void setLinger(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("bad linger " + millis);
+        }
+        mHandler.post(() -> mLingerMillis = millis);
+    }
+
+    /**
+     * Create the window now, unless it exists, so the next motion finds it ready.
+     */
+    public void prewarm() {
+        mHandler.post(() -> {
+            mHandler.removeCallbacksAndMessages(mLingerToken);
+            if (mState == STATE_ABSENT) {
+                show();
+            }
+        });
+    }
+
+    /**
+     * Play {@code motion} in the window, reusing it if it exists.
+     */
+    public void play(String motion) {
+        play(motion, 0, NO_CUE);
+    }
+
+    /**
+     * Play {@code motion} and show the window at an offset of it, e.g. after an intro played without window.
+     * @param showAtMillis offset from the start of the motion at which the window is on screen, 0 for at once
+     * @param hideAtMillis offset at which window and motion end, -1 to play the motion to its end
+     */
+    public void play(String motion, long showAtMillis, long hideAtMillis) {
+        if (showAtMillis < 0) {
+            throw new IllegalArgumentException("bad show offset " + showAtMillis);
+        }
+        mHandler.post(() -> {
+            mHandler.removeCallbacksAndMessages(mLingerToken);
+            mHandler.removeCallbacksAndMessages(mCueToken);
+            mCuedMotion = motion;
+            mShowAt = showAtMillis;
+            mHideAt = hideAtMillis;
+            boolean present = mState != STATE_ABSENT;
+            if (present && showAtMillis > 0) {
+                // a lingering window would be on screen before its cue
+                hide();
+                present = false;
+            }
+            if (!present && showAtMillis == 0) {
+                // the robot service creates and fades in the window together with the motion
+                markShowRequested(false);
+                mRobotAPI.motionPlay(motion, true);
+            } else {
+                mRobotAPI.motionPlay(motion, false);
+            }
+        });
+    }
+
+    public void onStartOfMotionPlay(String motion) {
+        long start = SystemClock.uptimeMillis();
+        mHandler.post(() -> {
+            mPlaying = motion;
+            if (!motion.equals(mCuedMotion)) {
+                return;
+            }
+            mCuedMotion = null;
+            if (mShowAt > 0 && mState == STATE_ABSENT) {
+                // issued ahead by the setup time, at once if the cue is closer than that
+                mHandler.postAtTime(() -> {
+                    if (mState == STATE_ABSENT) {
+                        show();
+                    }
+                }, mCueToken, start + Math.max(0, mShowAt - mSetupMillis));
+            }
+            if (mHideAt >= 0) {
+                mHandler.postAtTime(this::hide, mCueToken, start + mHideAt);
+            }
+        });
+    }
+
+    public void onCompleteOfMotionPlay(String motion) {
+        onEnd(motion);
+    }
+
+    public void onStopOfMotionPlay(String motion) {
+        onEnd(motion);
+    }
+
+    public void onErrorOfMotionPlay(int errorCode) {
+        mHandler.post(() -> {
+            mHandler.removeCallbacksAndMessages(mCueToken);
+            mCuedMotion = null;
+            hide();
+        });
+    }
+
+    public void onWindowSurfaceReady() {
+        long now = SystemClock.uptimeMillis();
+        mHandler.post(() -> {
+            // late surface of a window hidden meanwhile, the show cue of the next motion must still come
+            if (mState != STATE_CREATING) {
+                Log.d(TAG, "window surface ignored in state " + mState);
+                return;
+            }
+            mHandler.removeCallbacksAndMessages(mSetupToken);
+            if (mShowTimed) {
+                long sample = now - mShowRequestedAt;
+                mSetupMillis = Math.round(mSetupMillis + SETUP_SMOOTHING * (sample - mSetupMillis));
+                Log.d(TAG, "window ready after " + sample + " ms, setup ~" + mSetupMillis + " ms");
+            }
+            mState = STATE_READY;
+        });
+    }
+
+    public void onWindowSurfaceDestroy() {
+        mHandler.post(() -> mState = STATE_ABSENT);
+    }
+
+    /**
+     * Drop pending cues and hide the window, e.g. in onStop; from the main thread the hide is sent before this returns.
+     */
+    public void release() {
+        Runnable release = () -> {
+            mHandler.removeCallbacksAndMessages(null);
+            mCuedMotion = null;
+            if (mState != STATE_ABSENT) {
+                hide();
+            }
+        };
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            release.run();
+        } else {
+            mHandler.post(release);
+        }
+    }
+
+    private void onEnd(String motion) {
+        mHandler.post(() -> {
+            // the end of a motion replaced by a play must not hide the window of the next one
+            if (mCuedMotion != null || (mPlaying != null && !mPlaying.equals(motion))) {
+                return;
+            }
+            mPlaying = null;
+            mHandler.removeCallbacksAndMessages(mCueToken);
+            mHandler.removeCallbacksAndMessages(mLingerToken);
+            if (mState == STATE_ABSENT) {
+                return;
+            }
+            if (mLingerMillis == 0) {
+                hide();
+            } else {
+                mHandler.postAtTime(this::hide, mLingerToken, SystemClock.uptimeMillis() + mLingerMillis);
+            }
+        });
+    }
+
+    private void show() {
+        markShowRequested(true);
+        mRobotAPI.showWindow(true);
+    }
+
+    private void hide() {
+        mHandler.removeCallbacksAndMessages(mLingerToken);
+        mHandler.removeCallbacksAndMessages(mSetupToken);
+        // taken as gone right away, so the stop event the hide causes doesn't hide again
+        mState = STATE_ABSENT;
+        mRobotAPI.hideWindow(true);
+    }
+
+    /**
+     * @param timed the surface follows a plain showWindow, its setup time is a sample for the show cues
+     */
+    private void markShowRequested(boolean timed) {
+        mHandler.removeCallbacksAndMessages(mSetupToken);
+        mState = STATE_CREATING;
+        mShowTimed = timed;
+        mShowRequestedAt = SystemClock.uptimeMillis();
+        // a lost surface event must not keep the manager from showing the window again
+        mHandler.postAtTime(() -> {
+            if (mState == STATE_CREATING && SystemClock.uptimeMillis() - mShowRequestedAt >= SETUP_TIMEOUT_MILLIS) {
+                Log.w(TAG, "no window surface after " + SETUP_TIMEOUT_MILLIS + " ms");
+                mState = STATE_ABSENT;
+            }
+        }, mSetupToken, mShowRequestedAt + SETUP_TIMEOUT_MILLIS);
+    }
+}
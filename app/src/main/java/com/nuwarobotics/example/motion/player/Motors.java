@@ -0,0 +1,40 @@
+package com.nuwarobotics.example.motion.player;
+
+import com.nuwarobotics.service.agent.NuwaRobotAPI;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the motor names used in motion files to the motor ids of {@link NuwaRobotAPI#ctlMotor}.
+ */
+public final class Motors {
+    public static final int UNKNOWN = -1;
+
+    private static final Map<String, Integer> sIds = new HashMap<>();
+
+    static {
+        sIds.put("neck_y", NuwaRobotAPI.MOTOR_NECK_Y);
+        sIds.put("neck_z", NuwaRobotAPI.MOTOR_NECK_Z);
+        sIds.put("right_shoulder_z", NuwaRobotAPI.MOTOR_RIGHT_SHOULDER_Z);
+        sIds.put("right_shoulder_y", NuwaRobotAPI.MOTOR_RIGHT_SHOULDER_Y);
+        sIds.put("right_shoulder_x", NuwaRobotAPI.MOTOR_RIGHT_SHOULDER_X);
+        sIds.put("right_elbow_y", NuwaRobotAPI.MOTOR_RIGHT_ELBOW_Y);
+        sIds.put("left_shoulder_z", NuwaRobotAPI.MOTOR_LEFT_SHOULDER_Z);
+        sIds.put("left_shoulder_y", NuwaRobotAPI.MOTOR_LEFT_SHOULDER_Y);
+        sIds.put("left_shoulder_x", NuwaRobotAPI.MOTOR_LEFT_SHOULDER_X);
+        sIds.put("left_elbow_y", NuwaRobotAPI.MOTOR_LEFT_ELBOW_Y);
+    }
+
+    private Motors() {
+    }
+
+    /**
+     * @param motor motor name as used in motion files, e.g. "neck_y"
+     * @return the {@code NuwaRobotAPI.MOTOR_*} id, {@link #UNKNOWN} for motors this robot doesn't have
+     */
+    public static int idOf(String motor) {
+        Integer id = sIds.get(motor);
+        return id == null ? UNKNOWN : id;
+    }
+}
@@ -0,0 +1,98 @@
+package com.nuwarobotics.example.motion.stats;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size histogram of latencies, in microseconds.
+ *
+ * Buckets are log-linear: every power of two is split into {@code 2^SUB_BITS} equal buckets, so any latency from
+ * 1 us to hours is recorded in constant time and memory, and a percentile is off by at most 1/8 of its value.
+ * Not thread safe, {@link MotionLatencyTracker} guards its histograms.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    // 2^40 us is about 12 days, longer latencies land in the last bucket
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final long[] mCounts = new long[indexOf(MAX_VALUE) + 1];
+    private long mCount;
+    private long mSum;
+    private long mMin = Long.MAX_VALUE;
+    private long mMax;
+
+    public void record(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_VALUE));
+        mCounts[indexOf(value)]++;
+        mCount++;
+        mSum += value;
+        mMin = Math.min(mMin, value);
+        mMax = Math.max(mMax, value);
+    }
+
+    public void clear() {
+        Arrays.fill(mCounts, 0);
+        mCount = 0;
+        mSum = 0;
+        mMin = Long.MAX_VALUE;
+        mMax = 0;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getMinMicros() {
+        return mCount == 0 ? 0 : mMin;
+    }
+
+    public long getMaxMicros() {
+        return mMax;
+    }
+
+    public long getMeanMicros() {
+        return mCount == 0 ? 0 : mSum / mCount;
+    }
+
+    /**
+     * @param percentile 0 to 100, e.g. 95
+     * @return the latency {@code percentile} percent of the samples don't exceed, rounded up to the end of its
+     * bucket but never above the largest sample; 0 if there are none
+     */
+    public long getPercentileMicros(double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * mCount));
+        long seen = 0;
+        for (int index = 0; index < mCounts.length; index++) {
+            seen += mCounts[index];
+            if (seen >= rank) {
+                return Math.max(mMin, Math.min(upperBoundOf(index), mMax));
+            }
+        }
+        return mMax;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return SUB_COUNT + (exponent - SUB_BITS) * SUB_COUNT + sub;
+    }
+
+    /**
+     * @return largest value that falls into bucket {@code index}
+     */
+    private static long upperBoundOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int exponent = (index - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+        int sub = (index - SUB_COUNT) % SUB_COUNT;
+        return ((long) (SUB_COUNT + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
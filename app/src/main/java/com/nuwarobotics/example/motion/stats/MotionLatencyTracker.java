@@ -0,0 +1,264 @@
+package com.nuwarobotics.example.motion.stats;
+
+import android.util.Log;
+
+import com.nuwarobotics.service.agent.NuwaRobotAPI;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * App wide latencies of the robot service: from {@code motionPlay} until {@code onStartOfMotionPlay} of that motion,
+ * and from {@code motionStop} until {@code onStopOfMotionPlay}, collected per motion into {@link LatencyHistogram}s.
+ *
+ * Commands are issued through {@link #play} and {@link #stop}, which stamp them, and the app forwards the motion
+ * events of its {@code RobotEventCallback} to the {@code on...} methods here. Play commands are matched to starts by
+ * motion name, oldest first; stops carry no name, so a stop is matched to the next stop event, and only counted
+ * while a motion plays. Commands without an answer within {@link #TIMEOUT_MS} count as timeouts.
+ * {@link #snapshot()} gives p50/p95/p99 per motion, e.g. to compare robot SDK versions.
+ */
+public final class MotionLatencyTracker {
+    private static final String TAG = "MotionLatencyTracker";
+
+    public static final long TIMEOUT_MS = 10000;
+    private static final long TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS);
+
+    public enum Kind {
+        /** motionPlay until onStartOfMotionPlay */
+        START,
+        /** motionStop until onStopOfMotionPlay */
+        STOP
+    }
+
+    /**
+     * Latencies of one kind of command for one motion, copied out of the tracker.
+     */
+    public static final class Stats {
+        /** motion name, null for the totals over all motions */
+        public final String motion;
+        public final Kind kind;
+        public final long count;
+        public final long timeouts;
+        public final float p50Millis;
+        public final float p95Millis;
+        public final float p99Millis;
+        public final float maxMillis;
+
+        Stats(String motion, Kind kind, LatencyHistogram histogram, long timeouts) {
+            this.motion = motion;
+            this.kind = kind;
+            this.count = histogram.getCount();
+            this.timeouts = timeouts;
+            this.p50Millis = histogram.getPercentileMicros(50) / 1000f;
+            this.p95Millis = histogram.getPercentileMicros(95) / 1000f;
+            this.p99Millis = histogram.getPercentileMicros(99) / 1000f;
+            this.maxMillis = histogram.getMaxMicros() / 1000f;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s %s n=%d p50=%.1f p95=%.1f p99=%.1f max=%.1f ms timeouts=%d",
+                    motion == null ? "all" : motion, kind, count, p50Millis, p95Millis, p99Millis, maxMillis, timeouts);
+        }
+    }
+
+    private static final class Record {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        long timeouts;
+    }
+
+    private static final MotionLatencyTracker sInstance = new MotionLatencyTracker();
+
+    // guarded by this
+    private final Map<String, ArrayDeque<Long>> mPendingStarts = new HashMap<>();
+    private final ArrayDeque<Long> mPendingStops = new ArrayDeque<>();
+    private final Map<String, Record> mStarts = new HashMap<>();
+    private final Map<String, Record> mStops = new HashMap<>();
+    private final Record mAllStarts = new Record();
+    private final Record mAllStops = new Record();
+    // started and not yet stopped or completed; the robot plays one motion at a time, a start replaces it
+    private String mPlaying;
+
+    private MotionLatencyTracker() {
+    }
+
+    public static MotionLatencyTracker getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * {@link NuwaRobotAPI#motionPlay(String, boolean)} with its start latency measured.
+     */
+    public void play(NuwaRobotAPI robotAPI, String motion, boolean autoFadeIn) {
+        onPlayCommand(motion);
+        robotAPI.motionPlay(motion, autoFadeIn);
+    }
+
+    /**
+     * {@link NuwaRobotAPI#motionPlay(String, boolean, String)} with its start latency measured.
+     */
+    public void play(NuwaRobotAPI robotAPI, String motion, boolean autoFadeIn, String path) {
+        onPlayCommand(motion);
+        robotAPI.motionPlay(motion, autoFadeIn, path);
+    }
+
+    /**
+     * {@link NuwaRobotAPI#motionStop(boolean)} with its stop latency measured.
+     */
+    public void stop(NuwaRobotAPI robotAPI, boolean autoFadeOut) {
+        onStopCommand();
+        robotAPI.motionStop(autoFadeOut);
+    }
+
+    /**
+     * Stamp a {@code motionPlay} issued elsewhere, right before it.
+     */
+    public synchronized void onPlayCommand(String motion) {
+        long now = System.nanoTime();
+        expire(now);
+        mPendingStarts.computeIfAbsent(motion, key -> new ArrayDeque<>()).add(now);
+    }
+
+    /**
+     * Stamp a {@code motionStop} issued elsewhere, right before it.
+     */
+    public synchronized void onStopCommand() {
+        long now = System.nanoTime();
+        expire(now);
+        // without a playing motion there is no stop event to wait for
+        if (mPlaying != null && mPendingStops.isEmpty()) {
+            mPendingStops.add(now);
+        }
+    }
+
+    public synchronized void onStartOfMotionPlay(String motion) {
+        long now = System.nanoTime();
+        expire(now);
+        mPlaying = motion;
+        ArrayDeque<Long> pending = mPendingStarts.get(motion);
+        Long since = pending == null ? null : pending.poll();
+        if (since != null) {
+            record(mStarts, mAllStarts, motion, now - since);
+        }
+    }
+
+    public synchronized void onStopOfMotionPlay(String motion) {
+        long now = System.nanoTime();
+        expire(now);
+        clearPlaying(motion);
+        Long since = mPendingStops.poll();
+        if (since != null) {
+            record(mStops, mAllStops, motion, now - since);
+        }
+    }
+
+    public synchronized void onCompleteOfMotionPlay(String motion) {
+        clearPlaying(motion);
+    }
+
+    /**
+     * A play that fails is not answered by a start; the event doesn't say which, the oldest one is given up.
+     */
+    public synchronized void onErrorOfMotionPlay(int errorCode) {
+        ArrayDeque<Long> oldest = null;
+        for (ArrayDeque<Long> pending : mPendingStarts.values()) {
+            if (!pending.isEmpty() && (oldest == null || pending.peek() < oldest.peek())) {
+                oldest = pending;
+            }
+        }
+        if (oldest != null) {
+            oldest.poll();
+        }
+    }
+
+    /**
+     * @return latencies per motion and kind, ordered by motion, followed by the totals of each kind
+     */
+    public synchronized List<Stats> snapshot() {
+        expire(System.nanoTime());
+        List<Stats> result = new ArrayList<>();
+        for (Map.Entry<String, Record> entry : mStarts.entrySet()) {
+            result.add(new Stats(entry.getKey(), Kind.START, entry.getValue().histogram, entry.getValue().timeouts));
+        }
+        for (Map.Entry<String, Record> entry : mStops.entrySet()) {
+            result.add(new Stats(entry.getKey(), Kind.STOP, entry.getValue().histogram, entry.getValue().timeouts));
+        }
+        Collections.sort(result, Comparator.<Stats, String>comparing(stats -> stats.motion)
+                .thenComparing(stats -> stats.kind));
+        result.add(new Stats(null, Kind.START, mAllStarts.histogram, mAllStarts.timeouts));
+        result.add(new Stats(null, Kind.STOP, mAllStops.histogram, mAllStops.timeouts));
+        return result;
+    }
+
+    /**
+     * @return latencies of {@code kind} over all motions
+     */
+    public synchronized Stats getTotal(Kind kind) {
+        expire(System.nanoTime());
+        Record record = kind == Kind.START ? mAllStarts : mAllStops;
+        return new Stats(null, kind, record.histogram, record.timeouts);
+    }
+
+    /**
+     * Forget all measurements, e.g. before a benchmark run.
+     */
+    public synchronized void reset() {
+        mPendingStarts.clear();
+        mPendingStops.clear();
+        mStarts.clear();
+        mStops.clear();
+        mAllStarts.histogram.clear();
+        mAllStarts.timeouts = 0;
+        mAllStops.histogram.clear();
+        mAllStops.timeouts = 0;
+        mPlaying = null;
+    }
+
+    /**
+     * The end of a motion a later start replaced leaves that one playing.
+     */
+    private void clearPlaying(String motion) {
+        if (mPlaying != null && mPlaying.equals(motion)) {
+            mPlaying = null;
+        }
+    }
+
+    private void record(Map<String, Record> records, Record all, String motion, long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        records.computeIfAbsent(motion, key -> new Record()).histogram.record(micros);
+        all.histogram.record(micros);
+    }
+
+    /**
+     * Count and drop the commands that waited too long for their event.
+     */
+    private void expire(long now) {
+        Iterator<Map.Entry<String, ArrayDeque<Long>>> entries = mPendingStarts.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, ArrayDeque<Long>> entry = entries.next();
+            ArrayDeque<Long> pending = entry.getValue();
+            while (!pending.isEmpty() && now - pending.peek() > TIMEOUT_NANOS) {
+                pending.poll();
+                Log.w(TAG, "no start of " + entry.getKey() + " within " + TIMEOUT_MS + " ms");
+                mStarts.computeIfAbsent(entry.getKey(), key -> new Record()).timeouts++;
+                mAllStarts.timeouts++;
+            }
+            if (pending.isEmpty()) {
+                entries.remove();
+            }
+        }
+        while (!mPendingStops.isEmpty() && now - mPendingStops.peek() > TIMEOUT_NANOS) {
+            mPendingStops.poll();
+            Log.w(TAG, "no stop within " + TIMEOUT_MS + " ms");
+            mAllStops.timeouts++;
+        }
+    }
+}
@@ -158,6 +158,8 @@ public class MotorControlActivity extends AppCompatActivity {
         @Override
         public void onWikiServiceCrash() {
             Logger.d("onWikiServiceCrash");
+            //make sure the lines before the crash reach logcat and the flight recorder
+            Logger.flush();
 
         }
 
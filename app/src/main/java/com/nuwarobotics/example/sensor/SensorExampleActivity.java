@@ -12,6 +12,7 @@ import android.widget.Button;
 import android.widget.TextView;
 
 import com.nuwarobotics.example.R;
+import com.nuwarobotics.example.util.Logger;
 import com.nuwarobotics.service.IClientId;
 import com.nuwarobotics.service.agent.NuwaRobotAPI;
 import com.nuwarobotics.service.agent.RobotEventCallback;
@@ -20,6 +21,7 @@ import com.nuwarobotics.service.agent.VoiceEventListener;
 
 public class SensorExampleActivity extends AppCompatActivity {
     private final String TAG = this.getClass().getSimpleName();
+    private static final int SITE_RAW_TOUCH = Logger.newCallSite();
     NuwaRobotAPI mRobotAPI;
     IClientId mClientId;
     TextView mTextHead,mTextChest,mTextFaceLeft,mTextFaceRight,mTextHandLeft,mTextHandRight;
@@ -30,6 +32,8 @@ public class SensorExampleActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_sensor);
+        //raw touch reports tens of events per second while touched, keep logcat readable
+        Logger.setRateLimit(SITE_RAW_TOUCH, 5, 10);
 
         mTextHead = (TextView)findViewById(R.id.textView_head);
         mTextChest = (TextView)findViewById(R.id.textViewChest);
@@ -248,7 +252,8 @@ public class SensorExampleActivity extends AppCompatActivity {
 
         @Override
         public void onRawTouch(int i, int i1, int i2) {
-            Log.d(TAG,"type ="+i+" x="+i1+" y="+i2);
+            //raw touch fires continuously while touched, only build the line when DEBUG is enabled for TAG
+            Logger.d(SITE_RAW_TOUCH, TAG, "type ={} x={} y={}", i, i1, i2);
 
         }
 
@@ -0,0 +1,127 @@
+package com.nuwarobotics.example.util;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Record of the assets copied by {@link FileUtil#copyAssetsToDst}, kept in app private storage.
+ * For every copied file it remembers size and SHA-1 of the content plus size and modification time
+ * of the copy, so an unchanged copy is recognised without reading it.
+ *
+ * File format, one entry per line: {@code size \t modified \t sha1 \t relative path},
+ * preceded by a {@code app <lastUpdateTime>} line of the apk the assets came from.
+ */
+final class AssetManifest {
+    private static final String TAG = AssetManifest.class.getSimpleName();
+    private static final String HEADER = "# asset manifest v1";
+    private static final String APP_PREFIX = "app ";
+
+    static final class Entry {
+        final String name;
+        final long size;
+        final long modified;
+        final String sha1;
+
+        Entry(String name, long size, long modified, String sha1) {
+            this.name = name;
+            this.size = size;
+            this.modified = modified;
+            this.sha1 = sha1;
+        }
+
+        /**
+         * @return true if {@code file} still looks like the copy this entry was made for
+         */
+        boolean matches(File file) {
+            return file.isFile() && file.length() == size && file.lastModified() == modified;
+        }
+    }
+
+    private final long mAppUpdateTime;
+    private final Map<String, Entry> mEntries = new LinkedHashMap<>();
+
+    AssetManifest(long appUpdateTime) {
+        mAppUpdateTime = appUpdateTime;
+    }
+
+    long getAppUpdateTime() {
+        return mAppUpdateTime;
+    }
+
+    Entry get(String name) {
+        return mEntries.get(name);
+    }
+
+    void put(Entry entry) {
+        mEntries.put(entry.name, entry);
+    }
+
+    Collection<Entry> entries() {
+        return mEntries.values();
+    }
+
+    /**
+     * @return the manifest stored in {@code file}, an empty one if it is missing or unreadable
+     */
+    static AssetManifest load(File file) {
+        if (!file.isFile()) {
+            return new AssetManifest(-1);
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if (!HEADER.equals(reader.readLine())) {
+                return new AssetManifest(-1);
+            }
+            String app = reader.readLine();
+            if (app == null || !app.startsWith(APP_PREFIX)) {
+                return new AssetManifest(-1);
+            }
+            AssetManifest manifest = new AssetManifest(Long.parseLong(app.substring(APP_PREFIX.length())));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                if (fields.length != 4) {
+                    continue;
+                }
+                manifest.put(new Entry(fields[3], Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+            }
+            return manifest;
+        } catch (IOException | NumberFormatException e) {
+            Log.w(TAG, "ignore broken manifest " + file, e);
+            return new AssetManifest(-1);
+        }
+    }
+
+    /**
+     * Write the manifest to a temporary file first, so a crash never leaves a half written manifest behind.
+     */
+    void save(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can't create " + dir);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            writer.write(HEADER + "\n");
+            writer.write(APP_PREFIX + mAppUpdateTime + "\n");
+            for (Entry entry : mEntries.values()) {
+                writer.write(entry.size + "\t" + entry.modified + "\t" + entry.sha1 + "\t" + entry.name + "\n");
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("can't rename " + tmp + " to " + file);
+        }
+    }
+}
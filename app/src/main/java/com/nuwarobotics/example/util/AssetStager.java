@@ -0,0 +1,383 @@
+package com.nuwarobotics.example.util;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.os.Environment;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies app assets to shared storage, see {@link FileUtil#copyAssetsToDst}.
+ * Assets stored uncompressed in the apk are copied in the kernel with {@link FileChannel#transferTo},
+ * compressed ones fall back to a stream copy with a large buffer.
+ * Independent files are copied in parallel on a small pool of background threads.
+ */
+public final class AssetStager {
+    private static final String TAG = AssetStager.class.getSimpleName();
+    private static final int MAX_THREADS = 4;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static AssetStager sInstance;
+
+    private final Context mContext;
+    private final ThreadPoolExecutor mExecutor;
+    // last sync per target folder, a new sync of the same folder waits for it
+    private final Map<String, CompletableFuture<?>> mLastSyncs = new HashMap<>();
+
+    private AssetStager(Context context) {
+        mContext = context.getApplicationContext();
+        // flash storage gains little beyond a few parallel writers
+        int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadCount = new AtomicInteger();
+        mExecutor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, "AssetStager-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized AssetStager getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AssetStager(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Bring {@code dstPath} on external storage in sync with the assets below {@code srcPath}, blocking until done.
+     * Prefer {@link #syncAsync} on the main thread.
+     */
+    public List<AssetStagingTask.FileResult> sync(String srcPath, String dstPath) {
+        try {
+            return syncAsync(srcPath, dstPath, null).getResults().join();
+        } catch (CompletionException e) {
+            Log.e(TAG, "sync " + srcPath + " failed", e.getCause());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Start bringing {@code dstPath} on external storage in sync with the assets below {@code srcPath}.
+     * Only new or changed assets are copied, assets removed from the apk are deleted from the target.
+     * Syncs of the same target run one after the other.
+     * @param listener progress callbacks, may be null
+     */
+    public AssetStagingTask syncAsync(String srcPath, String dstPath, AssetStagingTask.Listener listener) {
+        AssetStagingTask task = new AssetStagingTask(srcPath,
+                new File(Environment.getExternalStorageDirectory(), dstPath), listener);
+        synchronized (mLastSyncs) {
+            CompletableFuture<?> previous = mLastSyncs.get(dstPath);
+            Runnable start = () -> {
+                try {
+                    startSync(task, dstPath);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "sync " + srcPath + " failed", e);
+                    task.onFailed(new IOException(e));
+                }
+            };
+            if (previous == null) {
+                mExecutor.execute(start);
+            } else {
+                previous.whenComplete((results, error) -> mExecutor.execute(start));
+            }
+            mLastSyncs.put(dstPath, task.getResults());
+        }
+        return task;
+    }
+
+    private void startSync(AssetStagingTask task, String dstPath) {
+        String srcPath = task.getSrcPath();
+        File dstRoot = task.getDstRoot();
+        File manifestFile = getManifestFile(dstPath);
+        AssetManifest manifest = AssetManifest.load(manifestFile);
+        long appUpdateTime = getAppUpdateTime();
+        // assets can only change with the apk, otherwise it's enough to check the copies
+        boolean sameApk = appUpdateTime != -1 && appUpdateTime == manifest.getAppUpdateTime();
+
+        List<String> names = new ArrayList<>();
+        try {
+            listAssets(mContext.getAssets(), srcPath, "", names);
+        } catch (IOException e) {
+            Log.e(TAG, "can't list assets " + srcPath, e);
+            task.onFailed(e);
+            return;
+        }
+        task.onListed(names);
+
+        AssetManifest.Entry[] entries = new AssetManifest.Entry[names.size()];
+        AssetStagingTask.FileResult[] results = new AssetStagingTask.FileResult[names.size()];
+        // one extra count is released once every file is handed out, so the sync can't finish early
+        AtomicInteger pending = new AtomicInteger(names.size() + 1);
+        Runnable finish = () -> {
+            if (pending.decrementAndGet() == 0) {
+                finishSync(task, manifest, manifestFile, appUpdateTime, sameApk, names, entries, results);
+            }
+        };
+
+        for (int i = 0; i < names.size(); i++) {
+            int index = i;
+            String name = names.get(i);
+            File outFile = name.isEmpty() ? dstRoot : new File(dstRoot, name);
+            AssetManifest.Entry entry = manifest.get(name);
+            if (sameApk && entry != null && entry.matches(outFile)) {
+                entries[index] = entry;
+                results[index] = new AssetStagingTask.FileResult(name, outFile, AssetStagingTask.Status.UP_TO_DATE, null);
+                task.onFileDone(results[index]);
+                finish.run();
+                continue;
+            }
+            mExecutor.execute(() -> {
+                try {
+                    entries[index] = stage(joinAssetPath(srcPath, name), outFile, name, entry);
+                    AssetStagingTask.Status status = entries[index] == entry
+                            ? AssetStagingTask.Status.UP_TO_DATE : AssetStagingTask.Status.COPIED;
+                    results[index] = new AssetStagingTask.FileResult(name, outFile, status, null);
+                } catch (IOException e) {
+                    Log.e(TAG, "copy asset " + name + " failed", e);
+                    results[index] = new AssetStagingTask.FileResult(name, outFile, AssetStagingTask.Status.FAILED, e);
+                } catch (RuntimeException e) {
+                    // keep counting, or the whole sync would never complete
+                    Log.e(TAG, "copy asset " + name + " failed", e);
+                    results[index] = new AssetStagingTask.FileResult(name, outFile, AssetStagingTask.Status.FAILED,
+                            new IOException(e));
+                }
+                task.onFileDone(results[index]);
+                finish.run();
+            });
+        }
+        finish.run();
+    }
+
+    private void finishSync(AssetStagingTask task, AssetManifest manifest, File manifestFile, long appUpdateTime,
+                            boolean sameApk, List<String> names, AssetManifest.Entry[] entries,
+                            AssetStagingTask.FileResult[] results) {
+        AssetManifest synced = new AssetManifest(appUpdateTime);
+        int copied = 0;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] != null) {
+                synced.put(entries[i]);
+            }
+            if (results[i].status == AssetStagingTask.Status.COPIED) {
+                copied++;
+            }
+        }
+
+        int deleted = 0;
+        Set<String> current = new HashSet<>(names);
+        for (AssetManifest.Entry entry : manifest.entries()) {
+            // only files we copied ourselves are removed, never foreign files in the target folder
+            if (!current.contains(entry.name) && new File(task.getDstRoot(), entry.name).delete()) {
+                deleted++;
+            }
+        }
+
+        if (copied > 0 || deleted > 0 || !sameApk) {
+            try {
+                synced.save(manifestFile);
+            } catch (IOException e) {
+                Log.e(TAG, "can't save manifest " + manifestFile, e);
+            }
+        }
+        Log.d(TAG, "sync " + task.getSrcPath() + " to " + task.getDstRoot() + ": " + names.size() + " assets, "
+                + copied + " copied, " + deleted + " deleted");
+        task.onComplete(Arrays.asList(results));
+    }
+
+    /**
+     * Runs on the pool: verify the existing copy against {@code entry} by content hash, copy if it differs.
+     * @return {@code entry} if the copy was up to date, otherwise the entry of the new copy
+     */
+    private AssetManifest.Entry stage(String assetPath, File outFile, String name, AssetManifest.Entry entry) throws IOException {
+        if (entry != null && entry.matches(outFile) && entry.sha1.equals(sha1Of(assetPath))) {
+            return entry;
+        }
+        Log.d(TAG, "copy asset " + assetPath + " to " + outFile);
+        return copyAsset(assetPath, outFile, name);
+    }
+
+    /**
+     * Copy to a temporary file first, so a crash or a full disk never leaves a half written copy that the robot
+     * service could play.
+     */
+    private AssetManifest.Entry copyAsset(String assetPath, File outFile, String name) throws IOException {
+        File parent = outFile.getParentFile();
+        if (parent != null && !parent.isDirectory()) {
+            parent.mkdirs();
+        }
+        File tmp = new File(outFile.getPath() + ".tmp");
+        MessageDigest digest = newSha1();
+        long size;
+        try {
+            size = copyTo(assetPath, tmp, digest);
+        } catch (IOException | RuntimeException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(outFile)) {
+            tmp.delete();
+            throw new IOException("can't rename " + tmp + " to " + outFile);
+        }
+        return new AssetManifest.Entry(name, size, outFile.lastModified(), toHex(digest.digest()));
+    }
+
+    /**
+     * @return number of bytes copied, {@code digest} holds their hash
+     */
+    private long copyTo(String assetPath, File outFile, MessageDigest digest) throws IOException {
+        long size;
+        AssetFileDescriptor afd = openFd(assetPath);
+        if (afd != null) {
+            try (AssetFileDescriptor fd = afd;
+                 FileInputStream in = fd.createInputStream();
+                 FileOutputStream out = new FileOutputStream(outFile)) {
+                FileChannel src = in.getChannel();
+                FileChannel dst = out.getChannel();
+                long start = fd.getStartOffset();
+                size = fd.getLength();
+                // hash from the mapped apk region, transferTo then finds the same pages in the page cache
+                digest.update(src.map(FileChannel.MapMode.READ_ONLY, start, size));
+                long done = 0;
+                while (done < size) {
+                    long count = src.transferTo(start + done, size - done, dst);
+                    if (count <= 0) {
+                        throw new IOException("short transfer of " + assetPath + " at " + done);
+                    }
+                    done += count;
+                }
+            }
+        } else {
+            size = 0;
+            try (InputStream is = mContext.getAssets().open(assetPath);
+                 OutputStream os = new FileOutputStream(outFile)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int byteCount;
+                while ((byteCount = is.read(buffer)) != -1) {
+                    digest.update(buffer, 0, byteCount);
+                    os.write(buffer, 0, byteCount);
+                    size += byteCount;
+                }
+            }
+        }
+        return size;
+    }
+
+    private String sha1Of(String assetPath) throws IOException {
+        MessageDigest digest = newSha1();
+        AssetFileDescriptor afd = openFd(assetPath);
+        if (afd != null) {
+            try (AssetFileDescriptor fd = afd; FileInputStream in = fd.createInputStream()) {
+                MappedByteBuffer mapped = in.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+                digest.update(mapped);
+            }
+        } else {
+            try (InputStream is = mContext.getAssets().open(assetPath)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int byteCount;
+                while ((byteCount = is.read(buffer)) != -1) {
+                    digest.update(buffer, 0, byteCount);
+                }
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return a descriptor of the asset inside the apk, null if it is compressed and has to be streamed
+     */
+    private AssetFileDescriptor openFd(String assetPath) {
+        try {
+            AssetFileDescriptor afd = mContext.getAssets().openFd(assetPath);
+            if (afd.getLength() < 0) {
+                afd.close();
+                return null;
+            }
+            return afd;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "openFd " + assetPath, e);
+            return null;
+        }
+    }
+
+    private File getManifestFile(String dstPath) {
+        return new File(mContext.getFilesDir(), "asset_manifest" + File.separator + dstPath.replace('/', '_') + ".txt");
+    }
+
+    private long getAppUpdateTime() {
+        try {
+            return mContext.getPackageManager().getPackageInfo(mContext.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return -1;
+        }
+    }
+
+    private static String joinAssetPath(String parent, String name) {
+        if (parent.isEmpty()) {
+            return name;
+        }
+        return name.isEmpty() ? parent : parent + "/" + name;
+    }
+
+    /**
+     * Collect every file below {@code srcPath}, relative to it. A file path itself results in one empty name.
+     */
+    private static void listAssets(AssetManager assets, String srcPath, String relative, List<String> out) throws IOException {
+        String[] fileNames = assets.list(joinAssetPath(srcPath, relative));
+        if (fileNames == null || fileNames.length == 0) {
+            out.add(relative);
+            return;
+        }
+        for (String fileName : fileNames) {
+            listAssets(assets, srcPath, joinAssetPath(relative, fileName), out);
+        }
+    }
+
+    private static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,186 @@
+package com.nuwarobotics.example.util;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A running sync started by {@link AssetStager#syncAsync}.
+ * Every file gets its own future, so a caller can wait for the one file it needs instead of the whole folder.
+ * Listener callbacks run on a staging thread.
+ */
+public final class AssetStagingTask {
+    private static final String TAG = AssetStagingTask.class.getSimpleName();
+
+    public enum Status {
+        /** the existing copy was kept */
+        UP_TO_DATE,
+        COPIED,
+        FAILED
+    }
+
+    public static final class FileResult {
+        /** path relative to the synced asset folder */
+        public final String name;
+        public final File file;
+        public final Status status;
+        /** cause of {@link Status#FAILED}, null otherwise */
+        public final IOException error;
+
+        FileResult(String name, File file, Status status, IOException error) {
+            this.name = name;
+            this.file = file;
+            this.status = status;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + status + (error == null ? "" : " " + error);
+        }
+    }
+
+    public interface Listener {
+        /**
+         * @param done number of files handled so far, including {@code result}
+         * @param total number of files in the synced asset folder
+         */
+        void onProgress(FileResult result, int done, int total);
+
+        /**
+         * @param results one result per file, in asset order
+         */
+        void onComplete(List<FileResult> results);
+    }
+
+    private final String mSrcPath;
+    private final File mDstRoot;
+    private final Listener mListener;
+
+    private final Map<String, CompletableFuture<File>> mFiles = new ConcurrentHashMap<>();
+    private final CompletableFuture<List<FileResult>> mResults = new CompletableFuture<>();
+    private final AtomicInteger mDone = new AtomicInteger();
+    private volatile Set<String> mNames;
+    // why the folder couldn't be synced, files asked for later fail with it
+    private volatile IOException mFailure;
+    private volatile int mTotal = -1;
+
+    AssetStagingTask(String srcPath, File dstRoot, Listener listener) {
+        mSrcPath = srcPath;
+        mDstRoot = dstRoot;
+        mListener = listener;
+    }
+
+    public String getSrcPath() {
+        return mSrcPath;
+    }
+
+    public File getDstRoot() {
+        return mDstRoot;
+    }
+
+    /**
+     * @param name path relative to the synced asset folder, e.g. "example_fst_approve.fst"
+     * @return future completed with the staged file, or exceptionally if it failed or is not part of the assets
+     */
+    public CompletableFuture<File> getFile(String name) {
+        CompletableFuture<File> future = mFiles.computeIfAbsent(name, key -> new CompletableFuture<>());
+        IOException failure = mFailure;
+        if (failure != null) {
+            future.completeExceptionally(failure);
+            return future;
+        }
+        Set<String> names = mNames;
+        if (names != null && !names.contains(name)) {
+            future.completeExceptionally(new FileNotFoundException(mSrcPath + "/" + name + " is not an asset"));
+        }
+        return future;
+    }
+
+    /**
+     * @return future completed with all per file results once the whole folder is in sync
+     */
+    public CompletableFuture<List<FileResult>> getResults() {
+        return mResults;
+    }
+
+    /**
+     * @return number of files in the folder, -1 while the assets are still being listed
+     */
+    public int getTotal() {
+        return mTotal;
+    }
+
+    public int getDone() {
+        return mDone.get();
+    }
+
+    public boolean isDone() {
+        return mResults.isDone();
+    }
+
+    void onListed(List<String> names) {
+        mNames = Collections.unmodifiableSet(new HashSet<>(names));
+        mTotal = names.size();
+        // fail waiters that asked for a file the apk doesn't have
+        for (String name : mFiles.keySet()) {
+            getFile(name);
+        }
+    }
+
+    void onFileDone(FileResult result) {
+        CompletableFuture<File> future = mFiles.computeIfAbsent(result.name, key -> new CompletableFuture<>());
+        if (result.error == null) {
+            future.complete(result.file);
+        } else {
+            future.completeExceptionally(result.error);
+        }
+        int done = mDone.incrementAndGet();
+        if (mListener != null) {
+            try {
+                mListener.onProgress(result, done, mTotal);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "listener failed", e);
+            }
+        }
+    }
+
+    void onComplete(List<FileResult> results) {
+        List<FileResult> unmodifiable = Collections.unmodifiableList(new ArrayList<>(results));
+        mResults.complete(unmodifiable);
+        if (mListener != null) {
+            try {
+                mListener.onComplete(unmodifiable);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "listener failed", e);
+            }
+        }
+    }
+
+    void onFailed(IOException error) {
+        mFailure = error;
+        mTotal = 0;
+        for (CompletableFuture<File> future : mFiles.values()) {
+            future.completeExceptionally(error);
+        }
+        mResults.completeExceptionally(error);
+        if (mListener != null) {
+            try {
+                mListener.onComplete(Collections.emptyList());
+            } catch (RuntimeException e) {
+                Log.e(TAG, "listener failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.nuwarobotics.example.util;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background thread which drains {@link LogRingBuffer} and formats / emits the records,
+ * so the calling thread (usually main thread in robot callbacks) only pays for a slot copy.
+ */
+final class AsyncLogWriter implements Runnable, Thread.UncaughtExceptionHandler {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final LogRingBuffer mBuffer;
+    private final Object mDrainLock = new Object();
+    private final LogRingBuffer.Consumer mEmitter = record -> {
+        try {
+            Logger.emit(record);
+        } catch (RuntimeException e) {
+            // one bad line must not stop the writer thread
+            Log.e("Logger", "failed to emit log line " + record.msg, e);
+        }
+    };
+
+    private final Thread mThread;
+    private volatile boolean mRunning = true;
+    private volatile boolean mParked;
+    private long mReportedDrops;
+
+    private Thread.UncaughtExceptionHandler mPreviousHandler;
+
+    AsyncLogWriter(int capacity) {
+        mBuffer = new LogRingBuffer(capacity);
+        mThread = new Thread(this, "Logger-writer");
+        mThread.setDaemon(true);
+    }
+
+    void start() {
+        mPreviousHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(this);
+        mThread.start();
+    }
+
+    /**
+     * Stop the writer thread after it emitted everything already queued.
+     */
+    void stop() {
+        mRunning = false;
+        LockSupport.unpark(mThread);
+        try {
+            mThread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (Thread.getDefaultUncaughtExceptionHandler() == this) {
+            Thread.setDefaultUncaughtExceptionHandler(mPreviousHandler);
+        }
+        flush();
+    }
+
+    /**
+     * @return a record to fill and {@link #publish(LogRingBuffer.Record)}, or null if the line was dropped
+     */
+    LogRingBuffer.Record claim() {
+        return mBuffer.claim();
+    }
+
+    void publish(LogRingBuffer.Record record) {
+        mBuffer.publish(record);
+        if (mParked) {
+            LockSupport.unpark(mThread);
+        }
+    }
+
+    /**
+     * Emit every queued record on the calling thread.
+     */
+    void flush() {
+        synchronized (mDrainLock) {
+            while (mBuffer.poll(mEmitter)) {
+                // drain
+            }
+        }
+    }
+
+    long getDroppedCount() {
+        return mBuffer.getDroppedCount();
+    }
+
+    @Override
+    public void run() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        while (mRunning) {
+            flush();
+            reportDrops();
+            mParked = true;
+            if (mRunning && mBuffer.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            mParked = false;
+        }
+        flush();
+    }
+
+    private void reportDrops() {
+        long dropped = mBuffer.getDroppedCount();
+        if (dropped != mReportedDrops) {
+            Log.w("Logger", "log buffer full, dropped " + (dropped - mReportedDrops)
+                    + " lines (" + dropped + " total)");
+            mReportedDrops = dropped;
+        }
+    }
+
+    @Override
+    public void uncaughtException(Thread t, Throwable e) {
+        // Make sure the lines leading to the crash reach logcat before the process dies
+        flush();
+        if (mPreviousHandler != null) {
+            mPreviousHandler.uncaughtException(t, e);
+        }
+    }
+}
@@ -5,16 +5,21 @@ import android.os.Environment;
 import android.util.Log;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 
 
 public class FileUtil {
     public static final String TAG = FileUtil.class.getSimpleName();
 
+    /**
+     * Path of the assets folder of {@link #createExternalAssetFolder} without touching the storage,
+     * the folders are created by {@link #copyAssetsToDstAsync} on demand.
+     * @param shared_root_path root folder below /storage/emulated/0/
+     * @return [shared_root_path]/assets/motion_bin
+     */
+    public static String getExternalAssetFolder(String shared_root_path) {
+        return shared_root_path + "/assets/motion_bin";
+    }
+
     /**
      * Create a assets folder in android shared external root /storage/emulated/0/
      * @param shared_root_path create assets folder /storage/emulated/0/[shared_root_path]/assets/motion_bin
@@ -37,44 +42,26 @@ public class FileUtil {
         return shared_root_path+"/assets/motion_bin" ;
     }
     /**
-     * Clone files to nuwa assets folder
+     * Clone files to nuwa assets folder.
+     * The sync is incremental: a manifest in app private storage remembers what was copied,
+     * so only new or changed assets are copied and assets removed from the apk are deleted from the target.
+     * As long as the apk is not updated, a sync costs one stat per file.
+     * Files are copied in parallel, see {@link AssetStager}.
      * @param context
      * @param srcPath the source app/assets files path
      * @param dstPath the target nuwa external assets path
      */
     public static void copyAssetsToDst(Context context, String srcPath, String dstPath) {
-        try {
-            String fileNames[] = context.getAssets().list(srcPath);
-            if (fileNames.length > 0) {
-                File file = new File(Environment.getExternalStorageDirectory(), dstPath);///assets/motion_bin/
-                if (!file.exists()) file.mkdirs();
-                for (String fileName : fileNames) {
-                    if (!srcPath.equals("")) { // assets 文件夹下的目录
-                        Log.d("FileUtil", "copy file " + srcPath + " to " + dstPath);
-                        copyAssetsToDst(context, srcPath + File.separator + fileName, dstPath + File.separator + fileName);
-                    } else { // assets 文件夹
-                        copyAssetsToDst(context, fileName, dstPath + File.separator + fileName);
-                    }
-                }
-            } else {
-                File outFile = new File(Environment.getExternalStorageDirectory() , dstPath);
-                Log.d("FileUtil", "copy asset " + srcPath + " to " + dstPath);
-                InputStream is = context.getAssets().open(srcPath);
-                FileOutputStream fos = new FileOutputStream(outFile);
-                byte[] buffer = new byte[1024];
-                int byteCount;
-                while ((byteCount = is.read(buffer)) != -1) {
-                    fos.write(buffer, 0, byteCount);
-                }
-                fos.flush();
-                is.close();
-                fos.close();
-            }
-            //isSuccess = true;
-        } catch (Exception e) {
-            e.printStackTrace();
-            //errorStr = e.getMessage();
-            //isSuccess = false;
-        }
+        AssetStager.getInstance(context).sync(srcPath, dstPath);
+    }
+
+    /**
+     * Same as {@link #copyAssetsToDst}, but returns at once and copies on background threads.
+     * @param listener progress callbacks, called on a background thread, may be null
+     * @return task to wait for single files or the whole folder
+     */
+    public static AssetStagingTask copyAssetsToDstAsync(Context context, String srcPath, String dstPath,
+                                                        AssetStagingTask.Listener listener) {
+        return AssetStager.getInstance(context).syncAsync(srcPath, dstPath, listener);
     }
 }
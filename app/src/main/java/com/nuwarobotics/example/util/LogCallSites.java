@@ -0,0 +1,79 @@
+package com.nuwarobotics.example.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of log call sites. A call site id is handed out once (usually into a static final field)
+ * and its caller location is resolved with a single stack walk the first time it logs;
+ * later lines from the same site reuse the cached location and formatted prefix.
+ */
+final class LogCallSites {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final AtomicInteger mNextId = new AtomicInteger();
+    private volatile StackTraceElement[] mElements = new StackTraceElement[INITIAL_CAPACITY];
+    private volatile String[] mPrefixes = new String[INITIAL_CAPACITY];
+
+    int register() {
+        int id = mNextId.getAndIncrement();
+        if (id >= mElements.length) {
+            grow(id);
+        }
+        return id;
+    }
+
+    private synchronized void grow(int id) {
+        int size = mElements.length;
+        while (size <= id) {
+            size <<= 1;
+        }
+        if (size != mElements.length) {
+            mElements = Arrays.copyOf(mElements, size);
+            mPrefixes = Arrays.copyOf(mPrefixes, size);
+        }
+    }
+
+    /**
+     * @return the cached caller of {@code id}, or null if it never logged or the id is unknown
+     */
+    StackTraceElement get(int id) {
+        StackTraceElement[] elements = mElements;
+        return id >= 0 && id < elements.length ? elements[id] : null;
+    }
+
+    /**
+     * Remember where {@code id} logs from. Racing threads resolve the same frame, so last write wins.
+     */
+    synchronized void put(int id, StackTraceElement element) {
+        if (id < 0 || id >= mNextId.get()) {
+            return;
+        }
+        if (id >= mElements.length) {
+            grow(id);
+        }
+        mPrefixes[id] = formatPrefix(element);
+        mElements[id] = element;
+    }
+
+    /**
+     * @return the "method(File:line) " prefix for {@code element}, cached when it belongs to a call site
+     */
+    String prefix(int id, StackTraceElement element) {
+        if (id >= 0) {
+            String[] prefixes = mPrefixes;
+            if (id < prefixes.length && prefixes[id] != null) {
+                return prefixes[id];
+            }
+        }
+        return formatPrefix(element);
+    }
+
+    static String formatPrefix(StackTraceElement element) {
+        if (element == null) {
+            return "";
+        }
+        return element.getMethodName()
+                + "(" + element.getFileName() + ":" + element.getLineNumber() + ") ";
+    }
+}
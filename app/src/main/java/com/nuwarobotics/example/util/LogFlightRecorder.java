@@ -0,0 +1,199 @@
+package com.nuwarobotics.example.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary log sink appending to a ring of memory-mapped segment files, used for post-mortem analysis
+ * when logcat already rotated away. Pages of a mapped file survive a crash of our process,
+ * so nothing has to be flushed when the robot service or the app dies.
+ * Use {@link LogFlightRecorderDecoder} to turn the segments back into text.
+ *
+ * Segment layout: {@link #SEGMENT_HEADER_SIZE} bytes header
+ * (magic, version, sequence number, creation time) followed by records of
+ * {@code int length, byte type, ...}; a length of 0 marks the end of the segment.
+ * <ul>
+ * <li>{@link #TYPE_TAG}: {@code short tagId, utf8 name} - tag ids are only valid inside their segment</li>
+ * <li>{@link #TYPE_LOG}: {@code byte priority, short tagId, long timeMillis, utf8 message}</li>
+ * </ul>
+ */
+public final class LogFlightRecorder {
+    static final int MAGIC = 0x4E574652; // "NWFR"
+    static final short VERSION = 1;
+    static final int SEGMENT_HEADER_SIZE = 32;
+    static final String SEGMENT_PREFIX = "flight_";
+    static final String SEGMENT_SUFFIX = ".bin";
+
+    static final byte TYPE_TAG = 1;
+    static final byte TYPE_LOG = 2;
+    static final int RECORD_HEADER_SIZE = 5;
+    static final int LOG_HEADER_SIZE = RECORD_HEADER_SIZE + 1 + 2 + 8;
+    static final int MAX_PAYLOAD = 4000;
+
+    private final File mDir;
+    private final int mSegmentCount;
+    private final int mSegmentSize;
+
+    private final CharsetEncoder mEncoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final Map<String, Short> mTagIds = new HashMap<>();
+
+    private MappedByteBuffer mSegment;
+    private int mSegmentIndex;
+    private long mSequence;
+    private boolean mClosed;
+
+    /**
+     * @param dir directory holding the segment files, created if missing
+     * @param segmentCount number of segment files kept, the oldest one is overwritten
+     * @param segmentSize size of one segment in bytes
+     */
+    public LogFlightRecorder(File dir, int segmentCount, int segmentSize) throws IOException {
+        if (segmentSize < SEGMENT_HEADER_SIZE + LOG_HEADER_SIZE + MAX_PAYLOAD + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("segment size too small: " + segmentSize);
+        }
+        mDir = dir;
+        mSegmentCount = Math.max(2, segmentCount);
+        mSegmentSize = segmentSize;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can't create " + dir);
+        }
+
+        // continue after the newest segment of the previous run
+        int newestIndex = -1;
+        long newestSequence = -1;
+        for (int i = 0; i < mSegmentCount; i++) {
+            long sequence = readSequence(segmentFile(dir, i));
+            if (sequence > newestSequence) {
+                newestSequence = sequence;
+                newestIndex = i;
+            }
+        }
+        mSegmentIndex = newestIndex;
+        mSequence = newestSequence;
+        rotate();
+    }
+
+    static File segmentFile(File dir, int index) {
+        return new File(dir, SEGMENT_PREFIX + index + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * @return sequence number stored in the header of {@code file}, -1 if it is missing or not a segment
+     */
+    static long readSequence(File file) {
+        if (!file.isFile() || file.length() < SEGMENT_HEADER_SIZE) {
+            return -1;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.readInt() != MAGIC || raf.readShort() != VERSION) {
+                return -1;
+            }
+            raf.readShort();
+            return raf.readLong();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    public File getDirectory() {
+        return mDir;
+    }
+
+    public synchronized void append(int priority, String tag, long timeMillis, String msg) {
+        if (mClosed) {
+            return;
+        }
+        try {
+            if (mSegment.remaining() < LOG_HEADER_SIZE + MAX_PAYLOAD + RECORD_HEADER_SIZE
+                    || mTagIds.size() == Short.MAX_VALUE) {
+                rotate();
+            }
+            short tagId = internTag(tag);
+
+            int start = mSegment.position();
+            mSegment.position(start + RECORD_HEADER_SIZE);
+            mSegment.put((byte) priority);
+            mSegment.putShort(tagId);
+            mSegment.putLong(timeMillis);
+            encode(msg);
+            endRecord(start, TYPE_LOG);
+        } catch (IOException e) {
+            // the sink must never break logging, give up recording
+            mClosed = true;
+        }
+    }
+
+    public synchronized void close() {
+        mClosed = true;
+        if (mSegment != null) {
+            mSegment.force();
+            mSegment = null;
+        }
+    }
+
+    private short internTag(String tag) throws IOException {
+        Short id = mTagIds.get(tag);
+        if (id != null) {
+            return id;
+        }
+        short newId = (short) mTagIds.size();
+        int start = mSegment.position();
+        mSegment.position(start + RECORD_HEADER_SIZE);
+        mSegment.putShort(newId);
+        encode(tag);
+        endRecord(start, TYPE_TAG);
+        mTagIds.put(tag, newId);
+        return newId;
+    }
+
+    private void encode(String text) {
+        ByteBuffer payload = mSegment.slice();
+        payload.limit(Math.min(MAX_PAYLOAD, payload.remaining() - RECORD_HEADER_SIZE));
+        mEncoder.reset();
+        // anything beyond MAX_PAYLOAD is cut off, just like logcat does for long lines
+        mEncoder.encode(CharBuffer.wrap(text), payload, true);
+        mEncoder.flush(payload);
+        mSegment.position(mSegment.position() + payload.position());
+    }
+
+    private void endRecord(int start, byte type) {
+        int end = mSegment.position();
+        // terminate first, so a reader never runs into a half written record
+        mSegment.putInt(end, 0);
+        mSegment.put(start + 4, type);
+        mSegment.putInt(start, end - start);
+    }
+
+    private void rotate() throws IOException {
+        mSegmentIndex = (mSegmentIndex + 1) % mSegmentCount;
+        mSequence++;
+        mTagIds.clear();
+
+        File file = segmentFile(mDir, mSegmentIndex);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(mSegmentSize);
+            FileChannel channel = raf.getChannel();
+            // the mapping stays valid after the channel is closed
+            mSegment = channel.map(FileChannel.MapMode.READ_WRITE, 0, mSegmentSize);
+        }
+        mSegment.putInt(MAGIC);
+        mSegment.putShort(VERSION);
+        mSegment.putShort((short) 0);
+        mSegment.putLong(mSequence);
+        mSegment.putLong(System.currentTimeMillis());
+        mSegment.position(SEGMENT_HEADER_SIZE);
+        mSegment.putInt(SEGMENT_HEADER_SIZE, 0);
+    }
+}
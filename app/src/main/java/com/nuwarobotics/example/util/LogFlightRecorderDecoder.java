@@ -0,0 +1,104 @@
+package com.nuwarobotics.example.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Turns the segments written by {@link LogFlightRecorder} back into logcat like text, oldest line first.
+ * Has no Android dependency so it can run on a workstation after pulling the files from the robot:
+ * <pre>
+ * adb pull /data/data/com.nuwarobotics.example/files/flight_recorder
+ * java -cp classes com.nuwarobotics.example.util.LogFlightRecorderDecoder flight_recorder
+ * </pre>
+ */
+public final class LogFlightRecorderDecoder {
+    private static final String LEVELS = "??VDIWEA";
+
+    private LogFlightRecorderDecoder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: LogFlightRecorderDecoder <flight recorder directory>");
+            System.exit(1);
+        }
+        PrintWriter out = new PrintWriter(System.out);
+        decode(new File(args[0]), out);
+        out.flush();
+    }
+
+    /**
+     * Write every record found in {@code dir} to {@code out}, one line per record.
+     */
+    public static void decode(File dir, Writer out) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("can't list " + dir);
+        }
+        Map<Long, File> bySequence = new HashMap<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.startsWith(LogFlightRecorder.SEGMENT_PREFIX) || !name.endsWith(LogFlightRecorder.SEGMENT_SUFFIX)) {
+                continue;
+            }
+            long sequence = LogFlightRecorder.readSequence(file);
+            if (sequence >= 0) {
+                bySequence.put(sequence, file);
+            }
+        }
+        List<Long> order = new ArrayList<>(bySequence.keySet());
+        Collections.sort(order);
+
+        SimpleDateFormat format = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        for (Long sequence : order) {
+            decodeSegment(bySequence.get(sequence), format, out);
+        }
+    }
+
+    private static void decodeSegment(File file, SimpleDateFormat format, Writer out) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        Map<Short, String> tags = new HashMap<>();
+        Date date = new Date();
+        int position = LogFlightRecorder.SEGMENT_HEADER_SIZE;
+        while (position + LogFlightRecorder.RECORD_HEADER_SIZE <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length < LogFlightRecorder.RECORD_HEADER_SIZE || position + length > buffer.limit()) {
+                break; // end of segment, or torn record from a crash
+            }
+            byte type = buffer.get(position + 4);
+            ByteBuffer record = buffer.duplicate();
+            record.limit(position + length);
+            record.position(position + LogFlightRecorder.RECORD_HEADER_SIZE);
+            if (type == LogFlightRecorder.TYPE_TAG) {
+                short id = record.getShort();
+                tags.put(id, StandardCharsets.UTF_8.decode(record).toString());
+            } else if (type == LogFlightRecorder.TYPE_LOG) {
+                int priority = record.get();
+                String tag = tags.get(record.getShort());
+                date.setTime(record.getLong());
+                String msg = StandardCharsets.UTF_8.decode(record).toString();
+                char level = priority >= 0 && priority < LEVELS.length() ? LEVELS.charAt(priority) : '?';
+                out.write(format.format(date) + " " + level + "/" + tag + ": " + msg + "\n");
+            }
+            position += length;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.nuwarobotics.example.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiting and 1-in-N sampling per tag or per call site.
+ * A call site rule wins over the rule of its tag. Lines without any rule are never limited.
+ */
+final class LogRateLimiter {
+    static final int SUPPRESSED = -1;
+
+    static final class Rule {
+        private final double mTokensPerNano;
+        private final double mBurst;
+        private final int mSampleEvery;
+
+        private double mTokens;
+        private long mLastRefillNanos;
+        private long mSeen;
+        private int mPending;
+        private long mSuppressedTotal;
+
+        /**
+         * @param linesPerSecond sustained rate, 0 for no rate limit
+         * @param burst lines allowed back to back before the rate applies
+         * @param sampleEvery keep one of every N lines, 1 to keep all
+         */
+        Rule(double linesPerSecond, int burst, int sampleEvery) {
+            mTokensPerNano = linesPerSecond / TimeUnit.SECONDS.toNanos(1);
+            mBurst = Math.max(1, burst);
+            mSampleEvery = Math.max(1, sampleEvery);
+            mTokens = mBurst;
+            mLastRefillNanos = System.nanoTime();
+        }
+
+        /**
+         * @return {@link #SUPPRESSED}, or the number of lines suppressed since the last accepted one
+         */
+        synchronized int acquire(long nowNanos) {
+            if (mSampleEvery > 1 && mSeen++ % mSampleEvery != 0) {
+                return suppress();
+            }
+            if (mTokensPerNano > 0) {
+                mTokens = Math.min(mBurst, mTokens + (nowNanos - mLastRefillNanos) * mTokensPerNano);
+                mLastRefillNanos = nowNanos;
+                if (mTokens < 1) {
+                    return suppress();
+                }
+                mTokens -= 1;
+            }
+            int pending = mPending;
+            mPending = 0;
+            return pending;
+        }
+
+        private int suppress() {
+            mPending++;
+            mSuppressedTotal++;
+            return SUPPRESSED;
+        }
+
+        synchronized long getSuppressedTotal() {
+            return mSuppressedTotal;
+        }
+
+        Rule withSampling(int sampleEvery) {
+            return new Rule(mTokensPerNano * TimeUnit.SECONDS.toNanos(1), (int) mBurst, sampleEvery);
+        }
+
+        Rule withRate(double linesPerSecond, int burst) {
+            return new Rule(linesPerSecond, burst, mSampleEvery);
+        }
+    }
+
+    private final Map<String, Rule> mTagRules = new ConcurrentHashMap<>();
+    private volatile Rule[] mSiteRules = new Rule[0];
+    private volatile boolean mEmpty = true;
+
+    /**
+     * @return {@link #SUPPRESSED} if the line must be dropped,
+     * otherwise the number of lines suppressed for the same rule since the previous accepted line
+     */
+    int acquire(int callSite, String tag) {
+        if (mEmpty) {
+            return 0;
+        }
+        Rule rule = null;
+        Rule[] siteRules = mSiteRules;
+        if (callSite >= 0 && callSite < siteRules.length) {
+            rule = siteRules[callSite];
+        }
+        if (rule == null) {
+            rule = mTagRules.get(tag);
+        }
+        return rule == null ? 0 : rule.acquire(System.nanoTime());
+    }
+
+    synchronized void setRate(String tag, double linesPerSecond, int burst) {
+        Rule old = mTagRules.get(tag);
+        mTagRules.put(tag, old == null ? new Rule(linesPerSecond, burst, 1) : old.withRate(linesPerSecond, burst));
+        mEmpty = false;
+    }
+
+    synchronized void setSampling(String tag, int sampleEvery) {
+        Rule old = mTagRules.get(tag);
+        mTagRules.put(tag, old == null ? new Rule(0, 1, sampleEvery) : old.withSampling(sampleEvery));
+        mEmpty = false;
+    }
+
+    synchronized void setRate(int callSite, double linesPerSecond, int burst) {
+        Rule old = getSiteRule(callSite);
+        putSiteRule(callSite, old == null ? new Rule(linesPerSecond, burst, 1) : old.withRate(linesPerSecond, burst));
+    }
+
+    synchronized void setSampling(int callSite, int sampleEvery) {
+        Rule old = getSiteRule(callSite);
+        putSiteRule(callSite, old == null ? new Rule(0, 1, sampleEvery) : old.withSampling(sampleEvery));
+    }
+
+    synchronized void clear() {
+        mEmpty = true;
+        mTagRules.clear();
+        mSiteRules = new Rule[0];
+    }
+
+    long getSuppressedCount(String tag) {
+        Rule rule = mTagRules.get(tag);
+        return rule == null ? 0 : rule.getSuppressedTotal();
+    }
+
+    long getSuppressedCount(int callSite) {
+        Rule rule = getSiteRule(callSite);
+        return rule == null ? 0 : rule.getSuppressedTotal();
+    }
+
+    private Rule getSiteRule(int callSite) {
+        Rule[] siteRules = mSiteRules;
+        return callSite >= 0 && callSite < siteRules.length ? siteRules[callSite] : null;
+    }
+
+    private void putSiteRule(int callSite, Rule rule) {
+        if (callSite < 0) {
+            return;
+        }
+        Rule[] siteRules = mSiteRules;
+        if (callSite >= siteRules.length) {
+            siteRules = Arrays.copyOf(siteRules, callSite + 1);
+        } else {
+            siteRules = siteRules.clone();
+        }
+        siteRules[callSite] = rule;
+        mSiteRules = siteRules;
+        mEmpty = false;
+    }
+}
@@ -0,0 +1,168 @@
+package com.nuwarobotics.example.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer / single-consumer queue of preallocated log records.
+ * Producers never block: when the buffer is full the record is dropped and counted.
+ */
+final class LogRingBuffer {
+
+    static final int ARGS_NONE = 0;
+    static final int ARGS_LONG = 1;
+    static final int ARGS_DOUBLE = 2;
+    static final int ARGS_OBJECT = 3;
+
+    /**
+     * One log line. Format arguments are kept unformatted (and unboxed) until the line is emitted.
+     */
+    static final class Record {
+        long seq = -1;
+        int priority;
+        String tag;
+        String msg;
+        Throwable tr;
+        int callSite;
+        int suppressed;
+        StackTraceElement caller;
+        long timeMillis;
+        // filled or being emitted
+        boolean inUse;
+
+        int argType;
+        int argCount;
+        long l0, l1, l2;
+        double d0, d1, d2;
+        Object o0, o1;
+
+        /**
+         * @return msg with each "{}" replaced by the next argument
+         */
+        String formatMessage() {
+            if (argType == ARGS_NONE || msg == null) {
+                return msg;
+            }
+            StringBuilder sb = new StringBuilder(msg.length() + 16 * argCount);
+            int start = 0;
+            for (int arg = 0; arg < argCount; arg++) {
+                int index = msg.indexOf("{}", start);
+                if (index < 0) {
+                    break;
+                }
+                sb.append(msg, start, index);
+                appendArg(sb, arg);
+                start = index + 2;
+            }
+            sb.append(msg, start, msg.length());
+            return sb.toString();
+        }
+
+        private void appendArg(StringBuilder sb, int arg) {
+            switch (argType) {
+                case ARGS_LONG:
+                    sb.append(arg == 0 ? l0 : arg == 1 ? l1 : l2);
+                    break;
+                case ARGS_DOUBLE:
+                    sb.append(arg == 0 ? d0 : arg == 1 ? d1 : d2);
+                    break;
+                default:
+                    sb.append(arg == 0 ? o0 : o1);
+                    break;
+            }
+        }
+
+        void clear() {
+            tag = null;
+            msg = null;
+            tr = null;
+            caller = null;
+            argType = ARGS_NONE;
+            argCount = 0;
+            o0 = null;
+            o1 = null;
+            inUse = false;
+        }
+    }
+
+    private final Record[] mRecords;
+    private final AtomicLongArray mPublished;
+    private final int mMask;
+
+    private final AtomicLong mClaimed = new AtomicLong();
+    private final AtomicLong mConsumed = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+
+    /**
+     * @param capacity number of records, rounded up to a power of two
+     */
+    LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mRecords = new Record[size];
+        mPublished = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mRecords[i] = new Record();
+            mPublished.set(i, -1);
+        }
+        mMask = size - 1;
+    }
+
+    /**
+     * Reserve the next free slot. The caller fills it and hands it back with {@link #publish(Record)}.
+     * @return null if the buffer was full and the line was dropped
+     */
+    Record claim() {
+        long seq;
+        do {
+            seq = mClaimed.get();
+            if (seq - mConsumed.get() >= mRecords.length) {
+                mDropped.incrementAndGet();
+                return null;
+            }
+        } while (!mClaimed.compareAndSet(seq, seq + 1));
+
+        Record record = mRecords[(int) (seq & mMask)];
+        record.seq = seq;
+        return record;
+    }
+
+    void publish(Record record) {
+        mPublished.lazySet((int) (record.seq & mMask), record.seq);
+    }
+
+    /**
+     * Hand the oldest published record to {@code consumer}. Only one thread may poll at a time.
+     * @return false if nothing was published yet
+     */
+    boolean poll(Consumer consumer) {
+        long seq = mConsumed.get();
+        int index = (int) (seq & mMask);
+        if (mPublished.get(index) != seq) {
+            return false;
+        }
+        Record record = mRecords[index];
+        try {
+            consumer.accept(record);
+        } finally {
+            record.clear();
+            mConsumed.lazySet(seq + 1);
+        }
+        return true;
+    }
+
+    boolean isEmpty() {
+        return mConsumed.get() == mClaimed.get();
+    }
+
+    long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    int capacity() {
+        return mRecords.length;
+    }
+
+    interface Consumer {
+        void accept(Record record);
+    }
+}
@@ -4,14 +4,189 @@ import android.util.Log;
 
 import com.nuwarobotics.example.BuildConfig;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Besides the plain {@code d(tag, msg)} style methods, every level offers overloads which only build
+ * the message when the level is enabled:
+ * <ul>
+ * <li>{@code d(tag, () -> expensiveMessage())} evaluates the supplier lazily</li>
+ * <li>{@code d(callSite, tag, "type ={} x={} y={}", type, x, y)} replaces each "{}" with the next argument.
+ * long / double variants take primitives without boxing and, in async mode, are formatted on the writer thread</li>
+ * </ul>
+ */
 public final class Logger {
     private static final String TAG = "NuwaSDKExampleMotion";
 
     private static boolean ENABLE_STACK_INFO = true;
 
+    /**
+     * Call site id for log statements which did not register one; their caller is looked up per line.
+     */
+    public static final int NO_CALL_SITE = -1;
+    private static final LogCallSites sCallSites = new LogCallSites();
+
+    private static final int ASYNC_BUFFER_SIZE = 1024;
+    private static volatile AsyncLogWriter sAsyncWriter;
+    private static final ThreadLocal<LogRingBuffer.Record> sSyncRecord = new ThreadLocal<LogRingBuffer.Record>() {
+        @Override
+        protected LogRingBuffer.Record initialValue() {
+            return new LogRingBuffer.Record();
+        }
+    };
+
+    private static volatile int sDefaultLevel = Log.VERBOSE;
+    private static final Map<String, Integer> sTagLevels = new ConcurrentHashMap<>();
+    private static final LogRateLimiter sRateLimiter = new LogRateLimiter();
+    private static volatile LogFlightRecorder sFlightRecorder;
+
     private Logger() {
     }
 
+    /**
+     * Hand log lines to a background writer instead of writing logcat on the calling thread.
+     * Lines are dropped (and counted) when the writer falls behind, never blocking the caller.
+     * Pending lines are flushed when an uncaught exception reaches the default handler.
+     */
+    public static synchronized void setAsyncEnabled(boolean enabled) {
+        if (enabled && sAsyncWriter == null) {
+            AsyncLogWriter writer = new AsyncLogWriter(ASYNC_BUFFER_SIZE);
+            writer.start();
+            sAsyncWriter = writer;
+        } else if (!enabled && sAsyncWriter != null) {
+            AsyncLogWriter writer = sAsyncWriter;
+            sAsyncWriter = null;
+            writer.stop();
+        }
+    }
+
+    public static boolean isAsyncEnabled() {
+        return sAsyncWriter != null;
+    }
+
+    /**
+     * Write out every line still queued by the async writer, e.g. before the robot service goes away.
+     */
+    public static void flush() {
+        AsyncLogWriter writer = sAsyncWriter;
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * @return number of lines dropped because the async buffer was full
+     */
+    public static long getDroppedCount() {
+        AsyncLogWriter writer = sAsyncWriter;
+        return writer == null ? 0 : writer.getDroppedCount();
+    }
+
+    /**
+     * Also append every logged line to {@code recorder}, null to stop recording.
+     * The previous recorder is closed.
+     */
+    public static synchronized void setFlightRecorder(LogFlightRecorder recorder) {
+        LogFlightRecorder old = sFlightRecorder;
+        sFlightRecorder = recorder;
+        if (old != null && old != recorder) {
+            old.close();
+        }
+    }
+
+    public static LogFlightRecorder getFlightRecorder() {
+        return sFlightRecorder;
+    }
+
+    /**
+     * Allocate an id for a hot log statement, e.g.
+     * {@code private static final int SITE_RAW_TOUCH = Logger.newCallSite();}
+     * Lines logged with the id resolve their method / line once instead of walking the stack every time.
+     * Use one id per statement, sharing an id makes every line report the first statement's location.
+     */
+    public static int newCallSite() {
+        return sCallSites.register();
+    }
+
+    /**
+     * Minimum level (e.g. {@link Log#INFO}) for tags without their own threshold.
+     */
+    public static void setDefaultLevel(int priority) {
+        sDefaultLevel = priority;
+    }
+
+    /**
+     * Minimum level for {@code tag}, a null tag means the default Logger tag.
+     */
+    public static void setLevel(String tag, int priority) {
+        sTagLevels.put(tag == null ? TAG : tag, priority);
+    }
+
+    public static void clearLevel(String tag) {
+        sTagLevels.remove(tag == null ? TAG : tag);
+    }
+
+    /**
+     * Verbose / debug / info lines are only logged in debug builds, warnings and errors always,
+     * both subject to the runtime thresholds.
+     */
+    public static boolean isLoggable(String tag, int priority) {
+        if (priority < Log.WARN && !BuildConfig.DEBUG) {
+            return false;
+        }
+        int level = sDefaultLevel;
+        if (!sTagLevels.isEmpty()) {
+            Integer tagLevel = sTagLevels.get(tag == null ? TAG : tag);
+            if (tagLevel != null) {
+                level = tagLevel;
+            }
+        }
+        return priority >= level;
+    }
+
+    /**
+     * Allow at most {@code linesPerSecond} lines for {@code tag} after an initial burst of {@code burst} lines.
+     * Suppressed lines are counted and the count is appended to the next line that gets through.
+     */
+    public static void setRateLimit(String tag, double linesPerSecond, int burst) {
+        sRateLimiter.setRate(tag == null ? TAG : tag, linesPerSecond, burst);
+    }
+
+    /**
+     * Same as {@link #setRateLimit(String, double, int)} for one call site, overriding its tag's rule.
+     */
+    public static void setRateLimit(int callSite, double linesPerSecond, int burst) {
+        sRateLimiter.setRate(callSite, linesPerSecond, burst);
+    }
+
+    /**
+     * Keep only one of every {@code oneInN} lines for {@code tag}.
+     */
+    public static void setSampling(String tag, int oneInN) {
+        sRateLimiter.setSampling(tag == null ? TAG : tag, oneInN);
+    }
+
+    public static void setSampling(int callSite, int oneInN) {
+        sRateLimiter.setSampling(callSite, oneInN);
+    }
+
+    public static void clearRateLimits() {
+        sRateLimiter.clear();
+    }
+
+    /**
+     * @return lines of {@code tag} dropped by its rate limit / sampling rule so far
+     */
+    public static long getSuppressedCount(String tag) {
+        return sRateLimiter.getSuppressedCount(tag == null ? TAG : tag);
+    }
+
+    public static long getSuppressedCount(int callSite) {
+        return sRateLimiter.getSuppressedCount(callSite);
+    }
+
     private static StackTraceElement getTargetStackTraceElement() {
         StackTraceElement targetStackTrace = null;
         boolean shouldTrace = false;
@@ -33,6 +208,153 @@ public final class Logger {
         return TAG;
     }
 
+    /**
+     * @return {@link LogRateLimiter#SUPPRESSED} if the line must not be logged,
+     * otherwise the number of lines suppressed before it
+     */
+    private static int gate(int callSite, String tag, int priority) {
+        if (!isLoggable(tag, priority)) {
+            return LogRateLimiter.SUPPRESSED;
+        }
+        return sRateLimiter.acquire(callSite, tag == null ? TAG : tag);
+    }
+
+    private static LogRingBuffer.Record obtain(AsyncLogWriter writer, int priority, int callSite, String tag, int suppressed) {
+        StackTraceElement stackTrace = null;
+        if (ENABLE_STACK_INFO) {
+            stackTrace = sCallSites.get(callSite);
+            if (stackTrace == null) {
+                stackTrace = getTargetStackTraceElement();
+                if (callSite != NO_CALL_SITE) {
+                    sCallSites.put(callSite, stackTrace);
+                }
+            }
+        }
+
+        LogRingBuffer.Record record;
+        if (writer != null) {
+            record = writer.claim();
+        } else {
+            record = sSyncRecord.get();
+            if (record.inUse) {
+                // logged while the line before is emitted on this thread
+                record = new LogRingBuffer.Record();
+            }
+        }
+        if (record != null) {
+            record.inUse = true;
+            record.timeMillis = System.currentTimeMillis();
+            record.priority = priority;
+            record.callSite = callSite;
+            record.tag = tag;
+            record.suppressed = suppressed;
+            record.caller = stackTrace;
+        }
+        return record;
+    }
+
+    private static void commit(AsyncLogWriter writer, LogRingBuffer.Record record) {
+        if (writer != null) {
+            writer.publish(record);
+        } else {
+            try {
+                emit(record);
+            } finally {
+                record.clear();
+            }
+        }
+    }
+
+    private static void log(int priority, int callSite, String tag, int suppressed, String msg, Throwable tr) {
+        AsyncLogWriter writer = sAsyncWriter;
+        LogRingBuffer.Record record = obtain(writer, priority, callSite, tag, suppressed);
+        if (record == null) {
+            return;
+        }
+        record.msg = msg;
+        record.tr = tr;
+        commit(writer, record);
+    }
+
+    private static void log(int priority, int callSite, String tag, int suppressed, String format, int count, long a, long b, long c) {
+        AsyncLogWriter writer = sAsyncWriter;
+        LogRingBuffer.Record record = obtain(writer, priority, callSite, tag, suppressed);
+        if (record == null) {
+            return;
+        }
+        record.msg = format;
+        record.argType = LogRingBuffer.ARGS_LONG;
+        record.argCount = count;
+        record.l0 = a;
+        record.l1 = b;
+        record.l2 = c;
+        commit(writer, record);
+    }
+
+    private static void log(int priority, int callSite, String tag, int suppressed, String format, int count, double a, double b, double c) {
+        AsyncLogWriter writer = sAsyncWriter;
+        LogRingBuffer.Record record = obtain(writer, priority, callSite, tag, suppressed);
+        if (record == null) {
+            return;
+        }
+        record.msg = format;
+        record.argType = LogRingBuffer.ARGS_DOUBLE;
+        record.argCount = count;
+        record.d0 = a;
+        record.d1 = b;
+        record.d2 = c;
+        commit(writer, record);
+    }
+
+    private static void log(int priority, int callSite, String tag, int suppressed, String format, int count, Object a, Object b) {
+        // converted here, an object the caller changes later or whose toString logs must not reach the writer
+        String first = toArgString(a);
+        String second = count > 1 ? toArgString(b) : null;
+        AsyncLogWriter writer = sAsyncWriter;
+        LogRingBuffer.Record record = obtain(writer, priority, callSite, tag, suppressed);
+        if (record == null) {
+            return;
+        }
+        record.msg = format;
+        record.argType = LogRingBuffer.ARGS_OBJECT;
+        record.argCount = count;
+        record.o0 = first;
+        record.o1 = second;
+        commit(writer, record);
+    }
+
+    private static String toArgString(Object arg) {
+        try {
+            return String.valueOf(arg);
+        } catch (RuntimeException e) {
+            return "<" + arg.getClass().getName() + ".toString() threw " + e + ">";
+        }
+    }
+
+    static void emit(LogRingBuffer.Record record) {
+        String tag = record.tag;
+        if (tag == null) {
+            tag = getDefaultTag(record.caller);
+        }
+
+        String msg = record.formatMessage();
+        if (ENABLE_STACK_INFO) {
+            msg = sCallSites.prefix(record.callSite, record.caller) + msg;
+        }
+        if (record.suppressed > 0) {
+            msg = msg + " (+" + record.suppressed + " suppressed)";
+        }
+        if (record.tr != null) {
+            msg = msg + '\n' + Log.getStackTraceString(record.tr);
+        }
+        Log.println(record.priority, tag, msg);
+
+        LogFlightRecorder recorder = sFlightRecorder;
+        if (recorder != null) {
+            recorder.append(record.priority, tag, record.timeMillis, msg);
+        }
+    }
+
     public static void v(String msg) {
         v(null, msg, null);
     }
@@ -46,20 +368,87 @@ public final class Logger {
     }
 
     public static void v(String tag, String msg, Throwable tr) {
-        if (BuildConfig.DEBUG) {
-            StackTraceElement stackTrace = getTargetStackTraceElement();
+        int suppressed = gate(NO_CALL_SITE, tag, Log.VERBOSE);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.VERBOSE, NO_CALL_SITE, tag, suppressed, msg, tr);
+        }
+    }
 
-            if (tag == null) {
-                tag = getDefaultTag(stackTrace);
-            }
+    public static void v(int callSite, String tag, String msg) {
+        v(callSite, tag, msg, null);
+    }
 
-            String stackInfo = "";
-            if (ENABLE_STACK_INFO) {
-                stackInfo = stackTrace.getMethodName()
-                        + "(" + stackTrace.getFileName() + ":" + stackTrace.getLineNumber() + ") ";
-            }
-            msg = stackInfo + msg;
-            Log.v(tag, msg, tr);
+    public static void v(int callSite, String tag, String msg, Throwable tr) {
+        int suppressed = gate(callSite, tag, Log.VERBOSE);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.VERBOSE, callSite, tag, suppressed, msg, tr);
+        }
+    }
+
+    public static void v(String tag, Supplier<String> msg) {
+        v(NO_CALL_SITE, tag, msg);
+    }
+
+    public static void v(int callSite, String tag, Supplier<String> msg) {
+        int suppressed = gate(callSite, tag, Log.VERBOSE);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.VERBOSE, callSite, tag, suppressed, msg.get(), null);
+        }
+    }
+
+    public static void v(int callSite, String tag, String format, long a) {
+        int suppressed = gate(callSite, tag, Log.VERBOSE);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.VERBOSE, callSite, tag, suppressed, format, 1, a, 0L, 0L);
+        }
+    }
+
+    public static void v(int callSite, String tag, String format, long a, long b) {
+        int suppressed = gate(callSite, tag, Log.VERBOSE);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.VERBOSE, callSite, tag, suppressed, format, 2, a, b, 0L);
+        }
+    }
+
+    public static void v(int callSite, String tag, String format, long a, long b, long c) {
+        int suppressed = gate(callSite, tag, Log.VERBOSE);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.VERBOSE, callSite, tag, suppressed, format, 3, a, b, c);
+        }
+    }
+
+    public static void v(int callSite, String tag, String format, double a) {
+        int suppressed = gate(callSite, tag, Log.VERBOSE);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.VERBOSE, callSite, tag, suppressed, format, 1, a, 0d, 0d);
+        }
+    }
+
+    public static void v(int callSite, String tag, String format, double a, double b) {
+        int suppressed = gate(callSite, tag, Log.VERBOSE);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.VERBOSE, callSite, tag, suppressed, format, 2, a, b, 0d);
+        }
+    }
+
+    public static void v(int callSite, String tag, String format, double a, double b, double c) {
+        int suppressed = gate(callSite, tag, Log.VERBOSE);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.VERBOSE, callSite, tag, suppressed, format, 3, a, b, c);
+        }
+    }
+
+    public static void v(int callSite, String tag, String format, Object a) {
+        int suppressed = gate(callSite, tag, Log.VERBOSE);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.VERBOSE, callSite, tag, suppressed, format, 1, a, null);
+        }
+    }
+
+    public static void v(int callSite, String tag, String format, Object a, Object b) {
+        int suppressed = gate(callSite, tag, Log.VERBOSE);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.VERBOSE, callSite, tag, suppressed, format, 2, a, b);
         }
     }
 
@@ -76,20 +465,87 @@ public final class Logger {
     }
 
     public static void i(String tag, String msg, Throwable tr) {
-        if (BuildConfig.DEBUG) {
-            StackTraceElement stackTrace = getTargetStackTraceElement();
+        int suppressed = gate(NO_CALL_SITE, tag, Log.INFO);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.INFO, NO_CALL_SITE, tag, suppressed, msg, tr);
+        }
+    }
 
-            if (tag == null) {
-                tag = getDefaultTag(stackTrace);
-            }
+    public static void i(int callSite, String tag, String msg) {
+        i(callSite, tag, msg, null);
+    }
 
-            String stackInfo = "";
-            if (ENABLE_STACK_INFO) {
-                stackInfo = stackTrace.getMethodName()
-                        + "(" + stackTrace.getFileName() + ":" + stackTrace.getLineNumber() + ") ";
-            }
-            msg = stackInfo + msg;
-            Log.i(tag, msg, tr);
+    public static void i(int callSite, String tag, String msg, Throwable tr) {
+        int suppressed = gate(callSite, tag, Log.INFO);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.INFO, callSite, tag, suppressed, msg, tr);
+        }
+    }
+
+    public static void i(String tag, Supplier<String> msg) {
+        i(NO_CALL_SITE, tag, msg);
+    }
+
+    public static void i(int callSite, String tag, Supplier<String> msg) {
+        int suppressed = gate(callSite, tag, Log.INFO);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.INFO, callSite, tag, suppressed, msg.get(), null);
+        }
+    }
+
+    public static void i(int callSite, String tag, String format, long a) {
+        int suppressed = gate(callSite, tag, Log.INFO);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.INFO, callSite, tag, suppressed, format, 1, a, 0L, 0L);
+        }
+    }
+
+    public static void i(int callSite, String tag, String format, long a, long b) {
+        int suppressed = gate(callSite, tag, Log.INFO);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.INFO, callSite, tag, suppressed, format, 2, a, b, 0L);
+        }
+    }
+
+    public static void i(int callSite, String tag, String format, long a, long b, long c) {
+        int suppressed = gate(callSite, tag, Log.INFO);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.INFO, callSite, tag, suppressed, format, 3, a, b, c);
+        }
+    }
+
+    public static void i(int callSite, String tag, String format, double a) {
+        int suppressed = gate(callSite, tag, Log.INFO);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.INFO, callSite, tag, suppressed, format, 1, a, 0d, 0d);
+        }
+    }
+
+    public static void i(int callSite, String tag, String format, double a, double b) {
+        int suppressed = gate(callSite, tag, Log.INFO);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.INFO, callSite, tag, suppressed, format, 2, a, b, 0d);
+        }
+    }
+
+    public static void i(int callSite, String tag, String format, double a, double b, double c) {
+        int suppressed = gate(callSite, tag, Log.INFO);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.INFO, callSite, tag, suppressed, format, 3, a, b, c);
+        }
+    }
+
+    public static void i(int callSite, String tag, String format, Object a) {
+        int suppressed = gate(callSite, tag, Log.INFO);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.INFO, callSite, tag, suppressed, format, 1, a, null);
+        }
+    }
+
+    public static void i(int callSite, String tag, String format, Object a, Object b) {
+        int suppressed = gate(callSite, tag, Log.INFO);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.INFO, callSite, tag, suppressed, format, 2, a, b);
         }
     }
 
@@ -106,20 +562,87 @@ public final class Logger {
     }
 
     public static void d(String tag, String msg, Throwable tr) {
-        if (BuildConfig.DEBUG) {
-            StackTraceElement stackTrace = getTargetStackTraceElement();
+        int suppressed = gate(NO_CALL_SITE, tag, Log.DEBUG);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.DEBUG, NO_CALL_SITE, tag, suppressed, msg, tr);
+        }
+    }
 
-            if (tag == null) {
-                tag = getDefaultTag(stackTrace);
-            }
+    public static void d(int callSite, String tag, String msg) {
+        d(callSite, tag, msg, null);
+    }
 
-            String stackInfo = "";
-            if (ENABLE_STACK_INFO) {
-                stackInfo = stackTrace.getMethodName()
-                        + "(" + stackTrace.getFileName() + ":" + stackTrace.getLineNumber() + ") ";
-            }
-            msg = stackInfo + msg;
-            Log.d(tag, msg, tr);
+    public static void d(int callSite, String tag, String msg, Throwable tr) {
+        int suppressed = gate(callSite, tag, Log.DEBUG);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.DEBUG, callSite, tag, suppressed, msg, tr);
+        }
+    }
+
+    public static void d(String tag, Supplier<String> msg) {
+        d(NO_CALL_SITE, tag, msg);
+    }
+
+    public static void d(int callSite, String tag, Supplier<String> msg) {
+        int suppressed = gate(callSite, tag, Log.DEBUG);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.DEBUG, callSite, tag, suppressed, msg.get(), null);
+        }
+    }
+
+    public static void d(int callSite, String tag, String format, long a) {
+        int suppressed = gate(callSite, tag, Log.DEBUG);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.DEBUG, callSite, tag, suppressed, format, 1, a, 0L, 0L);
+        }
+    }
+
+    public static void d(int callSite, String tag, String format, long a, long b) {
+        int suppressed = gate(callSite, tag, Log.DEBUG);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.DEBUG, callSite, tag, suppressed, format, 2, a, b, 0L);
+        }
+    }
+
+    public static void d(int callSite, String tag, String format, long a, long b, long c) {
+        int suppressed = gate(callSite, tag, Log.DEBUG);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.DEBUG, callSite, tag, suppressed, format, 3, a, b, c);
+        }
+    }
+
+    public static void d(int callSite, String tag, String format, double a) {
+        int suppressed = gate(callSite, tag, Log.DEBUG);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.DEBUG, callSite, tag, suppressed, format, 1, a, 0d, 0d);
+        }
+    }
+
+    public static void d(int callSite, String tag, String format, double a, double b) {
+        int suppressed = gate(callSite, tag, Log.DEBUG);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.DEBUG, callSite, tag, suppressed, format, 2, a, b, 0d);
+        }
+    }
+
+    public static void d(int callSite, String tag, String format, double a, double b, double c) {
+        int suppressed = gate(callSite, tag, Log.DEBUG);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.DEBUG, callSite, tag, suppressed, format, 3, a, b, c);
+        }
+    }
+
+    public static void d(int callSite, String tag, String format, Object a) {
+        int suppressed = gate(callSite, tag, Log.DEBUG);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.DEBUG, callSite, tag, suppressed, format, 1, a, null);
+        }
+    }
+
+    public static void d(int callSite, String tag, String format, Object a, Object b) {
+        int suppressed = gate(callSite, tag, Log.DEBUG);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.DEBUG, callSite, tag, suppressed, format, 2, a, b);
         }
     }
 
@@ -136,19 +659,88 @@ public final class Logger {
     }
 
     public static void w(String tag, String msg, Throwable tr) {
-        StackTraceElement stackTrace = getTargetStackTraceElement();
+        int suppressed = gate(NO_CALL_SITE, tag, Log.WARN);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.WARN, NO_CALL_SITE, tag, suppressed, msg, tr);
+        }
+    }
 
-        if (tag == null) {
-            tag = getDefaultTag(stackTrace);
+    public static void w(int callSite, String tag, String msg) {
+        w(callSite, tag, msg, null);
+    }
+
+    public static void w(int callSite, String tag, String msg, Throwable tr) {
+        int suppressed = gate(callSite, tag, Log.WARN);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.WARN, callSite, tag, suppressed, msg, tr);
         }
+    }
 
-        String stackInfo = "";
-        if (ENABLE_STACK_INFO) {
-            stackInfo = stackTrace.getMethodName()
-                    + "(" + stackTrace.getFileName() + ":" + stackTrace.getLineNumber() + ") ";
+    public static void w(String tag, Supplier<String> msg) {
+        w(NO_CALL_SITE, tag, msg);
+    }
+
+    public static void w(int callSite, String tag, Supplier<String> msg) {
+        int suppressed = gate(callSite, tag, Log.WARN);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.WARN, callSite, tag, suppressed, msg.get(), null);
+        }
+    }
+
+    public static void w(int callSite, String tag, String format, long a) {
+        int suppressed = gate(callSite, tag, Log.WARN);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.WARN, callSite, tag, suppressed, format, 1, a, 0L, 0L);
+        }
+    }
+
+    public static void w(int callSite, String tag, String format, long a, long b) {
+        int suppressed = gate(callSite, tag, Log.WARN);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.WARN, callSite, tag, suppressed, format, 2, a, b, 0L);
+        }
+    }
+
+    public static void w(int callSite, String tag, String format, long a, long b, long c) {
+        int suppressed = gate(callSite, tag, Log.WARN);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.WARN, callSite, tag, suppressed, format, 3, a, b, c);
+        }
+    }
+
+    public static void w(int callSite, String tag, String format, double a) {
+        int suppressed = gate(callSite, tag, Log.WARN);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.WARN, callSite, tag, suppressed, format, 1, a, 0d, 0d);
+        }
+    }
+
+    public static void w(int callSite, String tag, String format, double a, double b) {
+        int suppressed = gate(callSite, tag, Log.WARN);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.WARN, callSite, tag, suppressed, format, 2, a, b, 0d);
+        }
+    }
+
+    public static void w(int callSite, String tag, String format, double a, double b, double c) {
+        int suppressed = gate(callSite, tag, Log.WARN);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.WARN, callSite, tag, suppressed, format, 3, a, b, c);
+        }
+    }
+
+    public static void w(int callSite, String tag, String format, Object a) {
+        int suppressed = gate(callSite, tag, Log.WARN);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.WARN, callSite, tag, suppressed, format, 1, a, null);
+        }
+    }
+
+    public static void w(int callSite, String tag, String format, Object a, Object b) {
+        int suppressed = gate(callSite, tag, Log.WARN);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.WARN, callSite, tag, suppressed, format, 2, a, b);
         }
-        msg = stackInfo + msg;
-        Log.w(tag, msg, tr);
     }
 
     public static void e(String msg) {
@@ -164,19 +756,88 @@ public final class Logger {
     }
 
     public static void e(String tag, String msg, Throwable tr) {
-        StackTraceElement stackTrace = getTargetStackTraceElement();
+        int suppressed = gate(NO_CALL_SITE, tag, Log.ERROR);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.ERROR, NO_CALL_SITE, tag, suppressed, msg, tr);
+        }
+    }
 
-        if (tag == null) {
-            tag = getDefaultTag(stackTrace);
+    public static void e(int callSite, String tag, String msg) {
+        e(callSite, tag, msg, null);
+    }
+
+    public static void e(int callSite, String tag, String msg, Throwable tr) {
+        int suppressed = gate(callSite, tag, Log.ERROR);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.ERROR, callSite, tag, suppressed, msg, tr);
         }
+    }
 
-        String stackInfo = "";
-        if (ENABLE_STACK_INFO) {
-            stackInfo = stackTrace.getMethodName()
-                    + "(" + stackTrace.getFileName() + ":" + stackTrace.getLineNumber() + ") ";
+    public static void e(String tag, Supplier<String> msg) {
+        e(NO_CALL_SITE, tag, msg);
+    }
+
+    public static void e(int callSite, String tag, Supplier<String> msg) {
+        int suppressed = gate(callSite, tag, Log.ERROR);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.ERROR, callSite, tag, suppressed, msg.get(), null);
+        }
+    }
+
+    public static void e(int callSite, String tag, String format, long a) {
+        int suppressed = gate(callSite, tag, Log.ERROR);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.ERROR, callSite, tag, suppressed, format, 1, a, 0L, 0L);
+        }
+    }
+
+    public static void e(int callSite, String tag, String format, long a, long b) {
+        int suppressed = gate(callSite, tag, Log.ERROR);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.ERROR, callSite, tag, suppressed, format, 2, a, b, 0L);
+        }
+    }
+
+    public static void e(int callSite, String tag, String format, long a, long b, long c) {
+        int suppressed = gate(callSite, tag, Log.ERROR);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.ERROR, callSite, tag, suppressed, format, 3, a, b, c);
+        }
+    }
+
+    public static void e(int callSite, String tag, String format, double a) {
+        int suppressed = gate(callSite, tag, Log.ERROR);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.ERROR, callSite, tag, suppressed, format, 1, a, 0d, 0d);
+        }
+    }
+
+    public static void e(int callSite, String tag, String format, double a, double b) {
+        int suppressed = gate(callSite, tag, Log.ERROR);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.ERROR, callSite, tag, suppressed, format, 2, a, b, 0d);
+        }
+    }
+
+    public static void e(int callSite, String tag, String format, double a, double b, double c) {
+        int suppressed = gate(callSite, tag, Log.ERROR);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.ERROR, callSite, tag, suppressed, format, 3, a, b, c);
+        }
+    }
+
+    public static void e(int callSite, String tag, String format, Object a) {
+        int suppressed = gate(callSite, tag, Log.ERROR);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.ERROR, callSite, tag, suppressed, format, 1, a, null);
+        }
+    }
+
+    public static void e(int callSite, String tag, String format, Object a, Object b) {
+        int suppressed = gate(callSite, tag, Log.ERROR);
+        if (suppressed != LogRateLimiter.SUPPRESSED) {
+            log(Log.ERROR, callSite, tag, suppressed, format, 2, a, b);
         }
-        msg = stackInfo + msg;
-        Log.e(tag, msg, tr);
     }
 
 }
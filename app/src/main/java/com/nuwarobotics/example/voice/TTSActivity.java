@@ -11,6 +11,7 @@ import android.widget.Button;
 import android.widget.EditText;
 
 import com.nuwarobotics.example.R;
+import com.nuwarobotics.example.voice.tts.TtsPipeline;
 import com.nuwarobotics.service.IClientId;
 import com.nuwarobotics.service.agent.NuwaRobotAPI;
 import com.nuwarobotics.service.agent.RobotEventListener;
@@ -21,6 +22,7 @@ import com.nuwarobotics.service.agent.VoiceResultJsonParser;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 public class TTSActivity extends AppCompatActivity {
@@ -33,6 +35,10 @@ public class TTSActivity extends AppCompatActivity {
     EditText mResult;
     Button mStartBtn;
     Button mStopBtn;
+    Button mSkipBtn;
+
+    // speaks the sample sentence by sentence, the robot starts talking after the first one is synthesized
+    TtsPipeline mTtsPipeline;
 
     String TTS_sample = "東京オリンピックの聖火が日本に到着するまで、あと１か月となりました。東日本大震災の被災地で、最初に聖火が到着する宮城県東松島市では地元の小学校にカウントダウンボードが設置されていて、歓迎の機運が高まっています。";
 
@@ -56,6 +62,8 @@ public class TTSActivity extends AppCompatActivity {
         mStartBtn.setEnabled(false);
         mStopBtn = (Button) findViewById(R.id.btn_stop);
         mStopBtn.setEnabled(false);
+        mSkipBtn = (Button) findViewById(R.id.btn_skip);
+        mSkipBtn.setEnabled(false);
 
         //Step 1 : Initial Nuwa API Object
         mClientId = new IClientId(this.getPackageName());
@@ -65,11 +73,14 @@ public class TTSActivity extends AppCompatActivity {
         Log.d(TAG, "register EventListener ");
         mRobotAPI.registerRobotEventListener(robotEventListener);//listen callback of robot service event
 
+        mTtsPipeline = new TtsPipeline(mRobotAPI);
+        mTtsPipeline.setListener(ttsPipelineListener);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        mTtsPipeline.release();
         // release Nuwa Robot SDK resource
         mRobotAPI.release();
     }
@@ -92,22 +103,25 @@ public class TTSActivity extends AppCompatActivity {
 
         setText(getCurrentTime() + "Start TTS", false);
 
-        //Step 4 : call start listen
+        //Step 4 : call start TTS, the pipeline sends one sentence at a time
         Log.d(TAG, "onClick to start startTTS");
-        mRobotAPI.startTTS(TTS_sample);
+        mTtsPipeline.speak(TTS_sample);
         //The TTS Capability are difference between each market, please read more from SDK Document.
         // or Used jp language speak
-        // mRobotAPI.startTTS(TTS_sample, Locale.JAPANESE.toString());
+        // mTtsPipeline.speak(TTS_sample, Locale.JAPANESE.toString());
         // or Used chinese language speak
-        // mRobotAPI.startTTS(TTS_sample, Locale.CHINESE.toString());
+        // mTtsPipeline.speak(TTS_sample, Locale.CHINESE.toString());
         // or Used english language speak
-        // mRobotAPI.startTTS(TTS_sample, Locale.ENGLISH.toString());
+        // mTtsPipeline.speak(TTS_sample, Locale.ENGLISH.toString());
+        // or speak the whole text in one call
+        // mRobotAPI.startTTS(TTS_sample);
 
         runOnUiThread(new Runnable() {
             @Override
             public void run() {
                 mStartBtn.setEnabled(false);
                 mStopBtn.setEnabled(true);
+                mSkipBtn.setEnabled(true);
             }
         });
     }
@@ -115,17 +129,24 @@ public class TTSActivity extends AppCompatActivity {
     public void BtnStop(View view) {
         Log.d(TAG, "onClick to stopTTS");
         setText(getCurrentTime() + "Stop TTS", false);
-        mRobotAPI.stopTTS();
+        mTtsPipeline.cancel();
 
         runOnUiThread(new Runnable() {
             @Override
             public void run() {
                 mStartBtn.setEnabled(true);
                 mStopBtn.setEnabled(false);
+                mSkipBtn.setEnabled(false);
             }
         });
     }
 
+    public void BtnSkip(View view) {
+        Log.d(TAG, "onClick to skip sentence");
+        setText(getCurrentTime() + "Skip sentence", false);
+        mTtsPipeline.skip();
+    }
+
     private void setText(final String text, final boolean append) {
         runOnUiThread(new Runnable() {
             @Override
@@ -278,25 +299,47 @@ public class TTSActivity extends AppCompatActivity {
 
         }
     };
-    VoiceEventListener voiceEventListener = new VoiceEventListener() {
+    TtsPipeline.Listener ttsPipelineListener = new TtsPipeline.Listener() {
         @Override
-        public void onWakeup(boolean isError, String score, float direction) {
+        public void onChunkStart(TtsPipeline.Chunk chunk) {
+            setText(getCurrentTime() + "Speak " + (chunk.getIndex() + 1) + "/" + chunk.getCount() + ": " + chunk.getText(), false);
+        }
 
+        @Override
+        public void onChunkEnd(TtsPipeline.Chunk chunk) {
+            //per sentence timing, compare it for different chunk sizes
+            Log.d(TAG, "chunk " + chunk);
+            setText("  " + chunk, false);
         }
 
         @Override
-        public void onTTSComplete(boolean isError) {
-            Log.d(TAG, "onTTSComplete:" + !isError);
-            setText("onTTSComplete, " + !isError, false);
+        public void onDone(List<TtsPipeline.Chunk> chunks, boolean cancelled) {
+            setText(getCurrentTime() + (cancelled ? "TTS stopped" : "TTS done"), false);
 
             runOnUiThread(new Runnable() {
                 @Override
                 public void run() {
                     mStartBtn.setEnabled(true);
                     mStopBtn.setEnabled(false);
+                    mSkipBtn.setEnabled(false);
                 }
             });
         }
+    };
+
+    VoiceEventListener voiceEventListener = new VoiceEventListener() {
+        @Override
+        public void onWakeup(boolean isError, String score, float direction) {
+
+        }
+
+        @Override
+        public void onTTSComplete(boolean isError) {
+            Log.d(TAG, "onTTSComplete:" + !isError);
+            setText("onTTSComplete, " + !isError, false);
+            //each end sends the next sentence
+            mTtsPipeline.onTTSComplete(isError);
+        }
 
         @Override
         public void onSpeechRecognizeComplete(boolean isError, ResultType iFlyResult, String json) {
@@ -0,0 +1,199 @@
+package com.nuwarobotics.example.voice.tts;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text for TTS into sentences, and sentences longer than the chunk limit into clauses.
+ *
+ * Sentences end at 。．！？!? and line breaks, and at '.' followed by a space or the end of the text, so "3.5" and
+ * "www.nuwarobotics.com" stay whole. Closing quotes and brackets after the end stay with their sentence. A long
+ * sentence is cut after its last clause mark within the limit (、，,；;：:), failing that at a space, failing that
+ * at the limit. Chunks shorter than the minimum are joined to the next one, the engine speaks them no faster alone.
+ */
+public final class TextChunker {
+    public static final int DEFAULT_MAX_CHARS = 60;
+    public static final int DEFAULT_MIN_CHARS = 4;
+
+    private final int mMaxChars;
+    private final int mMinChars;
+
+    public TextChunker() {
+        this(DEFAULT_MAX_CHARS, DEFAULT_MIN_CHARS);
+    }
+
+    /**
+     * @param maxChars longest chunk, before a sentence is cut into clauses
+     * @param minChars shortest chunk spoken alone
+     */
+    public TextChunker(int maxChars, int minChars) {
+        if (maxChars < 1 || minChars < 0 || minChars > maxChars) {
+            throw new IllegalArgumentException("bad chunk size " + minChars + ".." + maxChars);
+        }
+        mMaxChars = maxChars;
+        mMinChars = minChars;
+    }
+
+    public int getMaxChars() {
+        return mMaxChars;
+    }
+
+    /**
+     * @return chunks of {@code text} in order, trimmed, none empty
+     */
+    public List<String> split(String text) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder pending = new StringBuilder();
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            int end = sentenceEnd(text, start);
+            while (end - start > mMaxChars) {
+                int cut = clauseEnd(text, start, start + mMaxChars);
+                pending = add(chunks, pending, text.substring(start, cut));
+                start = cut;
+            }
+            pending = add(chunks, pending, text.substring(start, end));
+            start = end;
+        }
+        String last = pending.toString().trim();
+        if (!last.isEmpty()) {
+            if (last.length() < mMinChars && !chunks.isEmpty()
+                    && chunks.get(chunks.size() - 1).length() + last.length() <= mMaxChars) {
+                chunks.set(chunks.size() - 1, chunks.get(chunks.size() - 1) + joiner(chunks.get(chunks.size() - 1), last) + last);
+            } else {
+                chunks.add(last);
+            }
+        }
+        return chunks;
+    }
+
+    private StringBuilder add(List<String> chunks, StringBuilder pending, String piece) {
+        String trimmed = piece.trim();
+        if (trimmed.isEmpty()) {
+            return pending;
+        }
+        if (pending.length() > 0) {
+            if (pending.length() + trimmed.length() + 1 > mMaxChars) {
+                // the short piece can't be joined without making a too long chunk
+                chunks.add(pending.toString());
+                pending.setLength(0);
+            } else {
+                pending.append(joiner(pending, trimmed));
+            }
+        }
+        pending.append(trimmed);
+        if (pending.length() >= mMinChars) {
+            chunks.add(pending.toString());
+            return new StringBuilder();
+        }
+        return pending;
+    }
+
+    /**
+     * Latin text joined back gets its space again, CJK text none.
+     */
+    private static String joiner(CharSequence before, String after) {
+        char last = before.charAt(before.length() - 1);
+        char first = after.charAt(0);
+        return last < 0x2e80 && first < 0x2e80 ? " " : "";
+    }
+
+    /**
+     * @return index after the sentence starting at {@code start}, with its closing marks
+     */
+    private static int sentenceEnd(String text, int start) {
+        int length = text.length();
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            boolean end;
+            switch (c) {
+                case '。':
+                case '．':
+                case '！':
+                case '？':
+                case '!':
+                case '?':
+                case '\n':
+                    end = true;
+                    break;
+                case '.':
+                    end = i + 1 == length || Character.isWhitespace(text.charAt(i + 1)) || isClosing(text.charAt(i + 1));
+                    break;
+                default:
+                    end = false;
+                    break;
+            }
+            if (end) {
+                int after = i + 1;
+                // "!?", "……" and closing quotes belong to the sentence
+                while (after < length && (isClosing(text.charAt(after)) || isRepeatedEnd(text.charAt(after)))) {
+                    after++;
+                }
+                return after;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return index to cut a too long sentence at, in ({@code start}, {@code limit}]
+     */
+    private static int clauseEnd(String text, int start, int limit) {
+        int space = -1;
+        for (int i = limit - 1; i > start; i--) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '、':
+                case '，':
+                case ',':
+                case '；':
+                case ';':
+                case '：':
+                case ':':
+                    return i + 1;
+                default:
+                    if (space < 0 && Character.isWhitespace(c)) {
+                        space = i;
+                    }
+                    break;
+            }
+        }
+        return space > start ? space : limit;
+    }
+
+    private static boolean isClosing(char c) {
+        switch (c) {
+            case '」':
+            case '』':
+            case '）':
+            case '】':
+            case '〉':
+            case '》':
+            case ')':
+            case ']':
+            case '"':
+            case '\'':
+            case '”':
+            case '’':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isRepeatedEnd(char c) {
+        switch (c) {
+            case '。':
+            case '！':
+            case '？':
+            case '!':
+            case '?':
+            case '.':
+            case '…':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.nuwarobotics.example.voice.tts;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.nuwarobotics.service.agent.NuwaRobotAPI;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Speaks long texts chunk by chunk, so speech starts after the first sentence is synthesized instead of the whole text,
+ * and stops or skips land between sentences.
+ *
+ * The text is split by a {@link TextChunker}; each chunk is sent with {@code startTTS} as soon as the robot reports the
+ * end of the one before, forward {@code VoiceEventListener.onTTSComplete} to {@link #onTTSComplete}. Every chunk is
+ * timed, from the end of the chunk before (or {@link #speak}) until it was sent and from then until its end, see
+ * {@link Chunk}; compare them for different chunk sizes.
+ * The listener is called on the main thread.
+ */
+public final class TtsPipeline {
+    private static final String TAG = "TtsPipeline";
+
+    // after stopTTS the next chunk waits for the TTS end it causes, at most this long
+    private static final long STOP_GRACE_MILLIS = 500;
+
+    public interface Listener {
+        /**
+         * {@code chunk} was sent to the robot.
+         */
+        void onChunkStart(Chunk chunk);
+
+        /**
+         * {@code chunk} was spoken, skipped or failed.
+         */
+        void onChunkEnd(Chunk chunk);
+
+        /**
+         * The text is over.
+         * @param cancelled true if stopped by {@link #cancel} or another {@link #speak}
+         */
+        void onDone(List<Chunk> chunks, boolean cancelled);
+    }
+
+    /**
+     * One chunk of a text with its timing, in ms.
+     */
+    public static final class Chunk {
+        private final int mIndex;
+        private final int mCount;
+        private final String mText;
+        private long mHandoverMillis = -1;
+        private long mSpeakMillis = -1;
+        private boolean mSkipped;
+        private boolean mError;
+
+        Chunk(int index, int count, String text) {
+            mIndex = index;
+            mCount = count;
+            mText = text;
+        }
+
+        public int getIndex() {
+            return mIndex;
+        }
+
+        public int getCount() {
+            return mCount;
+        }
+
+        public String getText() {
+            return mText;
+        }
+
+        /**
+         * @return time from the end of the chunk before, or from {@link #speak} for the first one, until the chunk
+         * was sent, -1 if it never was
+         */
+        public long getHandoverMillis() {
+            return mHandoverMillis;
+        }
+
+        /**
+         * @return time from sending the chunk until the robot reported its end, -1 if it didn't end
+         */
+        public long getSpeakMillis() {
+            return mSpeakMillis;
+        }
+
+        public boolean isSkipped() {
+            return mSkipped;
+        }
+
+        public boolean isError() {
+            return mError;
+        }
+
+        @Override
+        public String toString() {
+            return (mIndex + 1) + "/" + mCount + ", " + mText.length() + " chars, handover " + mHandoverMillis
+                    + " ms, spoken " + mSpeakMillis + " ms" + (mSkipped ? ", skipped" : "") + (mError ? ", error" : "");
+        }
+    }
+
+    private final NuwaRobotAPI mRobotAPI;
+    private final TextChunker mChunker;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Object mStopToken = new Object();
+
+    // written on the main thread only
+    private volatile Listener mListener;
+    private List<Chunk> mChunks = Collections.emptyList();
+    private String mLocale;
+    // chunk being spoken, or the next to send
+    private int mNext;
+    private Chunk mSpeaking;
+    private long mSentAt;
+    // end of the chunk before, or speak
+    private long mHandoverFrom;
+    // a stopTTS was sent, its TTS end is still to come; an end after the next chunk was sent is that chunk's
+    private boolean mStopPending;
+
+    public TtsPipeline(NuwaRobotAPI robotAPI) {
+        this(robotAPI, new TextChunker());
+    }
+
+    public TtsPipeline(NuwaRobotAPI robotAPI, TextChunker chunker) {
+        mRobotAPI = robotAPI;
+        mChunker = chunker;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    public void speak(String text) {
+        speak(text, null);
+    }
+
+    /**
+     * Speak {@code text} chunk by chunk, stopping a text still spoken.
+     * @param locale language of the TTS as for {@code startTTS(text, locale)}, null for the robot's default
+     */
+    public void speak(String text, String locale) {
+        List<String> pieces = mChunker.split(text);
+        long now = SystemClock.uptimeMillis();
+        mHandler.post(() -> {
+            if (isActive()) {
+                stopCurrent();
+                finish(true);
+            }
+            List<Chunk> chunks = new ArrayList<>(pieces.size());
+            for (int i = 0; i < pieces.size(); i++) {
+                chunks.add(new Chunk(i, pieces.size(), pieces.get(i)));
+            }
+            mChunks = chunks;
+            mLocale = locale;
+            mNext = 0;
+            mHandoverFrom = now;
+            Log.d(TAG, "speak " + text.length() + " chars in " + chunks.size() + " chunks");
+            if (chunks.isEmpty()) {
+                // nothing to say, the text is over at once
+                finish(false);
+                return;
+            }
+            sendNext();
+        });
+    }
+
+    /**
+     * Stop the chunk being spoken and go on with the next one.
+     */
+    public void skip() {
+        mHandler.post(() -> {
+            if (mSpeaking != null) {
+                mSpeaking.mSkipped = true;
+                stopCurrent();
+            }
+        });
+    }
+
+    /**
+     * Stop the chunk being spoken and drop the rest of the text.
+     */
+    public void cancel() {
+        mHandler.post(() -> {
+            if (isActive()) {
+                stopCurrent();
+                finish(true);
+            }
+        });
+    }
+
+    /**
+     * Forward of {@code VoiceEventListener.onTTSComplete}.
+     */
+    public void onTTSComplete(boolean isError) {
+        long now = SystemClock.uptimeMillis();
+        mHandler.post(() -> {
+            if (mStopPending) {
+                mStopPending = false;
+                mHandler.removeCallbacksAndMessages(mStopToken);
+                mHandoverFrom = now;
+                sendNext();
+                return;
+            }
+            if (mSpeaking == null) {
+                return;
+            }
+            Chunk chunk = mSpeaking;
+            mSpeaking = null;
+            chunk.mSpeakMillis = now - mSentAt;
+            chunk.mError = isError;
+            mHandoverFrom = now;
+            notifyEnd(chunk);
+            // a failed chunk is over as well, the text goes on
+            sendNext();
+        });
+    }
+
+    /**
+     * Drop the text and stop the chunk being spoken, e.g. in onStop.
+     */
+    public void release() {
+        Runnable release = () -> {
+            mHandler.removeCallbacksAndMessages(null);
+            if (isActive()) {
+                stopCurrent();
+                finish(true);
+            }
+        };
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            release.run();
+        } else {
+            mHandler.post(release);
+        }
+    }
+
+    private boolean isActive() {
+        return mSpeaking != null || mNext < mChunks.size();
+    }
+
+    private void sendNext() {
+        if (mStopPending) {
+            return;
+        }
+        if (mNext >= mChunks.size()) {
+            if (!mChunks.isEmpty()) {
+                finish(false);
+            }
+            return;
+        }
+        Chunk chunk = mChunks.get(mNext++);
+        mSpeaking = chunk;
+        mSentAt = SystemClock.uptimeMillis();
+        chunk.mHandoverMillis = mSentAt - mHandoverFrom;
+        if (mLocale == null) {
+            mRobotAPI.startTTS(chunk.mText);
+        } else {
+            mRobotAPI.startTTS(chunk.mText, mLocale);
+        }
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onChunkStart(chunk);
+        }
+    }
+
+    /**
+     * Stop the chunk being spoken, the next one is sent after the TTS end the stop causes.
+     */
+    private void stopCurrent() {
+        Chunk chunk = mSpeaking;
+        if (chunk == null) {
+            return;
+        }
+        mSpeaking = null;
+        mRobotAPI.stopTTS();
+        mStopPending = true;
+        notifyEnd(chunk);
+        // the robot doesn't always report the end of a stopped TTS
+        mHandler.postAtTime(() -> {
+            mStopPending = false;
+            mHandoverFrom = SystemClock.uptimeMillis();
+            sendNext();
+        }, mStopToken, SystemClock.uptimeMillis() + STOP_GRACE_MILLIS);
+    }
+
+    private void finish(boolean cancelled) {
+        List<Chunk> chunks = mChunks;
+        mNext = chunks.size();
+        mChunks = Collections.emptyList();
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onDone(chunks, cancelled);
+        }
+    }
+
+    private void notifyEnd(Chunk chunk) {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onChunkEnd(chunk);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.nuwarobotics.example.motion.catalog;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MotionIndexTest {
+    private static final String[] CATEGORIES = {"RE", "TA", "EN", "DA", "IM", "SP"};
+    private static final String[] WORDS = {"Bye", "Hello", "LookRL", "PickUp", "Walk", "Bird", "Approve", "Touching",
+            "HappyBirthdayWaltz", "Dance", "Shy", "Wave"};
+
+    @Test
+    public void splitsNames() {
+        assertEquals("RE", MotionIndex.categoryOf("666_RE_Bye"));
+        assertEquals("EN", MotionIndex.categoryOf("987_en_HappyBirthdayWaltz"));
+        assertNull(MotionIndex.categoryOf("Bye"));
+        assertNull(MotionIndex.categoryOf("666__Bye"));
+        assertEquals("666", MotionIndex.idOf("666_RE_Bye"));
+        assertNull(MotionIndex.idOf("_RE_Bye"));
+    }
+
+    @Test
+    public void matchesABruteForceScan() {
+        List<String> names = names(2000, 1);
+        MotionIndex index = MotionIndex.build(names);
+        assertEquals(names.size(), index.size());
+        assertSorted(index.all());
+        assertEquals(new HashSet<>(names), new HashSet<>(index.all()));
+
+        for (String prefix : new String[]{"", "6", "666_", "666_ta", "987_EN_H", "1", "zzz"}) {
+            List<String> result = index.withPrefix(prefix);
+            assertSorted(result);
+            assertEquals(prefix, scan(names, name -> lower(name).startsWith(lower(prefix))), new HashSet<>(result));
+        }
+        for (String category : CATEGORIES) {
+            List<String> result = index.inCategory(category.toLowerCase(Locale.ROOT));
+            assertSorted(result);
+            assertEquals(category, scan(names, name -> category.equals(MotionIndex.categoryOf(name))), new HashSet<>(result));
+        }
+        for (String text : new String[]{"a", "walk", "_re_", "BIRTH", "q", "pp", "666_da_t"}) {
+            List<String> result = index.containing(text);
+            assertSorted(result);
+            assertEquals(text, scan(names, name -> lower(name).contains(lower(text))), new HashSet<>(result));
+        }
+    }
+
+    @Test
+    public void filterFollowsTypingAndDeleting() {
+        List<String> names = names(1500, 2);
+        MotionIndex index = MotionIndex.build(names);
+        MotionIndex.Filter filter = index.newFilter();
+        String[] typed = {"h", "ha", "hap", "happ", "hap", "ha", "hal", "", "w", "wa", "wal", "walk", "walkx", "walk"};
+        for (String query : typed) {
+            assertEquals(query, scan(names, name -> lower(name).contains(query)), new HashSet<>(filter.update(query)));
+        }
+
+        List<String> inCategory = filter.setCategory("sp");
+        assertEquals(scan(names, name -> "SP".equals(MotionIndex.categoryOf(name)) && lower(name).contains("walk")),
+                new HashSet<>(inCategory));
+        assertEquals(scan(names, name -> "SP".equals(MotionIndex.categoryOf(name)) && lower(name).contains("wa")),
+                new HashSet<>(filter.update("wa")));
+        assertEquals(scan(names, name -> lower(name).contains("wa")), new HashSet<>(filter.setCategory(null)));
+    }
+
+    @Test
+    public void unknownCategoryIsEmpty() {
+        MotionIndex index = MotionIndex.build(names(100, 3));
+        assertTrue(index.inCategory("XX").isEmpty());
+        MotionIndex.Filter filter = index.newFilter();
+        filter.setCategory("XX");
+        assertTrue(filter.update("a").isEmpty());
+    }
+
+    private interface Match {
+        boolean test(String name);
+    }
+
+    private static Set<String> scan(List<String> names, Match match) {
+        Set<String> result = new HashSet<>();
+        for (String name : names) {
+            if (match.test(name)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    private static void assertSorted(List<String> names) {
+        for (int i = 1; i < names.size(); i++) {
+            assertTrue(names.get(i - 1) + " before " + names.get(i), lower(names.get(i - 1)).compareTo(lower(names.get(i))) <= 0);
+        }
+    }
+
+    private static String lower(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> names(int count, long seed) {
+        Random random = new Random(seed);
+        Set<String> names = new HashSet<>(Arrays.asList("666_RE_Bye", "666_TA_LookRL", "987_EN_HappyBirthdayWaltz", "Bye"));
+        while (names.size() < count) {
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            if (random.nextBoolean()) {
+                category = category.toLowerCase(Locale.ROOT);
+            }
+            names.add((100 + random.nextInt(900)) + "_" + category + "_" + WORDS[random.nextInt(WORDS.length)]
+                    + (random.nextInt(4) == 0 ? "" : String.valueOf(random.nextInt(100))));
+        }
+        return new ArrayList<>(names);
+    }
+}
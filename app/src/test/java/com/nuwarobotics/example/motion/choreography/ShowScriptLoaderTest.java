@@ -0,0 +1,126 @@
+package com.nuwarobotics.example.motion.choreography;
+
+import com.nuwarobotics.example.motion.player.Motors;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShowScriptLoaderTest {
+    private static final String HELLO = "{\"name\": \"hello\", \"tracks\": ["
+            + "{\"name\": \"voice\", \"events\": [{\"say\": \"Hello\"}, {\"sync\": \"bow\"}, {\"say\": \"I am Kebbi\", \"timeout\": 8000}]},"
+            + "{\"name\": \"body\", \"events\": [{\"play\": \"666_RE_Hello\"}, {\"sync\": \"bow\"},"
+            + " {\"at\": 1500, \"motor\": \"neck_z\", \"degree\": 20, \"speed\": 40}]},"
+            + "{\"name\": \"light\", \"events\": [{\"led\": 1, \"color\": \"#00ff80\", \"brightness\": 200}, {\"wait\": 500},"
+            + " {\"led\": 1, \"color\": \"#000000\"}, {\"say\": \"Hello\"}]}]}";
+
+    private static ShowScript load(String json) throws IOException {
+        return ShowScriptLoader.load(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void compilesTracksInOrder() throws IOException {
+        ShowScript show = load(HELLO);
+        assertEquals("hello", show.getName());
+        assertEquals(3, show.getTrackCount());
+        assertEquals(10, show.getInstructionCount());
+        assertEquals(0, show.getTrackStart(0));
+        assertEquals(3, show.getTrackEnd(0));
+        assertEquals(6, show.getTrackEnd(1));
+        assertEquals(10, show.getTrackEnd(2));
+
+        assertEquals(ShowScript.OP_SAY, show.get(0, ShowScript.F_OP));
+        assertEquals("Hello", show.getString(show.get(0, ShowScript.F_A)));
+        assertEquals(ShowScript.NO_TIME, show.get(0, ShowScript.F_AT));
+        assertEquals(ShowScript.NO_TIME, show.get(0, ShowScript.F_TIMEOUT));
+        assertEquals(8000, show.get(2, ShowScript.F_TIMEOUT));
+        assertEquals(ShowScript.OP_PLAY, show.get(3, ShowScript.F_OP));
+        assertEquals("666_RE_Hello", show.getString(show.get(3, ShowScript.F_A)));
+        // the same text is stored once
+        assertEquals(show.get(0, ShowScript.F_A), show.get(9, ShowScript.F_A));
+    }
+
+    @Test
+    public void compilesMotorLedAndWait() throws IOException {
+        ShowScript show = load(HELLO);
+        assertEquals(ShowScript.OP_MOTOR, show.get(5, ShowScript.F_OP));
+        assertEquals(1500, show.get(5, ShowScript.F_AT));
+        assertEquals(Motors.idOf("neck_z"), show.get(5, ShowScript.F_A));
+        assertEquals(20f, show.getFloat(5, ShowScript.F_B), 0);
+        assertEquals(40f, show.getFloat(5, ShowScript.F_C), 0);
+
+        assertEquals(ShowScript.OP_LED, show.get(6, ShowScript.F_OP));
+        assertEquals(1, show.get(6, ShowScript.F_A));
+        assertEquals(200, show.get(6, ShowScript.F_B));
+        assertEquals(0x00ff80, show.get(6, ShowScript.F_C));
+        assertEquals(ShowScript.OP_WAIT, show.get(7, ShowScript.F_OP));
+        assertEquals(500, show.get(7, ShowScript.F_A));
+        // brightness defaults to full
+        assertEquals(255, show.get(8, ShowScript.F_B));
+    }
+
+    @Test
+    public void countsTheTracksMeetingAtASync() throws IOException {
+        ShowScript show = load(HELLO);
+        assertEquals(1, show.getSyncCount());
+        assertEquals(ShowScript.OP_SYNC, show.get(1, ShowScript.F_OP));
+        assertEquals(show.get(1, ShowScript.F_A), show.get(4, ShowScript.F_A));
+        assertEquals(2, show.getSyncParties(show.get(1, ShowScript.F_A)));
+    }
+
+    @Test
+    public void skipsUnknownKeys() throws IOException {
+        ShowScript show = load("{\"version\": 2, \"tracks\": [{\"color\": \"blue\", \"events\": [{\"say\": \"hi\", \"mood\": [1, 2]}]}]}");
+        assertEquals("", show.getName());
+        assertEquals(1, show.getInstructionCount());
+    }
+
+    @Test
+    public void cachesByContent() throws IOException {
+        ShowScript show = load(HELLO);
+        assertSame(show, load(HELLO));
+        assertSame(show, ShowScriptLoader.load(new ByteArrayInputStream(HELLO.getBytes(StandardCharsets.UTF_8))));
+        ShowScript other = load(HELLO + " ");
+        assertNotSame(show, other);
+        assertNotEquals(show.getHash(), other.getHash());
+    }
+
+    @Test
+    public void loadsTheDemoShow() throws IOException {
+        ShowScript show = ShowScriptLoader.load(new File("src/main/assets/shows/motion_tts_demo.json"));
+        assertTrue(show.getTrackCount() > 0);
+        assertTrue(show.getInstructionCount() > 0);
+    }
+
+    @Test
+    public void rejectsBrokenScripts() {
+        String[] broken = {
+                "{\"tracks\": []}",
+                "{\"tracks\": [{\"events\": [{\"say\": \"a\", \"play\": \"b\"}]}]}",
+                "{\"tracks\": [{\"events\": [{\"motor\": \"tail\"}]}]}",
+                "{\"tracks\": [{\"events\": [{\"led\": \"x\"}]}]}",
+                "{\"tracks\": [{\"events\": [{\"led\": 1, \"color\": \"red\"}]}]}",
+                "{\"tracks\": [{\"events\": [{\"wait\": -5}]}]}",
+                "{\"tracks\": [{\"events\": [{\"at\": 100}]}]}",
+                "{\"tracks\": [{\"events\": [{\"sync\": \"a\"}, {\"sync\": \"a\"}]}]}"};
+        for (String json : broken) {
+            try {
+                load(json);
+                fail("loaded " + json);
+            } catch (ShowFormatException expected) {
+            } catch (IOException e) {
+                fail(json + ": " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.nuwarobotics.example.motion.compact;
+
+import com.nuwarobotics.example.motion.fst.FstMotionParser;
+import com.nuwarobotics.example.motion.model.Motion;
+import com.nuwarobotics.example.motion.model.MotorTrack;
+import com.nuwarobotics.example.motion.model.Timeline;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompactMotionTest {
+    private static final File APPROVE = new File("src/main/assets/motion_bin/example_fst_approve.fst");
+    private static final File TOUCHING = new File("src/main/assets/motion_bin/example_fst_touching.fst");
+    // angles are stored in 1/100 degrees, frames in 1/100 frames
+    private static final float QUANTIZATION_ERROR = 0.05f;
+
+    @Test
+    public void roundTripKeepsTheCurves() throws IOException {
+        for (File fst : new File[]{APPROVE, TOUCHING}) {
+            Motion motion = FstMotionParser.parse(fst);
+            byte[] compact = write(motion);
+            assertTrue(fst + " not smaller", compact.length < fst.length());
+
+            CompactMotion read = CompactMotion.read(ByteBuffer.wrap(compact));
+            assertEquals(motion.getName(), read.getName());
+            assertEquals(motion.getFps(), read.getFps(), 0f);
+            assertEquals(motion.getFrameCount(), read.getFrameCount());
+            assertEquals(motion.getTrackCount(), read.getTrackCount());
+            for (int track = 0; track < motion.getTrackCount(); track++) {
+                assertEquals(motion.getMotor(track), read.getMotor(track));
+                assertEquals(motion.getTracks().get(track).getKeyCount(), read.getTrack(track).getKeyCount());
+            }
+            assertMaxError(motion, read, QUANTIZATION_ERROR);
+            assertMaxError(motion, read.toMotion(), QUANTIZATION_ERROR);
+        }
+    }
+
+    @Test
+    public void simplifiedCurvesStayWithinTheBound() throws IOException {
+        Motion motion = FstMotionParser.parse(APPROVE);
+        for (float maxError : new float[]{0.1f, 0.5f, 2f}) {
+            Motion simplified = KeyframeSimplifier.simplify(motion, maxError);
+            assertTrue(keyCount(simplified) <= keyCount(motion));
+            // the simplifier samples every quarter frame, so does the check
+            assertMaxError(motion, simplified, maxError + 1e-3f);
+        }
+        assertTrue(keyCount(KeyframeSimplifier.simplify(motion, 2f)) < keyCount(motion));
+    }
+
+    @Test
+    public void simplifiedMotionRoundTrips() throws IOException {
+        Motion simplified = KeyframeSimplifier.simplify(FstMotionParser.parse(TOUCHING), 0.5f);
+        CompactMotion read = CompactMotion.read(ByteBuffer.wrap(write(simplified)));
+        assertMaxError(simplified, read, QUANTIZATION_ERROR);
+    }
+
+    @Test
+    public void tracksWithTwoKeysAreKept() throws IOException {
+        MotorTrack neck = FstMotionParser.parse(APPROVE).getTrack("neck_z");
+        assertEquals(2, neck.getKeyCount());
+        assertSame(neck, KeyframeSimplifier.simplify(neck, 10f));
+    }
+
+    @Test(expected = IOException.class)
+    public void otherContentFails() throws IOException {
+        CompactMotion.read(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+    private static byte[] write(Motion motion) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompactMotionWriter.write(motion, out);
+        return out.toByteArray();
+    }
+
+    private static int keyCount(Motion motion) {
+        int count = 0;
+        for (MotorTrack track : motion.getTracks()) {
+            count += track.getKeyCount();
+        }
+        return count;
+    }
+
+    private static void assertMaxError(Timeline expected, Timeline actual, float maxError) {
+        float[] want = new float[expected.getTrackCount()];
+        float[] got = new float[actual.getTrackCount()];
+        for (float frame = 0; frame <= expected.getFrameCount(); frame += 0.25f) {
+            expected.poseAt(frame, want);
+            actual.poseAt(frame, got);
+            for (int track = 0; track < want.length; track++) {
+                float error = Math.abs(want[track] - got[track]);
+                assertTrue(expected.getMotor(track) + " at frame " + frame + " off by " + error, error <= maxError);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.nuwarobotics.example.motion.fst;
+
+import com.nuwarobotics.example.motion.model.Motion;
+import com.nuwarobotics.example.motion.model.MotorTrack;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FstMotionParserTest {
+    // unit tests run in the module directory
+    static final File APPROVE = new File("src/main/assets/motion_bin/example_fst_approve.fst");
+    static final File TOUCHING = new File("src/main/assets/motion_bin/example_fst_touching.fst");
+
+    @Test
+    public void parsesBundledMotions() throws IOException {
+        Motion approve = FstMotionParser.parse(APPROVE);
+        assertEquals("666_DA_Approve", approve.getName());
+        assertEquals(24f, approve.getFps(), 0f);
+        assertEquals(104, approve.getFrameCount());
+        assertEquals(4333, approve.getDurationMillis());
+        assertEquals(10, approve.getTrackCount());
+        assertEquals(23, approve.getTrack("left_shoulder_x").getKeyCount());
+        assertEquals(2, approve.getTrack("neck_z").getKeyCount());
+
+        Motion touching = FstMotionParser.parse(TOUCHING);
+        assertEquals("666_DA_Touching", touching.getName());
+        assertEquals(89, touching.getFrameCount());
+        assertEquals(3708, touching.getDurationMillis());
+        assertNull(touching.getTrack("no_such_motor"));
+    }
+
+    @Test
+    public void keysAreSortedAndCurvesPassThroughThem() throws IOException {
+        Motion motion = FstMotionParser.parse(APPROVE);
+        for (MotorTrack track : motion.getTracks()) {
+            for (int key = 0; key < track.getKeyCount(); key++) {
+                if (key > 0) {
+                    assertTrue(track.getMotor(), track.getFrame(key) > track.getFrame(key - 1));
+                }
+                assertEquals(track.getMotor() + " key " + key, track.getValue(key), track.valueAt(track.getFrame(key)), 1e-3f);
+            }
+            assertEquals(track.getFrame(track.getKeyCount() - 1), track.getLastFrame(), 0f);
+        }
+    }
+
+    @Test
+    public void streamAndBufferGiveTheSameMotion() throws IOException {
+        Motion mapped = FstMotionParser.parse(APPROVE);
+        Motion streamed;
+        try (InputStream in = new FileInputStream(APPROVE)) {
+            streamed = FstMotionParser.parse(in);
+        }
+        assertEquals(mapped.getName(), streamed.getName());
+        assertEquals(mapped.getTrackCount(), streamed.getTrackCount());
+        float[] expected = new float[mapped.getTrackCount()];
+        float[] actual = new float[mapped.getTrackCount()];
+        for (float frame = 0; frame <= mapped.getFrameCount(); frame += 0.5f) {
+            mapped.poseAt(frame, expected);
+            streamed.poseAt(frame, actual);
+            assertTrue("frame " + frame, Arrays.equals(expected, actual));
+        }
+    }
+
+    @Test
+    public void bufferPositionIsKept() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(APPROVE.toPath()));
+        assertNotNull(FstMotionParser.parse(buffer));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFileFails() throws IOException {
+        byte[] content = Files.readAllBytes(APPROVE.toPath());
+        FstMotionParser.parse(ByteBuffer.wrap(content, 0, content.length / 2).slice());
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFileFails() throws IOException {
+        FstMotionParser.parse(ByteBuffer.wrap("not a motion file".getBytes("UTF-8")));
+    }
+}
@@ -0,0 +1,95 @@
+package com.nuwarobotics.example.motion.fst;
+
+import com.nuwarobotics.example.motion.model.Motion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FstTimelineTest {
+    private File mCacheDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mCacheDir = Files.createTempDirectory("fst-index").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mCacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mCacheDir.delete();
+    }
+
+    @Test
+    public void posesMatchTheParsedMotion() throws IOException {
+        for (File fst : new File[]{FstMotionParserTest.APPROVE, FstMotionParserTest.TOUCHING}) {
+            Motion motion = FstMotionParser.parse(fst);
+            FstTimeline timeline = FstTimeline.open(fst, mCacheDir);
+            assertEquals(motion.getName(), timeline.getName());
+            assertEquals(motion.getFrameCount(), timeline.getFrameCount());
+            assertEquals(motion.getDurationMillis(), timeline.getDurationMillis());
+            assertEquals(motion.getTrackCount(), timeline.getTrackCount());
+            for (int track = 0; track < motion.getTrackCount(); track++) {
+                assertEquals(motion.getMotor(track), timeline.getMotor(track));
+            }
+            assertSamePoses(motion, timeline, 0.25f);
+        }
+    }
+
+    @Test
+    public void seeksBackwardsAndOutsideTheKeys() throws IOException {
+        Motion motion = FstMotionParser.parse(FstMotionParserTest.APPROVE);
+        FstTimeline timeline = FstTimeline.open(FstMotionParserTest.APPROVE, null);
+        float[] frames = {90, 3, 57.5f, -10, 500, 0, 103, 12.25f};
+        for (float frame : frames) {
+            for (int track = 0; track < motion.getTrackCount(); track++) {
+                assertEquals("frame " + frame, motion.getTracks().get(track).valueAt(frame),
+                        timeline.valueAt(track, frame), 1e-3f);
+            }
+        }
+    }
+
+    @Test
+    public void cachedIndexIsReused() throws IOException {
+        FstTimeline.open(FstMotionParserTest.APPROVE, mCacheDir);
+        File[] cached = mCacheDir.listFiles();
+        assertEquals(1, cached.length);
+        long written = cached[0].lastModified();
+
+        FstTimeline timeline = FstTimeline.open(FstMotionParserTest.APPROVE, mCacheDir);
+        assertEquals(written, mCacheDir.listFiles()[0].lastModified());
+        assertSamePoses(FstMotionParser.parse(FstMotionParserTest.APPROVE), timeline, 1f);
+    }
+
+    @Test
+    public void opensBuffersInMemory() throws IOException {
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(FstMotionParserTest.APPROVE.toPath()));
+        assertSamePoses(FstMotionParser.parse(FstMotionParserTest.APPROVE), FstTimeline.open(content), 1f);
+    }
+
+    private static void assertSamePoses(Motion motion, FstTimeline timeline, float step) {
+        float[] expected = new float[motion.getTrackCount()];
+        float[] actual = new float[motion.getTrackCount()];
+        for (float frame = 0; frame <= motion.getFrameCount(); frame += step) {
+            motion.poseAt(frame, expected);
+            timeline.poseAt(frame, actual);
+            for (int track = 0; track < expected.length; track++) {
+                assertTrue("frame " + frame + " " + motion.getMotor(track),
+                        Math.abs(expected[track] - actual[track]) <= 1e-3f);
+            }
+        }
+    }
+}
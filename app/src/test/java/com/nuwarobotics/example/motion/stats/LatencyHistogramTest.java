@@ -0,0 +1,66 @@
+package com.nuwarobotics.example.motion.stats;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramIsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(50));
+        assertEquals(0, histogram.getMeanMicros());
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 8; micros++) {
+            histogram.record(micros);
+        }
+        assertEquals(1, histogram.getMinMicros());
+        assertEquals(8, histogram.getMaxMicros());
+        assertEquals(4, histogram.getPercentileMicros(50));
+        assertEquals(8, histogram.getPercentileMicros(100));
+    }
+
+    @Test
+    public void percentilesAreWithinAnEighth() {
+        Random random = new Random(7);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] samples = new long[20000];
+        for (int i = 0; i < samples.length; i++) {
+            // 1 ms to 2 s, log uniform like real command latencies
+            samples[i] = (long) Math.exp(Math.log(1000) + random.nextDouble() * Math.log(2000));
+            histogram.record(samples[i]);
+        }
+        Arrays.sort(samples);
+        assertEquals(samples.length, histogram.getCount());
+        assertEquals(samples[0], histogram.getMinMicros());
+        assertEquals(samples[samples.length - 1], histogram.getMaxMicros());
+        for (double percentile : new double[]{1, 50, 90, 95, 99, 99.9}) {
+            long exact = samples[(int) Math.ceil(percentile / 100 * samples.length) - 1];
+            long estimate = histogram.getPercentileMicros(percentile);
+            assertTrue("p" + percentile + " " + estimate + " < " + exact, estimate >= exact);
+            assertTrue("p" + percentile + " " + estimate + " vs " + exact, estimate <= exact + exact / 8);
+        }
+        assertEquals(histogram.getMaxMicros(), histogram.getPercentileMicros(100));
+    }
+
+    @Test
+    public void clearForgetsSamples() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5000);
+        histogram.clear();
+        assertEquals(0, histogram.getCount());
+        histogram.record(42);
+        assertEquals(42, histogram.getPercentileMicros(50));
+        assertEquals(42, histogram.getMinMicros());
+    }
+}
@@ -0,0 +1,109 @@
+package com.nuwarobotics.example.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogRateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void linesWithoutRuleAreNeverLimited() {
+        LogRateLimiter limiter = new LogRateLimiter();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, limiter.acquire(-1, "tag"));
+        }
+        limiter.setRate("other", 1, 1);
+        assertEquals(0, limiter.acquire(-1, "tag"));
+    }
+
+    @Test
+    public void rateAllowsBurstThenRefills() {
+        LogRateLimiter.Rule rule = new LogRateLimiter.Rule(2, 3, 1);
+        long now = System.nanoTime();
+        assertEquals(0, rule.acquire(now));
+        assertEquals(0, rule.acquire(now));
+        assertEquals(0, rule.acquire(now));
+        assertEquals(LogRateLimiter.SUPPRESSED, rule.acquire(now));
+        assertEquals(LogRateLimiter.SUPPRESSED, rule.acquire(now + SECOND / 4));
+        // half a second gives one token at 2 lines per second, the accepted line reports the two it replaces
+        assertEquals(2, rule.acquire(now + SECOND / 2));
+        assertEquals(LogRateLimiter.SUPPRESSED, rule.acquire(now + SECOND / 2));
+        assertEquals(3, rule.getSuppressedTotal());
+    }
+
+    @Test
+    public void refillIsCappedAtTheBurst() {
+        LogRateLimiter.Rule rule = new LogRateLimiter.Rule(10, 2, 1);
+        long now = System.nanoTime() + 60 * SECOND;
+        assertEquals(0, rule.acquire(now));
+        assertEquals(0, rule.acquire(now));
+        assertEquals(LogRateLimiter.SUPPRESSED, rule.acquire(now));
+    }
+
+    @Test
+    public void samplingKeepsOneOfN() {
+        LogRateLimiter limiter = new LogRateLimiter();
+        limiter.setSampling("imu", 4);
+        StringBuilder kept = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            kept.append(limiter.acquire(-1, "imu") == LogRateLimiter.SUPPRESSED ? '.' : 'x');
+        }
+        assertEquals("x...x...x...", kept.toString());
+        assertEquals(9, limiter.getSuppressedCount("imu"));
+    }
+
+    @Test
+    public void acceptedLineCountsTheSuppressedOnesBeforeIt() {
+        LogRateLimiter limiter = new LogRateLimiter();
+        limiter.setSampling("imu", 3);
+        assertEquals(0, limiter.acquire(-1, "imu"));
+        assertEquals(LogRateLimiter.SUPPRESSED, limiter.acquire(-1, "imu"));
+        assertEquals(LogRateLimiter.SUPPRESSED, limiter.acquire(-1, "imu"));
+        assertEquals(2, limiter.acquire(-1, "imu"));
+    }
+
+    @Test
+    public void callSiteRuleWinsOverTagRule() {
+        LogRateLimiter limiter = new LogRateLimiter();
+        limiter.setSampling("motor", 1000);
+        limiter.setSampling(5, 2);
+        assertEquals(0, limiter.acquire(-1, "motor"));
+        assertEquals(LogRateLimiter.SUPPRESSED, limiter.acquire(-1, "motor"));
+        assertEquals(0, limiter.acquire(5, "motor"));
+        assertEquals(LogRateLimiter.SUPPRESSED, limiter.acquire(5, "motor"));
+        assertEquals(1, limiter.acquire(5, "motor"));
+        // other call sites of the tag still follow the tag rule
+        assertEquals(LogRateLimiter.SUPPRESSED, limiter.acquire(4, "motor"));
+        assertEquals(1, limiter.getSuppressedCount(5));
+    }
+
+    @Test
+    public void rateAndSamplingCombine() {
+        LogRateLimiter limiter = new LogRateLimiter();
+        limiter.setRate("tag", 0.001, 2);
+        limiter.setSampling("tag", 2);
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (limiter.acquire(-1, "tag") != LogRateLimiter.SUPPRESSED) {
+                accepted++;
+            }
+        }
+        // every second line passes sampling, the first two of those use up the burst
+        assertEquals(2, accepted);
+    }
+
+    @Test
+    public void clearRemovesAllRules() {
+        LogRateLimiter limiter = new LogRateLimiter();
+        limiter.setSampling("tag", 2);
+        limiter.setSampling(3, 2);
+        limiter.clear();
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, limiter.acquire(3, "tag"));
+        }
+        assertEquals(0, limiter.getSuppressedCount("tag"));
+    }
+}
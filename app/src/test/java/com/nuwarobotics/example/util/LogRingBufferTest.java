@@ -0,0 +1,183 @@
+package com.nuwarobotics.example.util;
+
+import android.util.Log;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogRingBufferTest {
+
+    private static boolean offer(LogRingBuffer buffer, int priority, String tag, String msg) {
+        LogRingBuffer.Record record = buffer.claim();
+        if (record == null) {
+            return false;
+        }
+        record.priority = priority;
+        record.tag = tag;
+        record.msg = msg;
+        buffer.publish(record);
+        return true;
+    }
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(2, new LogRingBuffer(1).capacity());
+        assertEquals(8, new LogRingBuffer(5).capacity());
+        assertEquals(8, new LogRingBuffer(8).capacity());
+    }
+
+    @Test
+    public void pollsInPublishOrder() {
+        LogRingBuffer buffer = new LogRingBuffer(4);
+        assertTrue(buffer.isEmpty());
+        assertFalse(buffer.poll(record -> { }));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(offer(buffer, Log.INFO, "tag", "line " + i));
+            List<String> lines = new ArrayList<>();
+            assertTrue(buffer.poll(record -> lines.add(record.tag + " " + record.msg + " " + record.priority)));
+            assertEquals("tag line " + i + " " + Log.INFO, lines.get(0));
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void claimedButUnpublishedRecordBlocksThePoll() {
+        LogRingBuffer buffer = new LogRingBuffer(4);
+        LogRingBuffer.Record first = buffer.claim();
+        assertTrue(offer(buffer, Log.INFO, "tag", "second"));
+        assertFalse(buffer.poll(record -> { }));
+        first.msg = "first";
+        buffer.publish(first);
+        List<String> lines = new ArrayList<>();
+        while (buffer.poll(record -> lines.add(record.msg))) {
+        }
+        assertEquals("[first, second]", lines.toString());
+    }
+
+    @Test
+    public void dropsWhenFull() {
+        LogRingBuffer buffer = new LogRingBuffer(4);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i < 4, offer(buffer, Log.DEBUG, "tag", "line " + i));
+        }
+        assertEquals(2, buffer.getDroppedCount());
+        List<String> lines = new ArrayList<>();
+        while (buffer.poll(record -> lines.add(record.msg))) {
+        }
+        assertEquals(4, lines.size());
+        assertEquals("line 0", lines.get(0));
+        assertEquals("line 3", lines.get(3));
+    }
+
+    @Test
+    public void recordIsClearedAfterPoll() {
+        LogRingBuffer buffer = new LogRingBuffer(2);
+        LogRingBuffer.Record claimed = buffer.claim();
+        claimed.msg = "{}";
+        claimed.tr = new RuntimeException();
+        claimed.argType = LogRingBuffer.ARGS_OBJECT;
+        claimed.argCount = 1;
+        claimed.o0 = new Object();
+        buffer.publish(claimed);
+        LogRingBuffer.Record[] polled = new LogRingBuffer.Record[1];
+        buffer.poll(record -> polled[0] = record);
+        assertNull(polled[0].msg);
+        assertNull(polled[0].tr);
+        assertNull(polled[0].o0);
+        assertEquals(LogRingBuffer.ARGS_NONE, polled[0].argType);
+    }
+
+    @Test
+    public void formatsLongArguments() {
+        LogRingBuffer.Record record = new LogRingBuffer.Record();
+        record.msg = "motor {} at {} deg";
+        record.argType = LogRingBuffer.ARGS_LONG;
+        record.argCount = 2;
+        record.l0 = 3;
+        record.l1 = -45;
+        assertEquals("motor 3 at -45 deg", record.formatMessage());
+    }
+
+    @Test
+    public void formatsDoubleAndObjectArguments() {
+        LogRingBuffer.Record record = new LogRingBuffer.Record();
+        record.msg = "{} / {} / {}";
+        record.argType = LogRingBuffer.ARGS_DOUBLE;
+        record.argCount = 3;
+        record.d0 = 0.5;
+        record.d1 = 1;
+        record.d2 = -2.25;
+        assertEquals("0.5 / 1.0 / -2.25", record.formatMessage());
+
+        record.clear();
+        record.msg = "{} and {}";
+        record.argType = LogRingBuffer.ARGS_OBJECT;
+        record.argCount = 2;
+        record.o0 = "a";
+        record.o1 = null;
+        assertEquals("a and null", record.formatMessage());
+    }
+
+    @Test
+    public void keepsPlaceholdersWithoutArgumentsAndArgumentsWithoutPlaceholders() {
+        LogRingBuffer.Record record = new LogRingBuffer.Record();
+        record.msg = "{} {} {}";
+        record.argType = LogRingBuffer.ARGS_LONG;
+        record.argCount = 1;
+        record.l0 = 1;
+        assertEquals("1 {} {}", record.formatMessage());
+
+        record.msg = "no placeholder";
+        record.argCount = 2;
+        assertEquals("no placeholder", record.formatMessage());
+
+        record.argType = LogRingBuffer.ARGS_NONE;
+        record.msg = "{} stays";
+        assertEquals("{} stays", record.formatMessage());
+    }
+
+    @Test
+    public void concurrentProducersKeepTheirOrder() throws InterruptedException {
+        LogRingBuffer buffer = new LogRingBuffer(256);
+        int producers = 4;
+        int lines = 20000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            String tag = "p" + p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < lines; i++) {
+                    offer(buffer, i, tag, null);
+                }
+            });
+            threads[p].start();
+        }
+        Map<String, Integer> last = new HashMap<>();
+        int[] polled = new int[1];
+        LogRingBuffer.Consumer consumer = record -> {
+            Integer before = last.put(record.tag, record.priority);
+            assertTrue(before == null || before < record.priority);
+            polled[0]++;
+        };
+        boolean alive = true;
+        while (alive) {
+            alive = false;
+            for (Thread thread : threads) {
+                alive |= thread.isAlive();
+            }
+            while (buffer.poll(consumer)) {
+            }
+        }
+        while (buffer.poll(consumer)) {
+        }
+        assertEquals(producers * lines, polled[0] + buffer.getDroppedCount());
+    }
+}
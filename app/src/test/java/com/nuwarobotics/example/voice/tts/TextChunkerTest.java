@@ -0,0 +1,63 @@
+package com.nuwarobotics.example.voice.tts;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TextChunkerTest {
+    private final TextChunker mChunker = new TextChunker();
+
+    @Test
+    public void splitsJapaneseSentences() {
+        List<String> chunks = mChunker.split("東京オリンピックの聖火が日本に到着するまで、あと１か月となりました。"
+                + "東日本大震災の被災地で、最初に聖火が到着する宮城県東松島市では地元の小学校にカウントダウンボードが設置されていて、"
+                + "歓迎の機運が高まっています。");
+        assertEquals(Arrays.asList(
+                "東京オリンピックの聖火が日本に到着するまで、あと１か月となりました。",
+                "東日本大震災の被災地で、最初に聖火が到着する宮城県東松島市では地元の小学校にカウントダウンボードが設置されていて、",
+                "歓迎の機運が高まっています。"), chunks);
+    }
+
+    @Test
+    public void splitsChineseAndJoinsShortSentences() {
+        assertEquals(Arrays.asList("你好！我是凯比。", "今天天气很好，我们一起去公园玩吧？好。"),
+                mChunker.split("你好！我是凯比。今天天气很好，我们一起去公园玩吧？好。"));
+    }
+
+    @Test
+    public void keepsNumbersAndUrlsWhole() {
+        assertEquals(Arrays.asList("Hi! Version 3.5 is out at www.nuwarobotics.com.", "\"Great,\" she said. Ok."),
+                mChunker.split("Hi! Version 3.5 is out at www.nuwarobotics.com. \"Great,\" she said. Ok."));
+    }
+
+    @Test
+    public void keepsClosingMarksWithTheirSentence() {
+        assertEquals(Arrays.asList("「本当？！」", "と言った。"), mChunker.split("「本当？！」と言った。\n\n  "));
+    }
+
+    @Test
+    public void cutsLongSentencesAtClausesThenSpaces() {
+        TextChunker chunker = new TextChunker(20, 4);
+        assertEquals(Arrays.asList("This is a rather", "long English", "sentence without", "any clause marks",
+                "at all that keeps", "going"),
+                chunker.split("This is a rather long English sentence without any clause marks at all that keeps going"));
+        for (String chunk : chunker.split("一二三四五六七八九十一二三四五六七八九十一二三四五、六七八九十一二三四五六七八九十一二三四五六七八九十")) {
+            assertTrue(chunk, chunk.length() <= 20);
+        }
+    }
+
+    @Test
+    public void emptyTextHasNoChunks() {
+        assertTrue(mChunker.split("").isEmpty());
+        assertTrue(mChunker.split(" \n\t ").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBadLimits() {
+        new TextChunker(4, 10);
+    }
+}
@@ -0,0 +1,172 @@
+package com.nuwarobotics.example.voice.tts;
+
+import android.os.Looper;
+
+import com.nuwarobotics.service.agent.NuwaRobotAPI;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class TtsPipelineTest {
+    private static final String TEXT = "One. Two. Three.";
+
+    private final NuwaRobotAPI mRobotAPI = mock(NuwaRobotAPI.class);
+    private final List<String> mEvents = new ArrayList<>();
+    private TtsPipeline mPipeline;
+
+    @Before
+    public void setUp() {
+        mPipeline = new TtsPipeline(mRobotAPI);
+        mPipeline.setListener(new TtsPipeline.Listener() {
+            @Override
+            public void onChunkStart(TtsPipeline.Chunk chunk) {
+                mEvents.add("start " + chunk.getText());
+            }
+
+            @Override
+            public void onChunkEnd(TtsPipeline.Chunk chunk) {
+                mEvents.add("end " + chunk.getText() + (chunk.isSkipped() ? " skipped" : "")
+                        + (chunk.isError() ? " error" : ""));
+            }
+
+            @Override
+            public void onDone(List<TtsPipeline.Chunk> chunks, boolean cancelled) {
+                mEvents.add("done " + chunks.size() + (cancelled ? " cancelled" : ""));
+            }
+        });
+    }
+
+    private static void idle() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private static void idleFor(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private void end(boolean isError) {
+        mPipeline.onTTSComplete(isError);
+        idle();
+    }
+
+    @Test
+    public void speaksChunksOneAfterTheOther() {
+        mPipeline.speak(TEXT);
+        idle();
+        assertEquals(Arrays.asList("start One."), mEvents);
+        verify(mRobotAPI).startTTS("One.");
+        end(false);
+        end(false);
+        end(false);
+        assertEquals(Arrays.asList("start One.", "end One.", "start Two.", "end Two.", "start Three.", "end Three.",
+                "done 3"), mEvents);
+        verify(mRobotAPI).startTTS("Three.");
+    }
+
+    @Test
+    public void passesTheLocale() {
+        mPipeline.speak(TEXT, "en_US");
+        idle();
+        verify(mRobotAPI).startTTS("One.", "en_US");
+        verify(mRobotAPI, never()).startTTS("One.");
+    }
+
+    @Test
+    public void failedChunkGoesOn() {
+        mPipeline.speak(TEXT);
+        idle();
+        end(true);
+        assertEquals(Arrays.asList("start One.", "end One. error", "start Two."), mEvents);
+    }
+
+    @Test
+    public void skipWaitsForTheEndOfTheStop() {
+        mPipeline.speak(TEXT);
+        idle();
+        mPipeline.skip();
+        idle();
+        verify(mRobotAPI).stopTTS();
+        assertEquals(Arrays.asList("start One.", "end One. skipped"), mEvents);
+        // the end the stop causes is not the end of the next chunk
+        end(false);
+        assertEquals(Arrays.asList("start One.", "end One. skipped", "start Two."), mEvents);
+        end(false);
+        assertEquals("end Two.", mEvents.get(3));
+    }
+
+    @Test
+    public void skipGoesOnAfterTheGraceWhenTheStopReportsNoEnd() {
+        mPipeline.speak(TEXT);
+        idle();
+        mPipeline.skip();
+        idle();
+        idleFor(400);
+        verify(mRobotAPI, never()).startTTS("Two.");
+        idleFor(200);
+        verify(mRobotAPI).startTTS("Two.");
+    }
+
+    @Test
+    public void endAfterTheGraceBelongsToTheNextChunk() {
+        mPipeline.speak(TEXT);
+        idle();
+        mPipeline.skip();
+        idle();
+        idleFor(600);
+        end(false);
+        assertEquals(Arrays.asList("start One.", "end One. skipped", "start Two.", "end Two.", "start Three."), mEvents);
+    }
+
+    @Test
+    public void emptyTextIsDoneAtOnce() {
+        mPipeline.speak(" \n ");
+        idle();
+        mPipeline.speak("");
+        idle();
+        assertEquals(Arrays.asList("done 0", "done 0"), mEvents);
+        verify(mRobotAPI, never()).startTTS(anyString());
+    }
+
+    @Test
+    public void cancelDropsTheRest() {
+        mPipeline.speak(TEXT);
+        idle();
+        mPipeline.cancel();
+        idle();
+        verify(mRobotAPI).stopTTS();
+        end(false);
+        idleFor(1000);
+        assertEquals(Arrays.asList("start One.", "end One.", "done 3 cancelled"), mEvents);
+        verify(mRobotAPI, never()).startTTS("Two.");
+    }
+
+    @Test
+    public void speakReplacesTheTextSpoken() {
+        mPipeline.speak(TEXT);
+        idle();
+        mPipeline.speak("Four. Five.");
+        idle();
+        verify(mRobotAPI, times(1)).stopTTS();
+        assertEquals(Arrays.asList("start One.", "end One.", "done 3 cancelled"), mEvents);
+        end(false);
+        assertEquals("start Four.", mEvents.get(3));
+    }
+}